@@ -40,6 +40,25 @@ public class ConfigurationConstants {
   public static final String CANDIDATE_ANSWER_NUM = "CANDIDATE_ANSWER_NUM";
   public static final String CANDIDATE_ANSWER_NUM_PER_QUERY_COMPONENT = "CANDIDATE_ANSWER_NUM_PER_QUERY_COMPONENT";
   public static final String EGA_METADATA_FEATURE_SCORERS = "EGA_METADATA_FEATURE_SCORERS";
+  public static final String INDEX_SORT_BY_QUALITY = "INDEX_SORT_BY_QUALITY";
+  public static final String INDEX_MAX_BUFFERED_DOCS = "INDEX_MAX_BUFFERED_DOCS";
+  public static final String SEARCH_EARLY_TERMINATION_HITS = "SEARCH_EARLY_TERMINATION_HITS";
+  public static final String INDEX_PRELOAD = "INDEX_PRELOAD";
+  public static final String SEARCH_THREADS = "SEARCH_THREADS";
+  public static final String QUERY_CACHE_SIZE = "QUERY_CACHE_SIZE";
+  public static final String INDEX_REFRESH_SECONDS = "INDEX_REFRESH_SECONDS";
+  public static final String QUERY_PRUNE_MAX_TERMS = "QUERY_PRUNE_MAX_TERMS";
+  public static final String QUERY_PRUNE_MAX_DF_RATIO = "QUERY_PRUNE_MAX_DF_RATIO";
+  public static final String RESCORE_WINDOW = "RESCORE_WINDOW";
+  public static final String SEARCH_BATCH_THREADS = "SEARCH_BATCH_THREADS";
+  public static final String LAZY_HYDRATION = "LAZY_HYDRATION";
+  public static final String QUERY_GENERATOR_THREADS = "QUERY_GENERATOR_THREADS";
+  public static final String QUERY_GENERATORS_COMBINED = "QUERY_GENERATORS_COMBINED";
+  public static final String NEAR_DUPLICATE_INDEX_PATH = "NEAR_DUPLICATE_INDEX_PATH";
+  public static final String NEAR_DUPLICATE_NUM_BANDS = "NEAR_DUPLICATE_NUM_BANDS";
+  public static final String NEAR_DUPLICATE_BAND_ROWS = "NEAR_DUPLICATE_BAND_ROWS";
+  public static final String NEAR_DUPLICATE_MIN_SIMILARITY = "NEAR_DUPLICATE_MIN_SIMILARITY";
+  public static final String NEAR_DUPLICATE_SKIP_SEARCH_SIMILARITY = "NEAR_DUPLICATE_SKIP_SEARCH_SIMILARITY";
 
   // Ingestion-specific property values
   public enum IndexDirTypes {
@@ -61,6 +61,26 @@ public final class RetrieveAndRankConstants {
   public static final String CANDIDATE_ANSWER_NUM = "CANDIDATE_ANSWER_NUM";
   public static final String TRAINING_DATA_PATH = "TRAINING_DATA_PATH";
   public static final String QUERY_RETRY_LIMIT = "QUERY_RETRY_LIMIT";
+  public static final String SEARCH_BATCH_THREADS = "SEARCH_BATCH_THREADS";
+  public static final String DEFAULT_SEARCH_BATCH_THREADS = "4";
+  public static final String LAZY_HYDRATION = "LAZY_HYDRATION";
+
+  /**
+   * Constants to tune how the Indexer uploads documents to the Solr collection, along with their
+   * defaults
+   */
+  public static final String INDEXING_BATCH_SIZE = "INDEXING_BATCH_SIZE";
+  public static final String INDEXING_BATCH_BYTES = "INDEXING_BATCH_BYTES";
+  public static final String INDEXING_THREADS = "INDEXING_THREADS";
+  public static final String INDEXING_MAX_IN_FLIGHT = "INDEXING_MAX_IN_FLIGHT";
+  public static final String INDEXING_RETRY_LIMIT = "INDEXING_RETRY_LIMIT";
+  public static final String INDEXING_RETRY_BACKOFF = "INDEXING_RETRY_BACKOFF";
+  public static final String DEFAULT_INDEXING_BATCH_SIZE = "100";
+  public static final String DEFAULT_INDEXING_BATCH_BYTES = "5242880";
+  public static final String DEFAULT_INDEXING_THREADS = "2";
+  public static final String DEFAULT_INDEXING_MAX_IN_FLIGHT = "4";
+  public static final String DEFAULT_INDEXING_RETRY_LIMIT = "3";
+  public static final String DEFAULT_INDEXING_RETRY_BACKOFF = "1000";
 
   /**
    * Constants used to read the user environment variables
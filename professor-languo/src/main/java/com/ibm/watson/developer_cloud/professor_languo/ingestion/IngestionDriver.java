@@ -44,6 +44,7 @@ import com.ibm.watson.developer_cloud.professor_languo.data_model.CandidateAnswe
 import com.ibm.watson.developer_cloud.professor_languo.exception.IngestionException;
 import com.ibm.watson.developer_cloud.professor_languo.exception.SearchException;
 import com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing.Indexer;
+import com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing.NearDuplicateIndexer;
 import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.CorpusBuilder;
 import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeQuestion;
 import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeThread;
@@ -114,6 +115,11 @@ public class IngestionDriver {
       throws IngestionException {
     indexer = IndexerAndSearcherFactory.getIndexer(appProperties);
     indexer.indexCorpus(uniqThreadDirPath);
+    if (appProperties.getProperty(ConfigurationConstants.NEAR_DUPLICATE_INDEX_PATH) != null) {
+      Indexer nearDuplicateIndexer = new NearDuplicateIndexer();
+      nearDuplicateIndexer.initialize(appProperties);
+      nearDuplicateIndexer.indexCorpus(uniqThreadDirPath);
+    }
     corpusBuilder.deleteUniqThreadFolder();
   }
 
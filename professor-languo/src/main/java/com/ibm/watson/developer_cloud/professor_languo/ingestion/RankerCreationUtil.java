@@ -18,9 +18,6 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.Map.Entry;
-import java.util.Set;
 
 import org.apache.http.HttpException;
 import org.apache.http.HttpResponse;
@@ -54,6 +51,7 @@ import org.apache.wink.json4j.JSONObject;
 
 import com.ibm.watson.developer_cloud.professor_languo.configuration.RetrieveAndRankConstants;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.CandidateAnswer;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.FeatureSchema;
 import com.ibm.watson.developer_cloud.professor_languo.endpoints.AnswerFileBody;
 import com.ibm.watson.developer_cloud.professor_languo.exception.IngestionException;
 import com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing.StackExchangeThreadSerializer;
@@ -259,6 +257,8 @@ public class RankerCreationUtil {
 
     // Add the answer data to to the csv string
     boolean addHeader = true;
+    int searchRankSlot = FeatureSchema.slot(PipelineConstants.FEATURE_SEARCH_RANK);
+    int searchScoreSlot = FeatureSchema.slot(PipelineConstants.FEATURE_SEARCH_SCORE);
     for (CandidateAnswer answer : answers) {
 
       // score the answer to add our own features
@@ -276,19 +276,15 @@ public class RankerCreationUtil {
       csvString.append(",");
 
       // Build the csvString by adding the feature vectors
-      Set<Entry<String, Double>> fvp = answer.getFeatureValuePairs();
-      Iterator<Entry<String, Double>> it = fvp.iterator();
-      while (it.hasNext()) {
-        Entry<String, Double> entry = (Entry<String, Double>) it.next();
+      for (int slot = answer.nextFeature(0); slot >= 0; slot = answer.nextFeature(slot + 1)) {
         // ignore the added rank and score fields as they are not needed
         // by ranker
-        if (!(entry.getKey().equals(PipelineConstants.FEATURE_SEARCH_RANK)
-            || entry.getKey().equals(PipelineConstants.FEATURE_SEARCH_SCORE))) {
+        if (slot != searchRankSlot && slot != searchScoreSlot) {
           if (addHeader) {
-            csvStringHeader.append(entry.getKey());
+            csvStringHeader.append(FeatureSchema.name(slot));
             csvStringHeader.append(",");
           }
-          csvString.append(entry.getValue());
+          csvString.append(answer.getFeature(slot));
           csvString.append(",");
         }
       }
@@ -18,6 +18,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.List;
 
@@ -26,6 +31,7 @@ import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LogDocMergePolicy;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.RAMDirectory;
@@ -33,6 +39,7 @@ import org.apache.lucene.store.RAMDirectory;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.Messages;
 import com.ibm.watson.developer_cloud.professor_languo.exception.IngestionException;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.Post;
 import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeThread;
 import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeConstants.IndexStatFieldName;
 import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.LuceneSearcher;
@@ -46,6 +53,14 @@ import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.S
 public class LuceneIndexer implements Indexer {
   private final static Logger logger = LogManager.getLogger(LuceneIndexer.class.getName());
 
+  /**
+   * Key of the index commit user data recording how the documents of the index are ordered, and
+   * the value used when they are ordered by decreasing {@link #computeThreadQuality} in a single
+   * segment
+   */
+  public static final String INDEX_SORT_COMMIT_KEY = "INDEX_SORT";
+  public static final String INDEX_SORT_BY_QUALITY = "THREAD_QUALITY";
+
   /**
    * Used by Lucene to write document into the index file
    */
@@ -73,9 +88,23 @@ public class LuceneIndexer implements Indexer {
    */
   private IndexingStats indexStat = null;
 
+  /**
+   * Whether to add the documents in decreasing order of thread quality and force-merge the index
+   * into a single segment, so that searchers can stop collecting early
+   */
+  private boolean sortByQuality = false;
+
+  /**
+   * The number of documents buffered in memory before they are flushed to a new segment, or 0 to
+   * flush by RAM usage
+   */
+  private int maxBufferedDocs = 0;
+
   @Override public void initialize(Properties properties) throws IngestionException {
     String resDirPath = properties.getProperty(ConfigurationConstants.INGESTION_BASE_DIR) + File.separator;
     indexStatPath = resDirPath + properties.getProperty(ConfigurationConstants.INDEX_STAT_PATH);
+    sortByQuality = Boolean.parseBoolean(properties.getProperty(ConfigurationConstants.INDEX_SORT_BY_QUALITY));
+    maxBufferedDocs = Integer.parseInt(properties.getProperty(ConfigurationConstants.INDEX_MAX_BUFFERED_DOCS, "0"));
 
     if (properties.getProperty(ConfigurationConstants.INDEX_DIR_TYPE).toUpperCase()
         .equals(ConfigurationConstants.IndexDirTypes.RAM.toString()))
@@ -126,6 +155,8 @@ public class LuceneIndexer implements Indexer {
 
     try {
       startTime = System.currentTimeMillis();
+      if (sortByQuality)
+        sortByThreadQuality(serFiles);
       // restore the uniqe StackExchangeThreads from the .ser Files and
       // index them
       for (File serFile : serFiles) {
@@ -135,6 +166,15 @@ public class LuceneIndexer implements Indexer {
         indexThreadIds.add(thread.getId());
       }
 
+      if (sortByQuality) {
+        // a single segment merged from adjacent segments keeps the documents in the order they
+        // were added
+        writer.forceMerge(1);
+        Map<String, String> commitData = new HashMap<String, String>();
+        commitData.put(INDEX_SORT_COMMIT_KEY, INDEX_SORT_BY_QUALITY);
+        writer.setCommitData(commitData);
+      }
+
       endTime = System.currentTimeMillis();
       indexDocNum = writer.numDocs();
       closeIndexWriter();
@@ -145,6 +185,46 @@ public class LuceneIndexer implements Indexer {
     return createIndexingStats(indexDocNum, indexThreadIds, endTime - startTime);
   }
 
+  /**
+   * Sort the serialized thread files in decreasing order of thread quality. Only the quality of each
+   * thread is kept in memory, so the threads are deserialized again when they are indexed.
+   * 
+   * @param serFiles - the serialized thread files to sort in place
+   * @throws IngestionException
+   */
+  private void sortByThreadQuality(File[] serFiles) throws IngestionException {
+    final Map<File, Double> qualities = new HashMap<File, Double>();
+    for (File serFile : serFiles) {
+      StackExchangeThread thread = StackExchangeThreadSerializer.deserializeThreadFromBinFile(serFile.getPath());
+      qualities.put(serFile, computeThreadQuality(thread));
+    }
+    Arrays.sort(serFiles, Collections.reverseOrder(new Comparator<File>() {
+      @Override public int compare(File f1, File f2) {
+        return qualities.get(f1).compareTo(qualities.get(f2));
+      }
+    }));
+  }
+
+  /**
+   * Compute a query-independent quality signal for a thread from the score and view count of its
+   * question and whether it has an accepted answer. Scores and view counts are log-damped so that a
+   * handful of very popular threads do not dominate.
+   * 
+   * @param thread - the thread to rate
+   * @return the static quality of the thread, higher is better
+   */
+  public static double computeThreadQuality(StackExchangeThread thread) {
+    Post question = thread.getQuestion();
+    double quality = 0;
+    if (question.getScore() != null)
+      quality += Math.signum(question.getScore()) * Math.log1p(Math.abs(question.getScore()));
+    if (question.getViewCount() != null)
+      quality += Math.log1p(question.getViewCount()) / 2;
+    if (question.getAcceptedAnswerId() != null)
+      quality += 1;
+    return quality;
+  }
+
   /**
    * Create a indexingStat instance to record the the statistics during the indexing period.
    * 
@@ -193,6 +273,13 @@ public class LuceneIndexer implements Indexer {
     if (indexWriter == null) {
       try {
         IndexWriterConfig config = new IndexWriterConfig(SingletonAnalyzer.getAnalyzer());
+        if (maxBufferedDocs > 0)
+          config.setMaxBufferedDocs(maxBufferedDocs);
+        if (sortByQuality) {
+          // the default tiered policy merges segments that are not adjacent, which would scramble
+          // the order the documents were added in once the build spans several flushed segments
+          config.setMergePolicy(new LogDocMergePolicy());
+        }
         indexWriter = new IndexWriter(indexDir, config);
       } catch (IOException e) {
         logger.fatal(Messages.getString("RetrieveAndRank.DIR_OPEN_FAIL")); //$NON-NLS-1$
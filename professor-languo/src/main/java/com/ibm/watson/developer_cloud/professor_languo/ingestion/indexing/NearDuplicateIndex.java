@@ -0,0 +1,303 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.ibm.watson.developer_cloud.professor_languo.exception.IngestionException;
+
+/**
+ * An in-memory index of thread titles and bodies used to find near-duplicate questions in
+ * sublinear time. Every thread is represented by a MinHash signature over the word shingles of its
+ * title and body; the signature is split into bands and each band is hashed into its own table
+ * (locality-sensitive hashing), so threads sharing any band are candidates. Threads whose
+ * normalized titles are identical are additionally found through an exact-hash table.
+ */
+public class NearDuplicateIndex implements Serializable {
+
+  private static final long serialVersionUID = 2837445012384123940L;
+
+  public static final int DEFAULT_NUM_BANDS = 20;
+  public static final int DEFAULT_BAND_ROWS = 5;
+
+  private static final int SHINGLE_SIZE = 2;
+  private static final long PRIME = (1L << 31) - 1;
+  private static final long SEED = 42L;
+
+  private final int numBands;
+  private final int bandRows;
+  private final long[] hashA;
+  private final long[] hashB;
+
+  private final Map<String, List<Integer>> titleTable = new HashMap<String, List<Integer>>();
+  private final List<Map<Integer, List<Integer>>> bandTables;
+  private final Map<Integer, int[]> signatures = new HashMap<Integer, int[]>();
+
+  /**
+   * A thread found to be a near-duplicate of a question
+   */
+  public static class Match implements Comparable<Match> {
+    private final int threadId;
+    private final double similarity;
+    private final boolean exactTitle;
+
+    public Match(int threadId, double similarity, boolean exactTitle) {
+      this.threadId = threadId;
+      this.similarity = similarity;
+      this.exactTitle = exactTitle;
+    }
+
+    /**
+     * @return the post id of the matching thread
+     */
+    public int getThreadId() {
+      return threadId;
+    }
+
+    /**
+     * @return the estimated Jaccard similarity of the shingles of the question and the thread
+     */
+    public double getSimilarity() {
+      return similarity;
+    }
+
+    /**
+     * @return whether the normalized titles of the question and the thread are identical
+     */
+    public boolean isExactTitle() {
+      return exactTitle;
+    }
+
+    @Override public int compareTo(Match other) {
+      if (exactTitle != other.exactTitle)
+        return exactTitle ? -1 : 1;
+      return Double.compare(other.similarity, similarity);
+    }
+  }
+
+  /**
+   * Create an empty index with the given LSH layout. More bands with fewer rows each find less
+   * similar threads at the cost of more candidates to check.
+   *
+   * @param numBands - the number of bands the signature is split into
+   * @param bandRows - the number of MinHash values in each band
+   */
+  public NearDuplicateIndex(int numBands, int bandRows) {
+    this.numBands = numBands;
+    this.bandRows = bandRows;
+    int numHashes = numBands * bandRows;
+    hashA = new long[numHashes];
+    hashB = new long[numHashes];
+    Random random = new Random(SEED);
+    for (int i = 0; i < numHashes; i++) {
+      hashA[i] = 1 + (long) (random.nextDouble() * (PRIME - 1));
+      hashB[i] = (long) (random.nextDouble() * PRIME);
+    }
+    bandTables = new ArrayList<Map<Integer, List<Integer>>>(numBands);
+    for (int band = 0; band < numBands; band++)
+      bandTables.add(new HashMap<Integer, List<Integer>>());
+  }
+
+  /**
+   * Add a thread to the index
+   *
+   * @param threadId - the post id of the thread
+   * @param title - the unformatted title of the thread
+   * @param body - the unformatted body of the thread
+   */
+  public void add(int threadId, String title, String body) {
+    String normalizedTitle = normalize(title);
+    if (!normalizedTitle.isEmpty())
+      addTo(titleTable, normalizedTitle, threadId);
+
+    int[] signature = signature(title, body);
+    if (signature == null)
+      return;
+    signatures.put(threadId, signature);
+    for (int band = 0; band < numBands; band++)
+      addTo(bandTables.get(band), bandKey(signature, band), threadId);
+  }
+
+  /**
+   * Find the threads that are near-duplicates of a question
+   *
+   * @param title - the title of the question
+   * @param body - the body of the question
+   * @param minSimilarity - the lowest estimated Jaccard similarity for a thread to be returned,
+   *        threads with an identical title are always returned
+   * @return the matching threads, exact title matches first and then by decreasing similarity
+   */
+  public List<Match> findNearDuplicates(String title, String body, double minSimilarity) {
+    Map<Integer, Match> matches = new LinkedHashMap<Integer, Match>();
+    int[] signature = signature(title, body);
+
+    List<Integer> sameTitle = titleTable.get(normalize(title));
+    if (sameTitle != null) {
+      for (int threadId : sameTitle)
+        matches.put(threadId, new Match(threadId, similarity(signature, signatures.get(threadId)), true));
+    }
+
+    if (signature != null) {
+      Set<Integer> candidates = new HashSet<Integer>();
+      for (int band = 0; band < numBands; band++) {
+        List<Integer> bucket = bandTables.get(band).get(bandKey(signature, band));
+        if (bucket != null)
+          candidates.addAll(bucket);
+      }
+      for (int threadId : candidates) {
+        if (matches.containsKey(threadId))
+          continue;
+        double similarity = similarity(signature, signatures.get(threadId));
+        if (similarity >= minSimilarity)
+          matches.put(threadId, new Match(threadId, similarity, false));
+      }
+    }
+
+    List<Match> result = new ArrayList<Match>(matches.values());
+    Collections.sort(result);
+    return result;
+  }
+
+  /**
+   * @return the number of threads with a signature in the index
+   */
+  public int size() {
+    return signatures.size();
+  }
+
+  /**
+   * Write the index to a file
+   *
+   * @param path - the file to write to
+   * @throws IngestionException
+   */
+  public void save(String path) throws IngestionException {
+    try {
+      Files.createDirectories(Paths.get(path).toAbsolutePath().getParent());
+      Files.write(Paths.get(path), StackExchangeThreadSerializer.serializeObjToBinArr(this));
+    } catch (IOException e) {
+      throw new IngestionException(e);
+    }
+  }
+
+  /**
+   * Read an index written by {@link #save(String)}
+   *
+   * @param path - the file to read from
+   * @return the index
+   * @throws IngestionException
+   */
+  public static NearDuplicateIndex load(String path) throws IngestionException {
+    try {
+      return (NearDuplicateIndex) StackExchangeThreadSerializer
+          .deserializeObjFromBinArr(Files.readAllBytes(Paths.get(path)));
+    } catch (IOException e) {
+      throw new IngestionException(e);
+    }
+  }
+
+  /**
+   * Lower-case the text and reduce it to single-space separated alphanumeric words
+   */
+  static String normalize(String text) {
+    if (text == null)
+      return "";
+    return text.toLowerCase(Locale.ENGLISH).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+  }
+
+  /**
+   * Compute the MinHash signature of the word shingles of a title and body
+   *
+   * @return the signature, or <code>null</code> if the text has no words
+   */
+  private int[] signature(String title, String body) {
+    Set<String> shingles = shingles(normalize(title) + " " + normalize(body));
+    if (shingles.isEmpty())
+      return null;
+
+    int[] signature = new int[hashA.length];
+    Arrays.fill(signature, Integer.MAX_VALUE);
+    for (String shingle : shingles) {
+      long x = shingle.hashCode() & 0xffffffffL;
+      for (int i = 0; i < hashA.length; i++) {
+        int h = (int) ((hashA[i] * x + hashB[i]) % PRIME);
+        if (h < signature[i])
+          signature[i] = h;
+      }
+    }
+    return signature;
+  }
+
+  private static Set<String> shingles(String normalizedText) {
+    String trimmed = normalizedText.trim();
+    Set<String> shingles = new HashSet<String>();
+    if (trimmed.isEmpty())
+      return shingles;
+    String[] words = trimmed.split(" ");
+    if (words.length < SHINGLE_SIZE) {
+      shingles.addAll(Arrays.asList(words));
+      return shingles;
+    }
+    for (int i = 0; i + SHINGLE_SIZE <= words.length; i++) {
+      StringBuilder shingle = new StringBuilder(words[i]);
+      for (int j = 1; j < SHINGLE_SIZE; j++)
+        shingle.append(' ').append(words[i + j]);
+      shingles.add(shingle.toString());
+    }
+    return shingles;
+  }
+
+  private int bandKey(int[] signature, int band) {
+    int start = band * bandRows;
+    return Arrays.hashCode(Arrays.copyOfRange(signature, start, start + bandRows));
+  }
+
+  /**
+   * Estimate the Jaccard similarity of two shingle sets as the fraction of equal MinHash values
+   */
+  private static double similarity(int[] s1, int[] s2) {
+    if (s1 == null || s2 == null)
+      return 0;
+    int equal = 0;
+    for (int i = 0; i < s1.length; i++) {
+      if (s1[i] == s2[i])
+        equal++;
+    }
+    return (double) equal / s1.length;
+  }
+
+  private static <K> void addTo(Map<K, List<Integer>> table, K key, int threadId) {
+    List<Integer> bucket = table.get(key);
+    if (bucket == null) {
+      bucket = new ArrayList<Integer>(1);
+      table.put(key, bucket);
+    }
+    bucket.add(threadId);
+  }
+}
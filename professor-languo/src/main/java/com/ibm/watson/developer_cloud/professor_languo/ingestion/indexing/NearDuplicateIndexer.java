@@ -0,0 +1,84 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing;
+
+import java.io.File;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants;
+import com.ibm.watson.developer_cloud.professor_languo.configuration.Messages;
+import com.ibm.watson.developer_cloud.professor_languo.exception.IngestionException;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeConstants.IndexStatFieldName;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeThread;
+
+/**
+ * An implementation of the {@link Indexer} API that builds a {@link NearDuplicateIndex} from a
+ * collection of {@link StackExchangeThread} objects and saves it to disk. It runs alongside the
+ * search index {@link Indexer}, over the same unique thread folder.
+ */
+public class NearDuplicateIndexer implements Indexer {
+
+  private String nearDuplicateIndexPath = null;
+  private int numBands;
+  private int bandRows;
+
+  @Override public void initialize(Properties properties) throws IngestionException {
+    nearDuplicateIndexPath = getNearDuplicateIndexPath(properties);
+    if (nearDuplicateIndexPath == null)
+      throw new IngestionException(MessageFormat.format(Messages.getString("RetrieveAndRank.MISSING_PROPERTY"), //$NON-NLS-1$
+          ConfigurationConstants.NEAR_DUPLICATE_INDEX_PATH));
+    numBands = Integer.parseInt(properties.getProperty(ConfigurationConstants.NEAR_DUPLICATE_NUM_BANDS,
+        Integer.toString(NearDuplicateIndex.DEFAULT_NUM_BANDS)));
+    bandRows = Integer.parseInt(properties.getProperty(ConfigurationConstants.NEAR_DUPLICATE_BAND_ROWS,
+        Integer.toString(NearDuplicateIndex.DEFAULT_BAND_ROWS)));
+  }
+
+  @Override public IndexingStats indexCorpus(String uniqueThreadDirPath) throws IngestionException {
+    List<Integer> indexThreadIds = new ArrayList<Integer>();
+    long startTime = System.currentTimeMillis();
+
+    NearDuplicateIndex index = new NearDuplicateIndex(numBands, bandRows);
+    for (File serFile : new File(uniqueThreadDirPath).listFiles()) {
+      StackExchangeThread thread = StackExchangeThreadSerializer.deserializeThreadFromBinFile(serFile.getPath());
+      index.add(thread.getId(), thread.getQuestion().getUnformattedTitle(),
+          thread.getQuestion().getUnformattedBody());
+      indexThreadIds.add(thread.getId());
+    }
+    index.save(nearDuplicateIndexPath);
+
+    IndexingStats indexingStats = new IndexingStats();
+    indexingStats.addStatistic(IndexStatFieldName.INDEX_DOC_NUM.toString(), index.size());
+    indexingStats.addStatistic(IndexStatFieldName.INDEX_THREAD_IDS.toString(), indexThreadIds);
+    indexingStats.addStatistic(IndexStatFieldName.INDEX_TIME.toString(), System.currentTimeMillis() - startTime);
+    return indexingStats;
+  }
+
+  /**
+   * Resolve the location of the near-duplicate index file, which is relative to the resource
+   * directory like the search index
+   *
+   * @param properties - the application properties
+   * @return the path of the near-duplicate index file, or <code>null</code> if none is configured
+   */
+  public static String getNearDuplicateIndexPath(Properties properties) {
+    String relativePath = properties.getProperty(ConfigurationConstants.NEAR_DUPLICATE_INDEX_PATH);
+    if (relativePath == null)
+      return null;
+    return properties.getProperty(ConfigurationConstants.INGESTION_BASE_DIR) + File.separator + relativePath;
+  }
+}
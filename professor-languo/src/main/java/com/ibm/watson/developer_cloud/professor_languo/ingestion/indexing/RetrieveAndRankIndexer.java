@@ -31,8 +31,8 @@ import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.HttpSolrClient.RemoteSolrException;
 import org.apache.solr.client.solrj.response.UpdateResponse;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
 
-import com.google.common.collect.Lists;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.Messages;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.RetrieveAndRankConstants;
 import com.ibm.watson.developer_cloud.professor_languo.exception.IngestionException;
@@ -50,6 +50,12 @@ public class RetrieveAndRankIndexer implements Indexer {
 
   private IndexingStats indexStat = null;
   private String collection_name;
+  private int batchSize;
+  private long batchBytes;
+  private int uploadThreads;
+  private int maxInFlight;
+  private int retryLimit;
+  private long retryBackoff;
 
   SolrClient solrClient;
 
@@ -64,6 +70,20 @@ public class RetrieveAndRankIndexer implements Indexer {
     collection_name = properties.getProperty(RetrieveAndRankConstants.COLLECTION);
     final String solr_cluster_id = properties.getProperty(RetrieveAndRankConstants.SOLR_CLUSTER_ID);
 
+    // Read how documents are batched and uploaded
+    batchSize = Integer.parseInt(properties.getProperty(RetrieveAndRankConstants.INDEXING_BATCH_SIZE,
+        RetrieveAndRankConstants.DEFAULT_INDEXING_BATCH_SIZE));
+    batchBytes = Long.parseLong(properties.getProperty(RetrieveAndRankConstants.INDEXING_BATCH_BYTES,
+        RetrieveAndRankConstants.DEFAULT_INDEXING_BATCH_BYTES));
+    uploadThreads = Integer.parseInt(properties.getProperty(RetrieveAndRankConstants.INDEXING_THREADS,
+        RetrieveAndRankConstants.DEFAULT_INDEXING_THREADS));
+    maxInFlight = Integer.parseInt(properties.getProperty(RetrieveAndRankConstants.INDEXING_MAX_IN_FLIGHT,
+        RetrieveAndRankConstants.DEFAULT_INDEXING_MAX_IN_FLIGHT));
+    retryLimit = Integer.parseInt(properties.getProperty(RetrieveAndRankConstants.INDEXING_RETRY_LIMIT,
+        RetrieveAndRankConstants.DEFAULT_INDEXING_RETRY_LIMIT));
+    retryBackoff = Long.parseLong(properties.getProperty(RetrieveAndRankConstants.INDEXING_RETRY_BACKOFF,
+        RetrieveAndRankConstants.DEFAULT_INDEXING_RETRY_BACKOFF));
+
     // setup client to connect to solr cluster
     final RetrieveAndRank service = new RetrieveAndRank();
     service.setUsernameAndPassword(username, password);
@@ -84,7 +104,9 @@ public class RetrieveAndRankIndexer implements Indexer {
   /**
    * Given a built corpus(a set of StackExchangeThreads without duplicates) and a document mapper,
    * create solr documents from the threads and upload them to the solr cluster index and record the
-   * statistics during the indexing period.
+   * statistics during the indexing period. A batch is closed once it reaches either the configured
+   * number of documents or the configured size in bytes, and is handed to a
+   * {@link SolrBatchUploader} so the next batch can be built while earlier ones are in flight.
    * 
    * @param uniqueThreadDirPath - the path of the folder which stores the unique threads
    * @param docMapper - document mapper which maps the StackExchange instance to the document unit
@@ -97,58 +119,75 @@ public class RetrieveAndRankIndexer implements Indexer {
   private IndexingStats indexCorpus(String uniqueThreadDirPath, DocumentMapper docMapper)
       throws IngestionException, SolrServerException, IOException, RemoteSolrException {
 
-    final List<SolrInputDocument> batch = Lists.newArrayList();
+    List<SolrInputDocument> batch = new ArrayList<SolrInputDocument>();
+    long batchSizeInBytes = 0;
+    int batchNum = 0;
     List<Integer> indexThreadIds = new ArrayList<Integer>();
     int indexDocNum = 0;
     StackExchangeThread thread = null;
 
     long startTime = System.currentTimeMillis();
 
-    // restore the unique StackExchangeThreads from the .ser Files and index
-    // them
-    for (File serFile : new File(uniqueThreadDirPath).listFiles()) {
-      thread = StackExchangeThreadSerializer.deserializeThreadFromBinFile(serFile.getPath());
-
-      final SolrInputDocument solrDoc = new SolrInputDocument();
-
-      // Copy data over from thread to the SolrInputDocument
-      final Document threadDoc = docMapper.createDocument(thread);
-      for (IndexableField field : threadDoc.getFields()) {
-        BytesRef bin = threadDoc.getBinaryValue(field.name());
-        if (bin != null) {
-          // Add field value as bytes if field is binary
-          solrDoc.addField(field.name(), bin.bytes);
-        } else {
-          String value = threadDoc.get(field.name());
-          if (field.name().equals(IndexDocumentFieldName.THREAD_TITLE.toString())) {
-            // boost the title
-            final float boostValue = 2.0f;
-            solrDoc.addField(field.name(), value, boostValue);
+    final SolrBatchUploader uploader =
+        new SolrBatchUploader(solrClient, collection_name, uploadThreads, maxInFlight, retryLimit, retryBackoff);
+    try {
+      // restore the unique StackExchangeThreads from the .ser Files and index
+      // them
+      for (File serFile : new File(uniqueThreadDirPath).listFiles()) {
+        thread = StackExchangeThreadSerializer.deserializeThreadFromBinFile(serFile.getPath());
+
+        final SolrInputDocument solrDoc = new SolrInputDocument();
+
+        // Copy data over from thread to the SolrInputDocument
+        final Document threadDoc = docMapper.createDocument(thread);
+        for (IndexableField field : threadDoc.getFields()) {
+          BytesRef bin = threadDoc.getBinaryValue(field.name());
+          if (bin != null) {
+            // Add field value as bytes if field is binary
+            solrDoc.addField(field.name(), bin.bytes);
           } else {
-            solrDoc.addField(field.name(), value);
+            String value = threadDoc.get(field.name());
+            if (field.name().equals(IndexDocumentFieldName.THREAD_TITLE.toString())) {
+              // boost the title
+              final float boostValue = 2.0f;
+              solrDoc.addField(field.name(), value, boostValue);
+            } else {
+              solrDoc.addField(field.name(), value);
+            }
           }
         }
-      }
 
-      batch.add(solrDoc);
-      indexThreadIds.add(thread.getId());
-
-      indexDocNum++;
-      // batch things to make it more efficient to index
-      if (batch.size() >= 100) {
-        logger.info(MessageFormat.format(Messages.getString("RetrieveAndRank.INDEXING_AMOUNT"), (indexDocNum - 100), //$NON-NLS-1$
-            collection_name)); // );
-        final UpdateResponse addResponse = solrClient.add(collection_name, batch);
-        logger.debug(addResponse);
-        batch.clear();
+        batch.add(solrDoc);
+        batchSizeInBytes += estimateSize(solrDoc);
+        indexThreadIds.add(thread.getId());
+
+        indexDocNum++;
+        // batch things to make it more efficient to index
+        if (batch.size() >= batchSize || batchSizeInBytes >= batchBytes) {
+          logger.info(MessageFormat.format(Messages.getString("RetrieveAndRank.INDEXING_AMOUNT"), //$NON-NLS-1$
+              (indexDocNum - batch.size()), collection_name));
+          uploader.submit(batch);
+          batchNum++;
+          batch = new ArrayList<SolrInputDocument>();
+          batchSizeInBytes = 0;
+        }
       }
-    }
 
-    // Include any left documents in the batch
-    if (!batch.isEmpty()) {
-      final UpdateResponse addResponse = solrClient.add(collection_name, batch);
-      logger.debug(addResponse);
+      // Include any left documents in the batch
+      if (!batch.isEmpty()) {
+        uploader.submit(batch);
+        batchNum++;
+      }
+    } catch (final Exception e) {
+      // wait for the batches in flight, without letting their failure hide the original one
+      try {
+        uploader.awaitCompletion();
+      } catch (Exception suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw e;
     }
+    uploader.awaitCompletion();
 
     logger.info(MessageFormat.format(Messages.getString("RetrieveAndRank.INDEXING_COMMITTING"), indexDocNum)); //$NON-NLS-1$
 
@@ -161,7 +200,52 @@ public class RetrieveAndRankIndexer implements Indexer {
     long endTime = System.currentTimeMillis();
 
     // create the indexing stats
-    return createIndexingStats(indexDocNum, indexThreadIds, endTime - startTime);
+    IndexingStats indexingStats = createIndexingStats(indexDocNum, indexThreadIds, endTime - startTime);
+    addUploadStats(indexingStats, indexDocNum, batchNum, uploader.getBatchLatencies(), endTime - startTime);
+    return indexingStats;
+  }
+
+  /**
+   * Records the number of batches sent, the latency of each batch and the overall throughput of the
+   * upload in the provided IndexingStats
+   * 
+   * @param indexingStats - the stats to add to
+   * @param indexDocNum - the number of documents indexed
+   * @param batchNum - the number of batches sent
+   * @param batchLatencies - the latency in milliseconds of each batch
+   * @param period - the duration of the indexing in milliseconds
+   */
+  private void addUploadStats(IndexingStats indexingStats, int indexDocNum, int batchNum, List<Long> batchLatencies,
+      long period) {
+    double throughput = period > 0 ? indexDocNum * 1000.0 / period : indexDocNum;
+
+    indexingStats.addStatistic(IndexStatFieldName.INDEX_BATCH_NUM.toString(), batchNum);
+    indexingStats.addStatistic(IndexStatFieldName.INDEX_BATCH_LATENCIES.toString(), batchLatencies);
+    indexingStats.addStatistic(IndexStatFieldName.INDEX_THROUGHPUT.toString(), throughput);
+
+    logger.info(MessageFormat.format(Messages.getString("RetrieveAndRank.INDEXING_THROUGHPUT"), indexDocNum, //$NON-NLS-1$
+        batchNum, throughput));
+  }
+
+  /**
+   * Estimates the number of bytes a document takes on the wire, counting binary values by their
+   * length and every other value by its string length
+   * 
+   * @param solrDoc - the document to measure
+   * @return the approximate size of the document in bytes
+   */
+  private static long estimateSize(SolrInputDocument solrDoc) {
+    long size = 0;
+    for (SolrInputField field : solrDoc) {
+      for (Object value : field) {
+        if (value instanceof byte[]) {
+          size += ((byte[]) value).length;
+        } else if (value != null) {
+          size += value.toString().length();
+        }
+      }
+    }
+    return size;
   }
 
   /**
@@ -0,0 +1,195 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.HttpSolrClient.RemoteSolrException;
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrInputDocument;
+
+import com.ibm.watson.developer_cloud.professor_languo.configuration.Messages;
+
+/**
+ * Uploads batches of {@link SolrInputDocument}s to a Solr collection on a pool of worker threads.
+ * At most {@code maxInFlight} batches are outstanding at any time; {@link #submit(List)} blocks
+ * once that limit is reached so that the producer cannot run ahead of the cluster. Transient
+ * failures are retried with exponential backoff, and the latency of every successful batch is
+ * recorded.
+ */
+public class SolrBatchUploader {
+  private final static Logger logger = LogManager.getLogger(SolrBatchUploader.class.getName());
+
+  private final SolrClient solrClient;
+  private final String collectionName;
+  private final int retryLimit;
+  private final long retryBackoffMillis;
+
+  private final ExecutorService executor;
+  private final Semaphore inFlight;
+  private final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+  private final List<Long> batchLatencies = Collections.synchronizedList(new ArrayList<Long>());
+
+  /**
+   * @param solrClient - the client used to send the batches
+   * @param collectionName - the collection the documents are added to
+   * @param numThreads - the number of worker threads sending batches
+   * @param maxInFlight - the maximum number of batches submitted but not yet acknowledged
+   * @param retryLimit - the number of times a batch is retried after a transient failure
+   * @param retryBackoffMillis - the delay before the first retry, doubled on every further retry
+   */
+  public SolrBatchUploader(SolrClient solrClient, String collectionName, int numThreads, int maxInFlight,
+      int retryLimit, long retryBackoffMillis) {
+    this.solrClient = solrClient;
+    this.collectionName = collectionName;
+    this.retryLimit = retryLimit;
+    this.retryBackoffMillis = retryBackoffMillis;
+    this.executor = Executors.newFixedThreadPool(numThreads);
+    this.inFlight = new Semaphore(maxInFlight);
+  }
+
+  /**
+   * Queue a batch for upload, blocking while the maximum number of batches are in flight.
+   *
+   * @param batch - the documents to add; the list must not be modified by the caller afterwards
+   * @throws SolrServerException if a previously submitted batch has failed
+   * @throws IOException if a previously submitted batch has failed
+   */
+  public void submit(final List<SolrInputDocument> batch) throws SolrServerException, IOException {
+    rethrowFailure();
+    try {
+      inFlight.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        try {
+          if (failure.get() == null) {
+            upload(batch);
+          }
+        } catch (Exception e) {
+          // any failure, including unexpected runtime errors of the client, fails the whole upload
+          failure.compareAndSet(null, e);
+        } finally {
+          inFlight.release();
+        }
+      }
+    });
+  }
+
+  /**
+   * Wait for every submitted batch to be acknowledged and release the worker threads.
+   *
+   * @throws SolrServerException if any batch failed permanently
+   * @throws IOException if any batch failed permanently
+   * @throws RuntimeException if any batch failed with an unexpected runtime error
+   */
+  public void awaitCompletion() throws SolrServerException, IOException {
+    executor.shutdown();
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+        logger.debug(MessageFormat.format(Messages.getString("RetrieveAndRank.INDEXING_WAITING"), //$NON-NLS-1$
+            batchLatencies.size()));
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+    rethrowFailure();
+  }
+
+  /**
+   * @return the latency in milliseconds of every successfully uploaded batch, in completion order
+   */
+  public List<Long> getBatchLatencies() {
+    synchronized (batchLatencies) {
+      return new ArrayList<Long>(batchLatencies);
+    }
+  }
+
+  /**
+   * Send a single batch, retrying transient failures with exponential backoff.
+   */
+  private void upload(List<SolrInputDocument> batch) throws SolrServerException, IOException {
+    int attempt = 0;
+    while (true) {
+      long start = System.currentTimeMillis();
+      try {
+        final UpdateResponse addResponse = solrClient.add(collectionName, batch);
+        logger.debug(addResponse);
+        batchLatencies.add(System.currentTimeMillis() - start);
+        return;
+      } catch (SolrServerException | IOException | RemoteSolrException e) {
+        if (attempt >= retryLimit || !isTransient(e)) {
+          throw e;
+        }
+        attempt++;
+        logger.warn(MessageFormat.format(Messages.getString("RetrieveAndRank.INDEXING_RETRY"), attempt, //$NON-NLS-1$
+            e.getMessage()));
+        try {
+          Thread.sleep(retryBackoffMillis << (attempt - 1));
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Remote errors are only worth retrying when the server reports it is overloaded or unavailable;
+   * client errors such as a malformed document will fail again.
+   */
+  private static boolean isTransient(Exception e) {
+    if (e instanceof RemoteSolrException) {
+      int code = ((RemoteSolrException) e).code();
+      return code == 429 || code >= 500;
+    }
+    return true;
+  }
+
+  private void rethrowFailure() throws SolrServerException, IOException {
+    Exception e = failure.get();
+    if (e == null) {
+      return;
+    }
+    executor.shutdownNow();
+    if (e instanceof SolrServerException) {
+      throw (SolrServerException) e;
+    } else if (e instanceof IOException) {
+      throw (IOException) e;
+    } else if (e instanceof RuntimeException) {
+      throw (RuntimeException) e;
+    } else {
+      throw new IOException(e);
+    }
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import com.ibm.watson.developer_cloud.professor_languo.api.TextAnalyzer;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.TextWithAnalysis;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeConstants.VoteType;
+
+/**
+ * A {@link StackExchangeThread} known only by its ID until its content is first accessed, at
+ * which point the full thread is loaded, e.g. decoded from the index, and copied into this one.
+ * Features such as the search score and rank can be set without loading the thread, so answers
+ * that are discarded before their content is read are never decoded.
+ *
+ */
+public class LazyStackExchangeThread extends StackExchangeThread {
+
+  private static final long serialVersionUID = 6160386411925307573L;
+
+  private final int threadId;
+
+  /**
+   * Loads the full thread, or <code>null</code> once it has been loaded
+   */
+  private transient Callable<StackExchangeThread> loader;
+
+  private volatile boolean loaded = false;
+
+  /**
+   * Create a new {@link LazyStackExchangeThread}
+   *
+   * @param threadId - The ID of the question {@link Post} of the thread
+   * @param loader - Loads the full thread the first time its content is accessed
+   */
+  public LazyStackExchangeThread(int threadId, Callable<StackExchangeThread> loader) {
+    super(threadId, null);
+    this.threadId = threadId;
+    this.loader = loader;
+  }
+
+  /**
+   * @return whether the content of the thread has been loaded
+   */
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  /**
+   * Load the full thread if it has not been loaded yet, keeping the features and metadata already
+   * set on this thread over those of the loaded one
+   *
+   * @throws RuntimeException if the thread could not be loaded
+   */
+  public void load() {
+    if (loaded)
+      return;
+    synchronized (this) {
+      if (loaded)
+        return;
+      StackExchangeThread thread;
+      try {
+        thread = loader.call();
+      } catch (Exception e) {
+        throw new RuntimeException("Failed to load thread " + threadId, e);
+      }
+      site = thread.site;
+      question = thread.question;
+      author = thread.author;
+      answers = thread.answers;
+      voteMap = thread.voteMap;
+      postLinkList = thread.postLinkList;
+      answerTitle = thread.getAnswerTitle();
+      answerDocumentText = thread.getAnswerDocumentText();
+      questionVariants = thread.getQuestionVariants();
+      setComponentId(thread.getComponentId());
+      for (int slot = thread.nextFeature(0); slot >= 0; slot = thread.nextFeature(slot + 1)) {
+        if (!hasFeature(slot))
+          setFeature(slot, thread.getFeature(slot));
+      }
+      for (Entry<String, Object> metadata : thread.getMetadataMap().entrySet()) {
+        if (!getMetadataMap().containsKey(metadata.getKey()))
+          putMetadata(metadata.getKey(), metadata.getValue());
+      }
+      loader = null;
+      loaded = true;
+    }
+  }
+
+  @Override public int getId() {
+    return threadId;
+  }
+
+  @Override public String getSite() {
+    load();
+    return super.getSite();
+  }
+
+  @Override public Post getQuestion() {
+    load();
+    return super.getQuestion();
+  }
+
+  @Override public User getAuthor() {
+    load();
+    return super.getAuthor();
+  }
+
+  @Override public Set<StackExchangeAnswer> getAnswers() {
+    load();
+    return super.getAnswers();
+  }
+
+  @Override public Map<VoteType, Set<Vote>> getVoteMap() {
+    load();
+    return super.getVoteMap();
+  }
+
+  @Override public List<PostLink> getPostLinkList() {
+    load();
+    return super.getPostLinkList();
+  }
+
+  @Override public String getAcceptedAnswerText() {
+    load();
+    return super.getAcceptedAnswerText();
+  }
+
+  @Override public StackExchangeAnswer getAcceptedAnswer() {
+    load();
+    return super.getAcceptedAnswer();
+  }
+
+  @Override public String getTopVotedAnswerText() {
+    load();
+    return super.getTopVotedAnswerText();
+  }
+
+  @Override public String getConcatenatedAnswersText() {
+    load();
+    return super.getConcatenatedAnswersText();
+  }
+
+  @Override public String getConcatenatedTagsText() {
+    load();
+    return super.getConcatenatedTagsText();
+  }
+
+  @Override public void addAnswer(StackExchangeAnswer answer) {
+    load();
+    super.addAnswer(answer);
+  }
+
+  @Override public void addAllAnswers(Collection<StackExchangeAnswer> answers) {
+    load();
+    super.addAllAnswers(answers);
+  }
+
+  @Override public void addVoteToMap(Vote vote) {
+    load();
+    super.addVoteToMap(vote);
+  }
+
+  @Override public void addVotesToMap(Collection<Vote> votes) {
+    load();
+    super.addVotesToMap(votes);
+  }
+
+  @Override public void addPostLink(PostLink link) {
+    load();
+    super.addPostLink(link);
+  }
+
+  @Override public void addPostLinks(Collection<PostLink> links) {
+    load();
+    super.addPostLinks(links);
+  }
+
+  @Override public int getVoteCount(VoteType voteType) {
+    load();
+    return super.getVoteCount(voteType);
+  }
+
+  @Override public boolean isDuplicate() {
+    load();
+    return super.isDuplicate();
+  }
+
+  @Override public void analyzeSearchResults(Collection<TextAnalyzer> analyzers) {
+    load();
+    super.analyzeSearchResults(analyzers);
+  }
+
+  @Override public TextWithAnalysis getAnswerDocumentText() {
+    load();
+    return super.getAnswerDocumentText();
+  }
+
+  @Override public void setAnswerDocumentText(TextWithAnalysis answerText) {
+    load();
+    super.setAnswerDocumentText(answerText);
+  }
+
+  @Override public TextWithAnalysis getAnswerTitle() {
+    load();
+    return super.getAnswerTitle();
+  }
+
+  @Override public void setAnswerTitle(TextWithAnalysis answerTitle) {
+    load();
+    super.setAnswerTitle(answerTitle);
+  }
+
+  @Override public Collection<TextWithAnalysis> getQuestionVariants() {
+    load();
+    return super.getQuestionVariants();
+  }
+
+  @Override public void setQuestionVariants(Collection<TextWithAnalysis> questionVariants) {
+    load();
+    super.setQuestionVariants(questionVariants);
+  }
+
+  /**
+   * Discard the search results without loading them if they have not been loaded yet
+   */
+  @Override public void compact() {
+    synchronized (this) {
+      loader = null;
+      loaded = true;
+    }
+    super.compact();
+  }
+
+  @Override public String getComponentId() {
+    load();
+    return super.getComponentId();
+  }
+
+  @Override public String toString() {
+    load();
+    return super.toString();
+  }
+
+  @Override public int hashCode() {
+    return threadId;
+  }
+
+  @Override public boolean equals(Object obj) {
+    load();
+    if (obj instanceof LazyStackExchangeThread)
+      ((LazyStackExchangeThread) obj).load();
+    return super.equals(obj);
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    load();
+    out.defaultWriteObject();
+  }
+}
@@ -117,7 +117,8 @@ public class StackExchangeConstants {
    * An enum used to indicate the type of the statistics in the {@link IndexingStats}.
    */
   public enum IndexStatFieldName {
-    INDEX_DOC_NUM, INDEX_TIME, INDEX_THREAD_IDS, INDEX_DOCS_FIELD_TYPE, INDEX_DOCS_FIELD_NAME
+    INDEX_DOC_NUM, INDEX_TIME, INDEX_THREAD_IDS, INDEX_DOCS_FIELD_TYPE, INDEX_DOCS_FIELD_NAME, INDEX_BATCH_NUM,
+    INDEX_BATCH_LATENCIES, INDEX_THROUGHPUT
   };
 
   /**
@@ -146,6 +146,17 @@ public class StackExchangeThread extends CandidateAnswer implements java.io.Seri
     }
   }
 
+  /**
+   * Create an empty {@link StackExchangeThread} for a subclass that fills in its fields later
+   * 
+   * @param id - The ID of the question {@link Post}, used as the answer label
+   * @param componentId - A string identifying the component that generated this
+   *        {@link CandidateAnswer}
+   */
+  protected StackExchangeThread(int id, String componentId) {
+    super(Integer.toString(id), componentId);
+  }
+
   /**
    * @return The particular StackExchange site corresponding to this question (e.g.,
    *         "stackoverflow.com")
@@ -17,5 +17,7 @@ package com.ibm.watson.developer_cloud.professor_languo.pipeline;
 public class PipelineConstants {
   public static final String FEATURE_SEARCH_SCORE = "FEATURE_SEARCH_SCORE";
   public static final String FEATURE_SEARCH_RANK = "FEATURE_SEARCH_RANK";
+  public static final String FEATURE_NEAR_DUPLICATE_SIMILARITY = "FEATURE_NEAR_DUPLICATE_SIMILARITY";
+  public static final String FEATURE_NEAR_DUPLICATE_EXACT_TITLE = "FEATURE_NEAR_DUPLICATE_EXACT_TITLE";
 
 }
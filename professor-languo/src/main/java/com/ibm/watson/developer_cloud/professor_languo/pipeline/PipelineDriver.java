@@ -36,6 +36,7 @@ import com.ibm.watson.developer_cloud.professor_languo.configuration.Messages;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.QuestionAnswerSet;
 import com.ibm.watson.developer_cloud.professor_languo.exception.PipelineException;
 import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeQuestion;
+import com.ibm.watson.developer_cloud.professor_languo.metrics.MetricsRegistry;
 
 /**
  * This class is used to run training and test sets of {@link StackExchangeQuestion
@@ -129,6 +130,9 @@ public class PipelineDriver {
     // Terminate the pipeline
     pipeline.finish();
 
+    logger.info(MessageFormat.format(Messages.getString("RetrieveAndRank.PIPELINE_METRICS"), //$NON-NLS-1$
+        MetricsRegistry.getDefault().report()));
+
     long totalTime = System.currentTimeMillis() - startTime;
     logger.info(MessageFormat.format(Messages.getString("RetrieveAndRank.TOTAL_ELAPSED_TIME"), //$NON-NLS-1$
         PipelineDriver.class.getSimpleName(), DurationFormatUtils.formatDurationWords(totalTime, true, false)));
@@ -20,6 +20,7 @@ import com.ibm.watson.developer_cloud.professor_languo.api.AnswerPostprocessor;
 import com.ibm.watson.developer_cloud.professor_languo.api.PipelineQuestionAnswerer;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants;
 import com.ibm.watson.developer_cloud.professor_languo.exception.SearchException;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.answer_gen.NearDuplicateAnswerGenerator;
 import com.ibm.watson.developer_cloud.professor_languo.pipeline.answer_gen.StackExchangeThreadAnswerGenerator;
 import com.ibm.watson.developer_cloud.professor_languo.pipeline.evaluation.ResultWriter;
 import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.SingletonAnalyzer;
@@ -38,7 +39,10 @@ public class RetrieveAndRankPipelineQuestionAnswerer extends PipelineQuestionAns
 
     try {
       StackExchangeThreadAnswerGenerator candidateAnswerGenerator = new StackExchangeThreadAnswerGenerator();
-      addAnswerGenerationComponent(candidateAnswerGenerator);
+      if (properties.getProperty(ConfigurationConstants.NEAR_DUPLICATE_INDEX_PATH) != null)
+        addAnswerGenerationComponent(new NearDuplicateAnswerGenerator(candidateAnswerGenerator));
+      else
+        addAnswerGenerationComponent(candidateAnswerGenerator);
     } catch (SearchException e) {
       throw new RuntimeException(e);
     }
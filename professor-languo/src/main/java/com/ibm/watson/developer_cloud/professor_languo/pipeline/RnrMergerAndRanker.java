@@ -41,6 +41,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import rx.Observable;
+import rx.functions.Func1;
 
 import org.apache.wink.json4j.JSON;
 import org.apache.wink.json4j.JSONArray;
@@ -51,6 +52,7 @@ import com.ibm.watson.developer_cloud.professor_languo.api.AnswerMergerAndRanker
 import com.ibm.watson.developer_cloud.professor_languo.configuration.Messages;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.RetrieveAndRankConstants;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.CandidateAnswer;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.FeatureSchema;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.Question;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.QuestionAnswerSet.CorrectAnswer;
 import com.ibm.watson.developer_cloud.professor_languo.exception.PipelineException;
@@ -134,17 +136,23 @@ public class RnrMergerAndRanker implements AnswerMergerAndRanker {
    *        be one correct answer for each question.
    * 
    */
-  @Override public Observable<CandidateAnswer> mergeAndRankAnswers(Question question,
-      Observable<CandidateAnswer> answers, Collection<CorrectAnswer> correctAnswers) {
+  @Override public Observable<CandidateAnswer> mergeAndRankAnswers(final Question question,
+      Observable<CandidateAnswer> answers, final Collection<CorrectAnswer> correctAnswers) {
 
     client = RankerCreationUtil.createHttpClient(AuthScope.ANY, creds);
 
-    if (correctAnswers != null) { // TRAINING PHASE
-      train(question, answers, correctAnswers);
-      return answers;
-    } else { // TESTING PHASE
-      return apply(question, answers);
-    }
+    // The answers are collected once, when the last of them has been scored, rather than waited
+    // for, so no thread is held until then and the answers are not generated again
+    return answers.toList().concatMap(new Func1<List<CandidateAnswer>, Observable<CandidateAnswer>>() {
+      @Override public Observable<CandidateAnswer> call(List<CandidateAnswer> answerList) {
+        if (correctAnswers != null) { // TRAINING PHASE
+          train(question, answerList, correctAnswers);
+          return Observable.from(answerList);
+        } else { // TESTING PHASE
+          return Observable.from(apply(question, answerList));
+        }
+      }
+    });
   }
 
   @Override
@@ -200,12 +208,12 @@ public class RnrMergerAndRanker implements AnswerMergerAndRanker {
    * Save feature vectors of each candidate answer to a CSV file to send to the ranker for training
    * 
    * @param question
-   * @param answers
+   * @param candidate_answers
    * @param correctAnswers
    */
-  private void train(Question question, Observable<CandidateAnswer> answers, Collection<CorrectAnswer> correctAnswers) {
+  private synchronized void train(Question question, List<CandidateAnswer> candidate_answers,
+      Collection<CorrectAnswer> correctAnswers) {
 
-    List<CandidateAnswer> candidate_answers = answers.toList().toBlocking().first();
     // There may be no candidate answers if the query is completely
     // unrelated
     // to the corpus
@@ -260,17 +268,17 @@ public class RnrMergerAndRanker implements AnswerMergerAndRanker {
    * Rank {@code answers} to {@code question}
    * 
    * @param question {@link Question} from which {@link answers} are formed
-   * @param answers list of {@link CandidateAnswer}'s
+   * @param answerList list of {@link CandidateAnswer}'s
    * @return Ranked answers
    */
-  private Observable<CandidateAnswer> apply(Question question, Observable<CandidateAnswer> answers) {
+  private List<CandidateAnswer> apply(Question question, List<CandidateAnswer> answerList) {
 
     try {
       // Create authorized HttpClient
       CloseableHttpClient client = RankerCreationUtil.createHttpClient(AuthScope.ANY, creds);
 
       // Build feature vector data for candidate answers in csv format
-      String csvAnswerData = RankerCreationUtil.getCsvAnswerData(answers.toList().toBlocking().first(), null);
+      String csvAnswerData = RankerCreationUtil.getCsvAnswerData(answerList, null);
 
       // Send rank request
       String rank_request_url =
@@ -295,7 +303,6 @@ public class RnrMergerAndRanker implements AnswerMergerAndRanker {
 
       // Iterate through JSONArray of ranked answers and match with the
       // original
-      List<CandidateAnswer> answerList = answers.toList().toBlocking().first();
 
       // Set confidence to the top answers chosen by the ranker,
       // ignore the rest
@@ -315,21 +322,20 @@ public class RnrMergerAndRanker implements AnswerMergerAndRanker {
         }
       }
 
-      return Observable.from(rankedAnswerList);
+      return rankedAnswerList;
 
     } catch (ClientProtocolException e) {
       logger.error(e.getMessage());
     } catch (IOException e) {
       logger.error(e.getMessage());
       // Something wrong with the service. Set all confidence to 0
-      List<CandidateAnswer> answerList = answers.toList().toBlocking().first();
       for (CandidateAnswer answer : answerList) {
         answer.setConfidence(0);
       }
     } catch (Exception e) {
       logger.error(e.getMessage());
     }
-    return answers;
+    return answerList;
   }
 
   /**
@@ -487,15 +493,15 @@ public class RnrMergerAndRanker implements AnswerMergerAndRanker {
       String[] features) throws IOException {
 
     int qid = getQID();
+    int[] slots = new int[features.length];
+    for (int i = 0; i < features.length; i++)
+      slots[i] = FeatureSchema.slot(features[i]);
     for (CandidateAnswer answer : answers) {
 
       trainingData.append(qid);
 
-      for (int i = 0; i < features.length; i++) {
-        Double featureValue = answer.getFeatureValue(features[i]);
-        if (featureValue == null)
-          featureValue = 0d;
-        trainingData.append("," + featureValue);
+      for (int i = 0; i < slots.length; i++) {
+        trainingData.append(',').append(answer.getFeature(slots[i]));
       }
       trainingData.append("," + (CorrectAnswer.isCorrect(answer, correctAnswers) == true ? 1 : 0));
       trainingData.append("\n");
@@ -25,6 +25,7 @@ import rx.functions.Func1;
 
 import com.ibm.watson.developer_cloud.professor_languo.api.AnswerMergerAndRanker;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.CandidateAnswer;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.FeatureSchema;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.Question;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.QuestionAnswerSet.CorrectAnswer;
 
@@ -32,15 +33,13 @@ public class TrustingMergerAndRanker implements AnswerMergerAndRanker {
 
   private static final Logger logger = LogManager.getLogger();
   public static final String PROP_FEATURE_NAME = "TrustingMergerAndRanker.featureName";
-  private String trustedFeatureName;
+  private int trustedFeatureSlot;
 
   @Override public Observable<CandidateAnswer> mergeAndRankAnswers(Question question,
       Observable<CandidateAnswer> answers, Collection<CorrectAnswer> correctAnswers) {
     return answers.map(new Func1<CandidateAnswer, CandidateAnswer>() {
       @Override public CandidateAnswer call(CandidateAnswer answer) {
-        Double score = answer.getFeatureValue(trustedFeatureName);
-        if (score == null)
-          score = 0d;
+        double score = answer.getFeature(trustedFeatureSlot);
         answer.setConfidence(score);
         if (logger.isDebugEnabled())
           logger.debug(answer.getAnswerLabel() + " " + score);
@@ -51,7 +50,8 @@ public class TrustingMergerAndRanker implements AnswerMergerAndRanker {
   }
 
   @Override public void initialize(Properties properties) {
-    this.trustedFeatureName = properties.getProperty(PROP_FEATURE_NAME);
+    String trustedFeatureName = properties.getProperty(PROP_FEATURE_NAME);
+    this.trustedFeatureSlot = trustedFeatureName == null ? -1 : FeatureSchema.slot(trustedFeatureName);
   }
 
   @Override public void finishTraining() {
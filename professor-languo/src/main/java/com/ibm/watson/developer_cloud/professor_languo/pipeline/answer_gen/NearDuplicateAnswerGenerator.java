@@ -0,0 +1,291 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.pipeline.answer_gen;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.jsoup.Jsoup;
+
+import rx.Observable;
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+import com.ibm.watson.developer_cloud.professor_languo.api.AnswerGenerator;
+import com.ibm.watson.developer_cloud.professor_languo.api.BatchAnswerGenerator;
+import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants;
+import com.ibm.watson.developer_cloud.professor_languo.configuration.IndexerAndSearcherFactory;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.CandidateAnswer;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.Question;
+import com.ibm.watson.developer_cloud.professor_languo.exception.IngestionException;
+import com.ibm.watson.developer_cloud.professor_languo.exception.SearchException;
+import com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing.NearDuplicateIndex;
+import com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing.NearDuplicateIndexer;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeConstants.IndexDocumentFieldName;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeQuestion;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeThread;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.PipelineConstants;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.SearchHit;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.Searcher;
+
+/**
+ * The {@link NearDuplicateAnswerGenerator} looks a {@link Question} up in a
+ * {@link NearDuplicateIndex} and proposes the threads it near-duplicates as candidate answers,
+ * alongside the candidate answers of a search-based {@link AnswerGenerator}. When the best match is
+ * similar enough, the search is skipped entirely. Questions answered in batches are searched in a
+ * single batch when the search-based generator is itself a {@link BatchAnswerGenerator}.
+ * <p>
+ * Every candidate answer carries the near-duplicate similarity and exact-title features, which are
+ * zero for threads found only by the search.
+ */
+public class NearDuplicateAnswerGenerator implements BatchAnswerGenerator, Closeable {
+
+  public static final double DEFAULT_MIN_SIMILARITY = 0.5;
+  public static final double DEFAULT_SKIP_SEARCH_SIMILARITY = 0.9;
+
+  /** the name recorded as the generator of the hits of the near-duplicates **/
+  private static final String GENERATOR_NAME = NearDuplicateAnswerGenerator.class.getSimpleName();
+
+  private static final Comparator<NearDuplicateIndex.Match> BY_DECREASING_SIMILARITY =
+      new Comparator<NearDuplicateIndex.Match>() {
+        @Override public int compare(NearDuplicateIndex.Match m1, NearDuplicateIndex.Match m2) {
+          return Double.compare(m2.getSimilarity(), m1.getSimilarity());
+        }
+      };
+
+  private final AnswerGenerator searchAnswerGenerator;
+  private NearDuplicateIndex nearDuplicateIndex;
+  private Searcher indexSearcher;
+
+  private double minSimilarity;
+  private double skipSearchSimilarity;
+  private int maxMatches;
+
+  /**
+   * @param searchAnswerGenerator - the generator whose candidate answers are complemented with the
+   *        near-duplicates
+   */
+  public NearDuplicateAnswerGenerator(AnswerGenerator searchAnswerGenerator) {
+    this(searchAnswerGenerator, null, null);
+  }
+
+  public NearDuplicateAnswerGenerator(AnswerGenerator searchAnswerGenerator, NearDuplicateIndex nearDuplicateIndex,
+      Searcher indexSearcher) {
+    super();
+    this.searchAnswerGenerator = searchAnswerGenerator;
+    this.nearDuplicateIndex = nearDuplicateIndex;
+    this.indexSearcher = indexSearcher;
+  }
+
+  @Override public void initialize(Properties properties) {
+    searchAnswerGenerator.initialize(properties);
+
+    minSimilarity = Double.parseDouble(properties.getProperty(ConfigurationConstants.NEAR_DUPLICATE_MIN_SIMILARITY,
+        Double.toString(DEFAULT_MIN_SIMILARITY)));
+    skipSearchSimilarity = Double.parseDouble(properties.getProperty(
+        ConfigurationConstants.NEAR_DUPLICATE_SKIP_SEARCH_SIMILARITY, Double.toString(DEFAULT_SKIP_SEARCH_SIMILARITY)));
+    maxMatches = Integer.parseInt(properties.getProperty(ConfigurationConstants.CANDIDATE_ANSWER_NUM));
+
+    try {
+      if (nearDuplicateIndex == null)
+        nearDuplicateIndex = NearDuplicateIndex.load(NearDuplicateIndexer.getNearDuplicateIndexPath(properties));
+      if (indexSearcher == null)
+        indexSearcher = IndexerAndSearcherFactory.getSearcher(properties);
+    } catch (IngestionException | SearchException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override public Observable<CandidateAnswer> generateCandidateAnswers(Question question) {
+    Map<Integer, NearDuplicateIndex.Match> matches = findMatches(question);
+    if (skipsSearch(matches))
+      return nearDuplicates(matches, Collections.<Integer>emptySet());
+    return withNearDuplicates(searchAnswerGenerator.generateCandidateAnswers(question), matches);
+  }
+
+  /**
+   * Generate the answers of a batch of questions, searching the questions that are not answered by
+   * their near-duplicates alone in a single batch when the search-based generator is a
+   * {@link BatchAnswerGenerator}, or one at a time otherwise
+   */
+  @Override public List<Observable<CandidateAnswer>> generateCandidateAnswers(List<Question> questions) {
+    List<Map<Integer, NearDuplicateIndex.Match>> matches = new ArrayList<>(questions.size());
+    List<Question> searchedQuestions = new ArrayList<>();
+    for (Question question : questions) {
+      Map<Integer, NearDuplicateIndex.Match> questionMatches = findMatches(question);
+      matches.add(questionMatches);
+      if (!skipsSearch(questionMatches))
+        searchedQuestions.add(question);
+    }
+
+    List<Observable<CandidateAnswer>> searchAnswers;
+    if (searchAnswerGenerator instanceof BatchAnswerGenerator) {
+      searchAnswers = ((BatchAnswerGenerator) searchAnswerGenerator).generateCandidateAnswers(searchedQuestions);
+    } else {
+      searchAnswers = new ArrayList<>(searchedQuestions.size());
+      for (Question question : searchedQuestions)
+        searchAnswers.add(searchAnswerGenerator.generateCandidateAnswers(question));
+    }
+
+    List<Observable<CandidateAnswer>> answers = new ArrayList<>(questions.size());
+    int searched = 0;
+    for (Map<Integer, NearDuplicateIndex.Match> questionMatches : matches) {
+      if (skipsSearch(questionMatches))
+        answers.add(nearDuplicates(questionMatches, Collections.<Integer>emptySet()));
+      else
+        answers.add(withNearDuplicates(searchAnswers.get(searched++), questionMatches));
+    }
+    return answers;
+  }
+
+  /**
+   * @return the best near-duplicates of a question, by thread id
+   */
+  private Map<Integer, NearDuplicateIndex.Match> findMatches(Question question) {
+    // the index holds the unformatted text of each thread, so strip the markup of the question
+    String title, body;
+    if (question instanceof StackExchangeQuestion) {
+      title = Jsoup.parse(((StackExchangeQuestion) question).getTitleText()).text();
+      body = Jsoup.parse(((StackExchangeQuestion) question).getBodyText()).text();
+    } else {
+      title = question.getText();
+      body = "";
+    }
+
+    List<NearDuplicateIndex.Match> found = nearDuplicateIndex.findNearDuplicates(title, body, minSimilarity);
+    Map<Integer, NearDuplicateIndex.Match> matches = new HashMap<>();
+    for (NearDuplicateIndex.Match match : found.subList(0, Math.min(found.size(), maxMatches)))
+      matches.put(match.getThreadId(), match);
+    return matches;
+  }
+
+  /**
+   * @return whether the best near-duplicate is similar enough for the search to be skipped
+   */
+  private boolean skipsSearch(Map<Integer, NearDuplicateIndex.Match> matches) {
+    double bestSimilarity = 0;
+    for (NearDuplicateIndex.Match match : matches.values())
+      bestSimilarity = Math.max(bestSimilarity, match.getSimilarity());
+    return bestSimilarity >= skipSearchSimilarity;
+  }
+
+  /**
+   * Tag the threads the search finds, then add the near-duplicates it missed
+   */
+  private Observable<CandidateAnswer> withNearDuplicates(Observable<CandidateAnswer> searchAnswers,
+      final Map<Integer, NearDuplicateIndex.Match> matches) {
+    final Set<Integer> searched = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    Observable<CandidateAnswer> taggedAnswers = searchAnswers.map(new Func1<CandidateAnswer, CandidateAnswer>() {
+      @Override public CandidateAnswer call(CandidateAnswer answer) {
+        int threadId = ((StackExchangeThread) answer).getId();
+        searched.add(threadId);
+        setNearDuplicateFeatures(answer, matches.get(threadId));
+        return answer;
+      }
+    });
+    return taggedAnswers.concatWith(nearDuplicates(matches, searched));
+  }
+
+  /**
+   * Release the index searcher, and that of the search-based generator, once the pipeline is
+   * finished
+   */
+  @Override public void close() throws IOException {
+    try {
+      if (indexSearcher != null)
+        indexSearcher.close();
+    } finally {
+      if (searchAnswerGenerator instanceof Closeable)
+        ((Closeable) searchAnswerGenerator).close();
+    }
+  }
+
+  /**
+   * Load the matching threads from the search index once subscribed to. The documents of the threads
+   * are looked up by id in a single query, and the search score and rank of each thread are its
+   * similarity and its rank by decreasing similarity, rather than the meaningless scores of the
+   * lookup.
+   *
+   * @param matches - the near-duplicate matches, by thread id
+   * @param skip - the ids of threads that should not be loaded, read on subscription
+   * @return the matching threads, with the near-duplicate and search features set
+   */
+  private Observable<CandidateAnswer> nearDuplicates(final Map<Integer, NearDuplicateIndex.Match> matches,
+      final Set<Integer> skip) {
+    return Observable.defer(new Func0<Observable<CandidateAnswer>>() {
+      @Override public Observable<CandidateAnswer> call() {
+        List<NearDuplicateIndex.Match> ranked = new ArrayList<>();
+        BooleanQuery lookup = new BooleanQuery();
+        for (NearDuplicateIndex.Match match : matches.values()) {
+          if (skip.contains(match.getThreadId()))
+            continue;
+          ranked.add(match);
+          lookup.add(NumericRangeQuery.newIntRange(IndexDocumentFieldName.THREAD_POST_ID.toString(),
+              match.getThreadId(), match.getThreadId(), true, true), Occur.SHOULD);
+        }
+        if (ranked.isEmpty())
+          return Observable.empty();
+        Collections.sort(ranked, BY_DECREASING_SIMILARITY);
+
+        Map<Integer, SearchHit> documents = new HashMap<>();
+        try {
+          for (SearchHit document : indexSearcher.searchHits(lookup, GENERATOR_NAME))
+            documents.put(document.getThreadId(), document);
+        } catch (SearchException e) {
+          throw new RuntimeException(e);
+        }
+
+        final Map<Integer, SearchHit> hits = new LinkedHashMap<>();
+        for (NearDuplicateIndex.Match match : ranked) {
+          SearchHit document = documents.get(match.getThreadId());
+          if (document != null)
+            hits.put(match.getThreadId(), new SearchHit(document.getDocId(), match.getThreadId(),
+                match.getSimilarity(), hits.size() + 1, GENERATOR_NAME, document.getSource()));
+        }
+        List<SearchHit> rankedHits = new ArrayList<>(hits.values());
+        return indexSearcher.hydrateStream(rankedHits).map(new Func1<CandidateAnswer, CandidateAnswer>() {
+          @Override public CandidateAnswer call(CandidateAnswer answer) {
+            int threadId = ((StackExchangeThread) answer).getId();
+            setNearDuplicateFeatures(answer, matches.get(threadId));
+            // not every searcher records the score and rank of the hits it loads
+            answer.setFeatureValue(PipelineConstants.FEATURE_SEARCH_SCORE, hits.get(threadId).getScore());
+            answer.setFeatureValue(PipelineConstants.FEATURE_SEARCH_RANK, (double) hits.get(threadId).getRank());
+            return answer;
+          }
+        });
+      }
+    });
+  }
+
+  private static void setNearDuplicateFeatures(CandidateAnswer answer, NearDuplicateIndex.Match match) {
+    answer.setFeatureValue(PipelineConstants.FEATURE_NEAR_DUPLICATE_SIMILARITY,
+        match == null ? 0.0 : match.getSimilarity());
+    answer.setFeatureValue(PipelineConstants.FEATURE_NEAR_DUPLICATE_EXACT_TITLE,
+        match != null && match.isExactTitle() ? 1.0 : 0.0);
+  }
+}
@@ -14,41 +14,78 @@
 
 package com.ibm.watson.developer_cloud.professor_languo.pipeline.answer_gen;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.lucene.search.Query;
 
 import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
 
-import com.ibm.watson.developer_cloud.professor_languo.api.AnswerGenerator;
+import com.ibm.watson.developer_cloud.professor_languo.api.BatchAnswerGenerator;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.IndexerAndSearcherFactory;
-import com.ibm.watson.developer_cloud.professor_languo.configuration.Messages;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.CandidateAnswer;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.Question;
 import com.ibm.watson.developer_cloud.professor_languo.exception.SearchException;
 import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeThread;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.PipelineConstants;
 import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.QueryComponent;
 import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.QueryComponentFactory;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.SearchHit;
 import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.Searcher;
 import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.SingletonAnalyzer;
 
 /**
  * The {@link StackExchangeThreadAnswerGenerator} can generate a collection of candidate answers
  * given a {@link Question}.
+ * <p>
+ * The searches return lightweight hits, which are deduplicated by post ID before any thread is
+ * loaded, so each thread is deserialized at most once per question. The threads are streamed from
+ * the searcher, so each candidate answer can be scored as soon as its thread is loaded.
+ * <p>
+ * When more than one query generator thread is configured, the searches of the query components
+ * start on a bounded pool as soon as the answers are subscribed to, and no thread waits for them.
+ * The hits of each query component are claimed in the order of the components, as soon as its
+ * search and those of the components before it have completed, so that each post is claimed by the
+ * same component as in a sequential search. The threads of a component's new posts are then loaded
+ * by the thread delivering its hits: the thread subscribing to the answers if the searches have
+ * already completed, or else the pool thread completing the last search they were waiting for.
+ * <p>
+ * In combined mode, the queries of all the query components are scored together in a single pass
+ * over the index, and each candidate answer records the search score and rank it got from every
+ * query component as separate features.
+ * <p>
+ * When the pipeline answers a batch of questions, the queries of all the questions are sent to the
+ * searcher as one batch, and the threads of each question are loaded when its answers are
+ * processed.
  *
  */
-public class StackExchangeThreadAnswerGenerator implements AnswerGenerator {
+public class StackExchangeThreadAnswerGenerator implements BatchAnswerGenerator, Closeable {
 
   private List<QueryComponent> queryComponents;
   private Searcher indexSearcher;
 
+  /** whether to score the queries of all the query components in a single search **/
+  private boolean combined;
+
+  /** the pool running the searches of the query components, or null to run them in turn **/
+  private ExecutorService executor;
+  /** the scheduler running the searches on the pool **/
+  private Scheduler scheduler;
+
   public StackExchangeThreadAnswerGenerator() throws SearchException {
     super();
     this.queryComponents = new ArrayList<>();
@@ -76,49 +113,210 @@ public class StackExchangeThreadAnswerGenerator implements AnswerGenerator {
     } catch (SearchException e) {
       throw new RuntimeException(e);
     }
+
+    combined = Boolean.parseBoolean(properties.getProperty(ConfigurationConstants.QUERY_GENERATORS_COMBINED, "false"));
+    int generatorThreads = Math.min(queryComponents.size(),
+        Integer.parseInt(properties.getProperty(ConfigurationConstants.QUERY_GENERATOR_THREADS, "1")));
+    if (generatorThreads > 1) {
+      executor = Executors.newFixedThreadPool(generatorThreads);
+      scheduler = Schedulers.from(executor);
+    }
   }
 
-  @Override public Observable<CandidateAnswer> generateCandidateAnswers(Question question) {
-    List<CandidateAnswer> candidateAnswers = new ArrayList<>();
+  @Override public Observable<CandidateAnswer> generateCandidateAnswers(final Question question) {
+    if (combined)
+      return combinedSearch(question);
+
+    if (executor == null) {
+      Set<Integer> uniquePostIds = new HashSet<>();
+      List<SearchHit> uniqueHits = new ArrayList<>();
+
+      // Iterate over each QueryComponent, searching the index for each query
+      // and keeping the first hit of each post, then load the threads of
+      // the unique hits at once
+      for (QueryComponent q : this.queryComponents)
+        uniqueHits.addAll(claimNewPosts(searchHits(q, question), uniquePostIds));
+
+      return hydrate(uniqueHits);
+    }
+
+    // Search the index for every QueryComponent at once, then claim the posts of each search in
+    // the order of the components, loading the threads of a search's new posts as soon as it and
+    // the searches before it have completed
+    return Observable.defer(new Func0<Observable<CandidateAnswer>>() {
+      @Override public Observable<CandidateAnswer> call() {
+        final Set<Integer> uniquePostIds = new HashSet<>();
+        List<Observable<List<SearchHit>>> searches = new ArrayList<>(queryComponents.size());
+        for (final QueryComponent q : queryComponents) {
+          Observable<List<SearchHit>> search = Observable.defer(new Func0<Observable<List<SearchHit>>>() {
+            @Override public Observable<List<SearchHit>> call() {
+              return Observable.just(searchHits(q, question));
+            }
+          }).subscribeOn(scheduler).cache();
+          // start searching now, the errors are replayed to the subscriber of the answers
+          search.onErrorResumeNext(Observable.<List<SearchHit>>empty()).subscribe();
+          searches.add(search);
+        }
+        return Observable.concat(Observable.from(searches))
+            .concatMap(new Func1<List<SearchHit>, Observable<CandidateAnswer>>() {
+              @Override public Observable<CandidateAnswer> call(List<SearchHit> hits) {
+                return hydrate(claimNewPosts(hits, uniquePostIds));
+              }
+            });
+      }
+    });
+  }
+
+  /**
+   * Search the index for the queries of every {@link QueryComponent} for every question in a single
+   * batch, then merge the hits of each question as {@link #generateCandidateAnswers(Question)}
+   * does. Combined searches are not batched, since they already search a question's queries
+   * together.
+   */
+  @Override public List<Observable<CandidateAnswer>> generateCandidateAnswers(final List<Question> questions) {
+    List<Observable<CandidateAnswer>> answers = new ArrayList<>(questions.size());
+    if (combined) {
+      for (final Question question : questions) {
+        answers.add(Observable.defer(new Func0<Observable<CandidateAnswer>>() {
+          @Override public Observable<CandidateAnswer> call() {
+            return generateCandidateAnswers(question);
+          }
+        }));
+      }
+      return answers;
+    }
+
+    List<Query> queries = new ArrayList<>(questions.size() * queryComponents.size());
+    List<String> componentNames = new ArrayList<>(questions.size() * queryComponents.size());
+    List<List<SearchHit>> results;
+    try {
+      for (Question question : questions) {
+        for (QueryComponent q : this.queryComponents) {
+          queries.add(q.generateQuery(question));
+          componentNames.add(q.getClass().getSimpleName());
+        }
+      }
+      results = this.indexSearcher.searchHitsBatch(queries, componentNames);
+    } catch (SearchException e) {
+      throw new RuntimeException(e);
+    }
+
+    // keep the first hit of each post per question, and load the threads when the answers of the
+    // question are requested
+    int resultIndex = 0;
+    for (int i = 0; i < questions.size(); i++) {
+      Set<Integer> uniquePostIds = new HashSet<>();
+      final List<SearchHit> uniqueHits = new ArrayList<>();
+      for (int j = 0; j < queryComponents.size(); j++)
+        uniqueHits.addAll(claimNewPosts(results.get(resultIndex++), uniquePostIds));
+      answers.add(Observable.defer(new Func0<Observable<CandidateAnswer>>() {
+        @Override public Observable<CandidateAnswer> call() {
+          return hydrate(uniqueHits);
+        }
+      }));
+    }
+    return answers;
+  }
 
-    // Iterate over each QueryComponent, searching the index for each query
-    // and collecting all results
+  /**
+   * Search the index with the queries of all the {@link QueryComponent}s at once, keeping a single
+   * candidate answer per post ID with the search score and rank of every query component
+   */
+  private Observable<CandidateAnswer> combinedSearch(Question question) {
+    List<Query> queries = new ArrayList<>(queryComponents.size());
+    List<String> componentNames = new ArrayList<>(queryComponents.size());
+    List<List<SearchHit>> results;
     try {
       for (QueryComponent q : this.queryComponents) {
-        Query query = q.generateQuery(question);
-        Collection<CandidateAnswer> answers = this.indexSearcher.performSearch(query);
-        if (answers != null)
-          candidateAnswers.addAll(answers);
+        queries.add(q.generateQuery(question));
+        componentNames.add(q.getClass().getSimpleName());
       }
+      results = this.indexSearcher.searchCombinedHits(queries, componentNames);
     } catch (SearchException e) {
       throw new RuntimeException(e);
     }
 
-    mergeAnswers(candidateAnswers);
+    // merge the hits of every query by post ID before loading any thread
+    final Map<Integer, List<SearchHit>> hitsByPost = new LinkedHashMap<>();
+    for (List<SearchHit> hits : results) {
+      for (SearchHit hit : hits) {
+        List<SearchHit> postHits = hitsByPost.get(hit.getThreadId());
+        if (postHits == null) {
+          postHits = new ArrayList<>(results.size());
+          hitsByPost.put(hit.getThreadId(), postHits);
+        }
+        postHits.add(hit);
+      }
+    }
+    List<SearchHit> uniqueHits = new ArrayList<>(hitsByPost.size());
+    for (List<SearchHit> postHits : hitsByPost.values())
+      uniqueHits.add(postHits.get(0));
 
-    return Observable.from(candidateAnswers);
+    // every answer carries every query component's features, which are 0 when it did not match
+    final List<String> names = componentNames;
+    return hydrate(uniqueHits).map(new Func1<CandidateAnswer, CandidateAnswer>() {
+      @Override public CandidateAnswer call(CandidateAnswer answer) {
+        List<SearchHit> postHits = hitsByPost.get(((StackExchangeThread) answer).getId());
+        for (String componentName : names) {
+          double score = 0, rank = 0;
+          for (SearchHit hit : postHits) {
+            if (componentName.equals(hit.getGenerator())) {
+              score = hit.getScore();
+              rank = hit.getRank();
+              break;
+            }
+          }
+          answer.setFeatureValue(PipelineConstants.FEATURE_SEARCH_SCORE + "_" + componentName, score);
+          answer.setFeatureValue(PipelineConstants.FEATURE_SEARCH_RANK + "_" + componentName, rank);
+        }
+        return answer;
+      }
+    });
   }
 
-  private void mergeAnswers(Collection<? extends CandidateAnswer> candidateAnswers) {
-    Set<Integer> uniquePostIds = new HashSet<>();
-
-    // Iterate over all the candidate answers. If we find answers that share
-    // the
-    // same post ID, we will remove the duplicate answers from the
-    // collection
-    Iterator<? extends CandidateAnswer> it = candidateAnswers.iterator();
-    while (it.hasNext()) {
-      CandidateAnswer answer = it.next();
-      if (answer instanceof StackExchangeThread) {
-        StackExchangeThread thread = (StackExchangeThread) answer;
-        if (!uniquePostIds.add(thread.getId())) {
-          // This post ID was already added, thus remove this
-          // additional answer
-          it.remove();
-        }
-      } else
-        throw new RuntimeException(Messages.getString("RetrieveAndRank.BAD_CANDIDATE_ANSWER")); //$NON-NLS-1$
+  /**
+   * Search the index with the query of a single {@link QueryComponent}
+   */
+  private List<SearchHit> searchHits(QueryComponent q, Question question) {
+    try {
+      Query query = q.generateQuery(question);
+      return this.indexSearcher.searchHits(query, q.getClass().getSimpleName());
+    } catch (SearchException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Load the threads of search hits, passing each one on as soon as it is loaded
+   */
+  private Observable<CandidateAnswer> hydrate(List<SearchHit> hits) {
+    if (hits.isEmpty())
+      return Observable.empty();
+    return this.indexSearcher.hydrateStream(hits);
+  }
+
+  /**
+   * @param hits - the hits of a search
+   * @param uniquePostIds - the post IDs claimed so far, to which the IDs of the new posts are added
+   * @return the hits of the posts that had not been claimed yet
+   */
+  private static List<SearchHit> claimNewPosts(List<SearchHit> hits, Set<Integer> uniquePostIds) {
+    List<SearchHit> newHits = new ArrayList<>(hits.size());
+    for (SearchHit hit : hits) {
+      if (uniquePostIds.add(hit.getThreadId()))
+        newHits.add(hit);
     }
+    return newHits;
+  }
+
+  /**
+   * Release the index searcher once the pipeline is finished
+   */
+  @Override public void close() throws IOException {
+    if (executor != null)
+      executor.shutdown();
+    if (indexSearcher != null)
+      indexSearcher.close();
   }
 
 }
@@ -27,6 +27,7 @@ import org.apache.commons.csv.CSVPrinter;
 import rx.Observable;
 
 import com.ibm.watson.developer_cloud.professor_languo.api.AnswerPostprocessor;
+import com.ibm.watson.developer_cloud.professor_languo.api.PipelineQuestionAnswerer;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.Messages;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants.PipelineResultsTsvFileFormats;
@@ -66,6 +67,13 @@ public class ResultWriter implements AnswerPostprocessor {
       throw new RuntimeException(MessageFormat.format(Messages.getString("RetrieveAndRank.MISSING_PROPERTY"), //$NON-NLS-1$
           ConfigurationConstants.PIPELINE_RESULTS_TSV_FILE_FORMAT));
 
+    // the answers replayed from a checkpoint are not threads, so they have no title to write
+    if (this.format == PipelineResultsTsvFileFormats.VERBOSE
+        && properties.getProperty(PipelineQuestionAnswerer.PROP_CHECKPOINT_FILE) != null)
+      throw new RuntimeException(
+          new PipelineException(MessageFormat.format(Messages.getString("RetrieveAndRank.CHECKPOINT_FORMAT"), //$NON-NLS-1$
+              ResultWriter.class.getSimpleName(), this.format)));
+
     // Open a FileWriter, using CSV or TSV format depending on desired
     // output format
     try {
@@ -82,35 +90,12 @@ public class ResultWriter implements AnswerPostprocessor {
 
     if (question instanceof StackExchangeQuestion) {
       // Write out all of the answers to this question to the TSV file
-      // according to the desired format
+      // according to the desired format, without interleaving them with those of the questions
+      // answered at the same time, and flush them so they are not held until the end of the run
       try {
-        switch (this.format) {
-          case DEFAULT:
-            for (CandidateAnswer answer : answers.toBlocking().toIterable()) {
-              writer.printRecord(question.getId(), answer.getAnswerLabel(), answer.getConfidence(),
-                  CorrectAnswer.isCorrect(answer, correctAnswers));
-            }
-            break;
-
-          case VERBOSE:
-            for (CandidateAnswer answer : answers.toBlocking().toIterable()) {
-              if (answer instanceof StackExchangeThread) {
-                writer.printRecord(question.getId(), ((StackExchangeQuestion) question).getTitleText(),
-                    answer.getAnswerLabel(), ((StackExchangeThread) answer).getQuestion().getTitle(),
-                    answer.getConfidence(), CorrectAnswer.isCorrect(answer, correctAnswers));
-              }
-            }
-            break;
-
-          case COMPETITION:
-            ArrayList<String> record = new ArrayList<>();
-            record.add(question.getId());
-            for (CandidateAnswer answer : answers.toBlocking().toIterable()) {
-              record.add(answer.getAnswerLabel());
-              record.add(Double.toString(answer.getConfidence()));
-            }
-            writer.printRecord(record);
-            break;
+        synchronized (writer) {
+          writeAnswers(question, answers, correctAnswers);
+          writer.flush();
         }
       } catch (IOException e) {
         throw new RuntimeException(new PipelineException(e));
@@ -125,6 +110,41 @@ public class ResultWriter implements AnswerPostprocessor {
     return answers;
   }
 
+  /**
+   * Write out the answers to a question according to the desired format
+   */
+  private void writeAnswers(Question question, Observable<CandidateAnswer> answers,
+      Collection<CorrectAnswer> correctAnswers) throws IOException {
+    switch (this.format) {
+      case DEFAULT:
+        for (CandidateAnswer answer : answers.toBlocking().toIterable()) {
+          writer.printRecord(question.getId(), answer.getAnswerLabel(), answer.getConfidence(),
+              CorrectAnswer.isCorrect(answer, correctAnswers));
+        }
+        break;
+
+      case VERBOSE:
+        for (CandidateAnswer answer : answers.toBlocking().toIterable()) {
+          if (answer instanceof StackExchangeThread) {
+            writer.printRecord(question.getId(), ((StackExchangeQuestion) question).getTitleText(),
+                answer.getAnswerLabel(), ((StackExchangeThread) answer).getQuestion().getTitle(),
+                answer.getConfidence(), CorrectAnswer.isCorrect(answer, correctAnswers));
+          }
+        }
+        break;
+
+      case COMPETITION:
+        ArrayList<String> record = new ArrayList<>();
+        record.add(question.getId());
+        for (CandidateAnswer answer : answers.toBlocking().toIterable()) {
+          record.add(answer.getAnswerLabel());
+          record.add(Double.toString(answer.getConfidence()));
+        }
+        writer.printRecord(record);
+        break;
+    }
+  }
+
   @Override public void finishPostprocessing() {
     try {
       writer.close();
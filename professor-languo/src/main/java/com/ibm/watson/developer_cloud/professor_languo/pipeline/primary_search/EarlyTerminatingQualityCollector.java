@@ -0,0 +1,69 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FilterCollector;
+import org.apache.lucene.search.FilterLeafCollector;
+import org.apache.lucene.search.LeafCollector;
+
+import com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing.LuceneIndexer;
+
+/**
+ * A {@link Collector} that stops collecting a segment once it has seen a given number of hits in
+ * it. On an index built by the {@link LuceneIndexer} with documents sorted by decreasing thread
+ * quality, the hits seen are the highest-quality matches of the segment, so the wrapped collector
+ * ranks an approximate top-N without scoring the long tail of low-quality matches.
+ */
+public class EarlyTerminatingQualityCollector extends FilterCollector {
+
+  private final int numHitsPerSegment;
+  /** written by the leaf collectors of every slice when the segments are searched in parallel **/
+  private volatile boolean terminatedEarly = false;
+
+  /**
+   * @param in - the collector ranking the hits that are collected
+   * @param numHitsPerSegment - the number of hits to collect from each segment before moving on
+   */
+  public EarlyTerminatingQualityCollector(Collector in, int numHitsPerSegment) {
+    super(in);
+    this.numHitsPerSegment = numHitsPerSegment;
+  }
+
+  @Override public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+    return new FilterLeafCollector(super.getLeafCollector(context)) {
+      private int numCollected = 0;
+
+      @Override public void collect(int doc) throws IOException {
+        super.collect(doc);
+        if (++numCollected >= numHitsPerSegment) {
+          terminatedEarly = true;
+          throw new CollectionTerminatedException();
+        }
+      }
+    };
+  }
+
+  /**
+   * @return whether any segment had more matches than were collected
+   */
+  public boolean terminatedEarly() {
+    return terminatedEarly;
+  }
+}
@@ -14,41 +14,122 @@
 
 package com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
-import org.apache.lucene.document.Document;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.MultiPhraseQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryRescorer;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.search.spans.SpanQuery;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 
+import rx.Observable;
+import rx.Subscriber;
+
+import com.ibm.watson.developer_cloud.professor_languo.api.PipelineQuestionAnswerer;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.Messages;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.CandidateAnswer;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.FeatureSchema;
 import com.ibm.watson.developer_cloud.professor_languo.exception.IngestionException;
 import com.ibm.watson.developer_cloud.professor_languo.exception.SearchException;
+import com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing.LuceneIndexer;
 import com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing.StackExchangeThreadSerializer;
+import com.ibm.watson.developer_cloud.professor_languo.metrics.MetricsRegistry;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.LazyStackExchangeThread;
 import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeThread;
 import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeConstants.IndexDocumentFieldName;
 import com.ibm.watson.developer_cloud.professor_languo.pipeline.PipelineConstants;
 
 public class LuceneSearcher implements Searcher {
-  private IndexReader indexReader = null;
-  private IndexSearcher searcher = null;
+  private final static Logger logger = LogManager.getLogger(LuceneSearcher.class.getName());
+  private final static MetricsRegistry metrics = MetricsRegistry.getDefault();
+  private final static int SEARCH_SCORE_SLOT = FeatureSchema.slot(PipelineConstants.FEATURE_SEARCH_SCORE);
+  private final static int SEARCH_RANK_SLOT = FeatureSchema.slot(PipelineConstants.FEATURE_SEARCH_RANK);
+
+  /** by default check the index for changes every minute, reopening it if it was rebuilt **/
+  private final static int DEFAULT_REFRESH_SECONDS = 60;
+
+  /** the manager lending the searchers of the index to the searching threads **/
+  private SearcherManager searcherManager = null;
+
+  /** closed to give up this searcher's hold on the index **/
+  private Closeable indexHandle = null;
+
+  /** the hits of recent queries on the index, or <code>null</code> if they are not cached **/
+  private QueryResultCache queryCache = null;
+
+  /** drops the least selective terms of the queries, or <code>null</code> to search them whole **/
+  private QueryTermPruner termPruner = null;
+
+  /**
+   * the number of hits of a cheap term query that positional queries rescore, or 0 to run
+   * positional queries over the whole index. The cheap query only matches the thread titles and
+   * tags, so the threads a positional query matches only in their body are not found.
+   */
+  private int rescoreWindow = 0;
+
+  /**
+   * Whether the threads of the hits are only decoded when their content is first accessed
+   */
+  private boolean lazyHydration = false;
+
+  /**
+   * the number of hits whose threads are streamed in document id order before the next ones are
+   * loaded, which bounds how many threads are loaded before the first answer is emitted
+   */
+  int hydrationWindow = 16;
+
+  /** the work-stealing pool searching the queries of a batch, or null to search them in turn **/
+  private ForkJoinPool batchPool = null;
 
   /** by default pick out the top 20 candidate answers after the search **/
   private int candidateAnswerNum;
 
+  /**
+   * the number of hits collected per segment before the search moves on, or 0 to score every hit.
+   * Only used on indexes sorted by thread quality.
+   */
+  private int earlyTerminationHits = 0;
+
   /**
    * Creates a new {@link LuceneSearcher} that is <em>not</em> initialized.
    * 
@@ -63,10 +144,17 @@ public class LuceneSearcher implements Searcher {
     if (properties.getProperty(ConfigurationConstants.INDEX_DIR_TYPE)
         .equals(ConfigurationConstants.IndexDirTypes.FS.toString())) {
       String indexDirPath = resDirPath + properties.getProperty(ConfigurationConstants.INDEX_DIR);
+      boolean preload = Boolean.parseBoolean(properties.getProperty(ConfigurationConstants.INDEX_PRELOAD, "false"));
+      int searchThreads = getSearchThreads(properties);
+      int queryCacheSize = Integer.parseInt(properties.getProperty(ConfigurationConstants.QUERY_CACHE_SIZE, "0"));
+      int refreshSeconds = Integer.parseInt(properties.getProperty(ConfigurationConstants.INDEX_REFRESH_SECONDS,
+          Integer.toString(DEFAULT_REFRESH_SECONDS)));
       try {
-        Directory indexDir = FSDirectory.open(new File(indexDirPath).toPath());
-        indexReader = DirectoryReader.open(indexDir);
-        searcher = new IndexSearcher(indexReader);
+        SearcherRegistry.SharedSearcher sharedSearcher = SearcherRegistry.open(new File(indexDirPath).toPath(),
+            preload, searchThreads, queryCacheSize, refreshSeconds);
+        searcherManager = sharedSearcher.getSearcherManager();
+        queryCache = sharedSearcher.getQueryResultCache();
+        indexHandle = sharedSearcher;
       } catch (IOException e) {
         throw new SearchException(e);
       }
@@ -74,22 +162,428 @@ public class LuceneSearcher implements Searcher {
       throw new SearchException(Messages.getString("RetrieveAndRank.LUCENE_SEARCHER_INIT")); //$NON-NLS-1$
     }
     candidateAnswerNum = Integer.parseInt(properties.getProperty(ConfigurationConstants.CANDIDATE_ANSWER_NUM));
+
+    String earlyTerminationProp = properties.getProperty(ConfigurationConstants.SEARCH_EARLY_TERMINATION_HITS);
+    if (earlyTerminationProp != null) {
+      if (isSortedByQuality()) {
+        earlyTerminationHits = Math.max(candidateAnswerNum, Integer.parseInt(earlyTerminationProp));
+      } else {
+        logger.warn(Messages.getString("RetrieveAndRank.LUCENE_SEARCHER_NOT_SORTED")); //$NON-NLS-1$
+      }
+    }
+
+    QueryTermPruner pruner = new QueryTermPruner(
+        Integer.parseInt(properties.getProperty(ConfigurationConstants.QUERY_PRUNE_MAX_TERMS, "0")),
+        Double.parseDouble(properties.getProperty(ConfigurationConstants.QUERY_PRUNE_MAX_DF_RATIO, "1")));
+    termPruner = pruner.isEnabled() ? pruner : null;
+
+    rescoreWindow = Integer.parseInt(properties.getProperty(ConfigurationConstants.RESCORE_WINDOW, "0"));
+    if (rescoreWindow > 0)
+      rescoreWindow = Math.max(candidateAnswerNum, rescoreWindow);
+
+    int batchThreads = Integer.parseInt(properties.getProperty(ConfigurationConstants.SEARCH_BATCH_THREADS, "0"));
+    if (batchThreads > 1)
+      batchPool = new ForkJoinPool(batchThreads);
+
+    lazyHydration = Boolean.parseBoolean(properties.getProperty(ConfigurationConstants.LAZY_HYDRATION, "false"));
+  }
+
+  /**
+   * @param properties - the properties configuring the searcher and the pipeline
+   * @return the number of threads searching the segments of the index in parallel, or 0 to search
+   *         them on the calling thread
+   */
+  private static int getSearchThreads(Properties properties) {
+    int requested = Integer.parseInt(properties.getProperty(ConfigurationConstants.SEARCH_THREADS, "0"));
+    int pipelineThreads =
+        Integer.parseInt(properties.getProperty(PipelineQuestionAnswerer.PROP_NUM_THREADS, "1"));
+    int searchThreads = limitSearchThreads(requested, pipelineThreads, Runtime.getRuntime().availableProcessors());
+    if (searchThreads < requested)
+      logger.warn(Messages.getString("RetrieveAndRank.LUCENE_SEARCHER_THREADS_LIMITED") + searchThreads); //$NON-NLS-1$
+    return searchThreads;
+  }
+
+  /**
+   * Limit the search threads so that the pipeline threads, each of which may be searching at once,
+   * do not oversubscribe the cores between them. A single search thread is no faster than searching
+   * on the calling thread, so it is turned into 0.
+   *
+   * @param requested - the number of search threads requested
+   * @param pipelineThreads - the number of questions the pipeline answers concurrently
+   * @param cores - the number of available cores
+   * @return the number of search threads to use
+   */
+  static int limitSearchThreads(int requested, int pipelineThreads, int cores) {
+    int searchThreads = Math.min(requested, cores / Math.max(1, pipelineThreads));
+    return searchThreads > 1 ? searchThreads : 0;
+  }
+
+  /**
+   * @return whether the index was built with its documents in decreasing order of thread quality
+   * @throws SearchException
+   */
+  private boolean isSortedByQuality() throws SearchException {
+    try {
+      IndexSearcher searcher = searcherManager.acquire();
+      try {
+        return LuceneIndexer.INDEX_SORT_BY_QUALITY.equals(((DirectoryReader) searcher.getIndexReader())
+            .getIndexCommit().getUserData().get(LuceneIndexer.INDEX_SORT_COMMIT_KEY));
+      } finally {
+        searcherManager.release(searcher);
+      }
+    } catch (IOException e) {
+      throw new SearchException(e);
+    }
   }
 
   @Override public Set<CandidateAnswer> performSearch(Query query) throws SearchException {
-    TopScoreDocCollector collector = TopScoreDocCollector.create(candidateAnswerNum);
     try {
-      searcher.search(query, collector);
-      ScoreDoc[] hits = collector.topDocs().scoreDocs;
-      Set<CandidateAnswer> candidateAnswers = new HashSet<CandidateAnswer>();
-      int rank = 1;
-      for (ScoreDoc scoreDoc : hits) {
-        Document doc = searcher.doc(scoreDoc.doc);
-        byte[] binCode = doc.getBinaryValue(IndexDocumentFieldName.SERIALIZED_THREAD.toString()).bytes;
-        CandidateAnswer candidateAnswer = StackExchangeThreadSerializer.deserializeThreadFromBinArr(binCode);
-        candidateAnswer.setFeatureValue(PipelineConstants.FEATURE_SEARCH_SCORE, (double) scoreDoc.score);
-        candidateAnswer.setFeatureValue(PipelineConstants.FEATURE_SEARCH_RANK, (double) rank++);
-        candidateAnswers.add(candidateAnswer);
+      long cacheGeneration = queryCache == null ? 0 : queryCache.getGeneration();
+      IndexSearcher searcher = searcherManager.acquire();
+      try {
+        List<SearchHit> hits = searchHits(searcher, query, null, cacheGeneration);
+        return new LinkedHashSet<CandidateAnswer>(hydrate(searcher, hits));
+      } finally {
+        searcherManager.release(searcher);
+      }
+
+    } catch (IOException e) {
+      throw new SearchException(e);
+    }
+  }
+
+  @Override public List<SearchHit> searchHits(Query query, String generator) throws SearchException {
+    try {
+      long cacheGeneration = queryCache == null ? 0 : queryCache.getGeneration();
+      IndexSearcher searcher = searcherManager.acquire();
+      try {
+        return searchHits(searcher, query, generator, cacheGeneration);
+      } finally {
+        searcherManager.release(searcher);
+      }
+
+    } catch (IOException e) {
+      throw new SearchException(e);
+    }
+  }
+
+  /**
+   * Score every query in a single pass over each segment of the index: the documents matching any
+   * query are visited once, in order, and each query's own scorer scores the documents it matches
+   * into that query's top hits. Queries whose hits are cached are left out of the pass.
+   */
+  @Override public List<List<SearchHit>> searchCombinedHits(List<Query> queries, List<String> generators)
+      throws SearchException {
+    try {
+      long cacheGeneration = queryCache == null ? 0 : queryCache.getGeneration();
+      IndexSearcher searcher = searcherManager.acquire();
+      try {
+        List<List<SearchHit>> results = new ArrayList<List<SearchHit>>(queries.size());
+        List<Integer> misses = new ArrayList<Integer>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+          List<SearchHit> hits;
+          if (rescoreWindow > 0 && isPositional(queries.get(i))) {
+            // positional queries are rescored on the hits of a cheap query rather than scored in the pass
+            hits = searchHits(searcher, queries.get(i), generators.get(i), cacheGeneration);
+          } else {
+            hits = queryCache == null ? null : queryCache.get(cacheKey(queries.get(i), generators.get(i)));
+            if (hits == null)
+              misses.add(i);
+          }
+          results.add(hits);
+        }
+        if (misses.isEmpty())
+          return results;
+
+        Weight[] weights = new Weight[misses.size()];
+        TopScoreDocCollector[] collectors = new TopScoreDocCollector[misses.size()];
+        for (int i = 0; i < weights.length; i++) {
+          weights[i] = searcher.createNormalizedWeight(prune(searcher, queries.get(misses.get(i))), true);
+          collectors[i] = TopScoreDocCollector.create(candidateAnswerNum);
+        }
+        for (LeafReaderContext leaf : searcher.getIndexReader().leaves())
+          scoreLeaf(leaf, weights, collectors);
+
+        for (int i = 0; i < collectors.length; i++) {
+          int queryIndex = misses.get(i);
+          List<SearchHit> hits =
+              toSearchHits(searcher, collectors[i].topDocs().scoreDocs, generators.get(queryIndex));
+          if (queryCache != null)
+            queryCache.put(cacheKey(queries.get(queryIndex), generators.get(queryIndex)), hits, cacheGeneration);
+          results.set(queryIndex, hits);
+        }
+        return results;
+      } finally {
+        searcherManager.release(searcher);
+      }
+
+    } catch (IOException e) {
+      throw new SearchException(e);
+    }
+  }
+
+  /**
+   * Search a batch of queries on a single searcher of the index. The queries are spread over a
+   * work-stealing pool if batch search threads are configured, so a few slow queries do not hold
+   * up the rest of the batch.
+   */
+  @Override public List<List<SearchHit>> searchHitsBatch(final List<Query> queries, final List<String> generators)
+      throws SearchException {
+    try {
+      final long cacheGeneration = queryCache == null ? 0 : queryCache.getGeneration();
+      final IndexSearcher searcher = searcherManager.acquire();
+      try {
+        List<List<SearchHit>> results = new ArrayList<List<SearchHit>>(queries.size());
+        if (batchPool == null || queries.size() < 2) {
+          for (int i = 0; i < queries.size(); i++)
+            results.add(searchHits(searcher, queries.get(i), generators.get(i), cacheGeneration));
+          return results;
+        }
+
+        List<Callable<List<SearchHit>>> searches = new ArrayList<Callable<List<SearchHit>>>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+          final int queryIndex = i;
+          searches.add(new Callable<List<SearchHit>>() {
+            @Override public List<SearchHit> call() throws IOException {
+              return searchHits(searcher, queries.get(queryIndex), generators.get(queryIndex), cacheGeneration);
+            }
+          });
+        }
+        for (Future<List<SearchHit>> search : batchPool.invokeAll(searches))
+          results.add(search.get());
+        return results;
+      } finally {
+        searcherManager.release(searcher);
+      }
+
+    } catch (IOException e) {
+      throw new SearchException(e);
+    } catch (ExecutionException e) {
+      throw new SearchException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SearchException(e);
+    }
+  }
+
+  @Override public List<CandidateAnswer> hydrate(List<SearchHit> hits) throws SearchException {
+    try {
+      IndexSearcher searcher = searcherManager.acquire();
+      try {
+        return hydrate(searcher, hits);
+      } finally {
+        searcherManager.release(searcher);
+      }
+
+    } catch (IOException e) {
+      throw new SearchException(e);
+    }
+  }
+
+  /**
+   * Search the top hits of a query, or take them from the query cache if the query was searched
+   * recently
+   *
+   * @param cacheGeneration - the generation of the query cache read before the searcher was
+   *        acquired
+   */
+  private List<SearchHit> searchHits(IndexSearcher searcher, Query query, String generator, long cacheGeneration)
+      throws IOException {
+    String key = queryCache == null ? null : cacheKey(query, generator);
+    if (key != null) {
+      List<SearchHit> hits = queryCache.get(key);
+      if (hits != null)
+        return hits;
+    }
+    long start = System.nanoTime();
+    ScoreDoc[] scoreDocs = search(searcher, prune(searcher, query));
+    metrics.recordTime("search.lucene.query", start);
+    List<SearchHit> hits = toSearchHits(searcher, scoreDocs, generator);
+    if (key != null)
+      queryCache.put(key, hits, cacheGeneration);
+    return hits;
+  }
+
+  /**
+   * Search the top hits of a query. If a rescore window is set, a positional query is only run on
+   * the top hits of a cheap term query on the thread titles and tags, instead of the whole index,
+   * so the threads it matches only in their body are missed. A query whose terms cannot be
+   * extracted, such as a wildcard expanding to too many terms, is run over the whole index.
+   */
+  private ScoreDoc[] search(IndexSearcher searcher, Query query) throws IOException {
+    if (rescoreWindow <= 0 || !isPositional(query))
+      return searcher.search(query, new TopHitsCollectorManager()).scoreDocs;
+
+    Query firstPassQuery;
+    try {
+      // multi-term queries such as wildcards only have terms once rewritten against the index
+      firstPassQuery = firstPassQuery(searcher.rewrite(query));
+    } catch (UnsupportedOperationException | BooleanQuery.TooManyClauses e) {
+      if (logger.isDebugEnabled())
+        logger.debug(Messages.getString("RetrieveAndRank.RESCORE_SKIPPED") + query); //$NON-NLS-1$
+      return searcher.search(query, new TopHitsCollectorManager()).scoreDocs;
+    }
+    TopDocs firstPass = searcher.search(firstPassQuery, rescoreWindow);
+    TopDocs rescored = new QueryRescorer(query) {
+      @Override protected float combine(float firstPassScore, boolean secondPassMatches, float secondPassScore) {
+        return secondPassMatches ? secondPassScore : 0;
+      }
+    }.rescore(searcher, firstPass, candidateAnswerNum);
+
+    // drop the first pass hits the query itself does not match, as a full search would
+    List<ScoreDoc> matches = new ArrayList<ScoreDoc>(rescored.scoreDocs.length);
+    for (ScoreDoc scoreDoc : rescored.scoreDocs) {
+      if (scoreDoc.score > 0)
+        matches.add(scoreDoc);
+    }
+    return matches.toArray(new ScoreDoc[matches.size()]);
+  }
+
+  /**
+   * @return whether the query matches on term positions, which makes it expensive to run over the
+   *         whole index
+   */
+  static boolean isPositional(Query query) {
+    if (query instanceof SpanQuery || query instanceof PhraseQuery || query instanceof MultiPhraseQuery)
+      return true;
+    if (query instanceof BooleanQuery) {
+      for (BooleanClause clause : ((BooleanQuery) query).getClauses()) {
+        if (clause.getOccur() != Occur.MUST_NOT && isPositional(clause.getQuery()))
+          return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param query - a query rewritten against the index, so that every term it matches is known
+   * @return a query matching the thread titles and tags containing any of the terms of the given
+   *         query, regardless of their positions
+   * @throws UnsupportedOperationException if the terms of the query cannot be extracted
+   * @throws BooleanQuery.TooManyClauses if the query has too many terms
+   */
+  static Query firstPassQuery(Query query) {
+    Set<Term> terms = new HashSet<Term>();
+    query.extractTerms(terms);
+    Set<String> tokens = new LinkedHashSet<String>();
+    for (Term term : terms)
+      tokens.add(term.text());
+    BooleanQuery firstPass = new BooleanQuery();
+    for (String token : tokens) {
+      firstPass.add(new TermQuery(new Term(IndexDocumentFieldName.THREAD_TITLE.toString(), token)), Occur.SHOULD);
+      firstPass.add(new TermQuery(new Term(IndexDocumentFieldName.THREAD_TAGS.toString(), token)), Occur.SHOULD);
+    }
+    return firstPass;
+  }
+
+  /**
+   * @return the key of a query in the query cache, including the search settings that change its
+   *         hits since the cache is shared by every searcher of the index
+   */
+  private String cacheKey(Query query, String generator) {
+    return QueryResultCache.key(generator, query,
+        candidateAnswerNum + "/" + earlyTerminationHits + "/" + termPruner + "/" + rescoreWindow);
+  }
+
+  /**
+   * Drop the least selective terms of the query if pruning is enabled, logging how much was pruned
+   */
+  private Query prune(IndexSearcher searcher, Query query) throws IOException {
+    if (termPruner == null)
+      return query;
+    QueryTermPruner.Result result = termPruner.prune(searcher.getIndexReader(), query);
+    if (logger.isDebugEnabled())
+      logger.debug(Messages.getString("RetrieveAndRank.QUERY_PRUNED") + result); //$NON-NLS-1$
+    return result.getQuery();
+  }
+
+  /**
+   * Advance the scorers of every query over a segment together, collecting each matching document
+   * into the top hits of the queries that match it
+   */
+  private void scoreLeaf(LeafReaderContext leaf, Weight[] weights, TopScoreDocCollector[] collectors)
+      throws IOException {
+    Scorer[] scorers = new Scorer[weights.length];
+    LeafCollector[] leafCollectors = new LeafCollector[weights.length];
+    int[] collected = new int[weights.length];
+    for (int i = 0; i < weights.length; i++) {
+      scorers[i] = weights[i].scorer(leaf, leaf.reader().getLiveDocs());
+      if (scorers[i] != null) {
+        leafCollectors[i] = collectors[i].getLeafCollector(leaf);
+        leafCollectors[i].setScorer(scorers[i]);
+        scorers[i].nextDoc();
+      }
+    }
+
+    while (true) {
+      int doc = DocIdSetIterator.NO_MORE_DOCS;
+      for (Scorer scorer : scorers) {
+        if (scorer != null)
+          doc = Math.min(doc, scorer.docID());
+      }
+      if (doc == DocIdSetIterator.NO_MORE_DOCS)
+        return;
+
+      for (int i = 0; i < scorers.length; i++) {
+        if (scorers[i] == null || scorers[i].docID() != doc)
+          continue;
+        leafCollectors[i].collect(doc);
+        // on an index sorted by quality, stop this query once it has collected enough hits
+        if (earlyTerminationHits > 0 && ++collected[i] >= earlyTerminationHits)
+          scorers[i] = null;
+        else
+          scorers[i].nextDoc();
+      }
+    }
+  }
+
+  /**
+   * Turn the top documents of a search into {@link SearchHit}s, reading only the thread id of each
+   * document. The documents are read in id order, which reads the stored fields sequentially.
+   */
+  private static List<SearchHit> toSearchHits(IndexSearcher searcher, ScoreDoc[] scoreDocs, String generator)
+      throws IOException {
+    int[] docIds = new int[scoreDocs.length];
+    for (int i = 0; i < scoreDocs.length; i++)
+      docIds[i] = scoreDocs[i].doc;
+    int[] threadIds = new int[scoreDocs.length];
+    SingleStoredFieldVisitor visitor = new SingleStoredFieldVisitor(IndexDocumentFieldName.THREAD_POST_ID.toString());
+    for (int i : docIdOrder(docIds)) {
+      visitor.reset();
+      searcher.doc(docIds[i], visitor);
+      threadIds[i] = visitor.getNumericValue().intValue();
+    }
+
+    List<SearchHit> hits = new ArrayList<SearchHit>(scoreDocs.length);
+    for (int i = 0; i < scoreDocs.length; i++)
+      hits.add(new SearchHit(docIds[i], threadIds[i], scoreDocs[i].score, i + 1, generator, searcher.getIndexReader()));
+    return hits;
+  }
+
+  /**
+   * Load the threads of the given hits, recording the score and rank of each hit as features. A
+   * hit found on an earlier version of the index is looked up again by its thread id. With lazy
+   * hydration, the threads are only decoded when their content is first accessed. Otherwise only
+   * the serialized thread of each document is read, in document id order.
+   */
+  private List<CandidateAnswer> hydrate(IndexSearcher searcher, List<SearchHit> hits) throws SearchException {
+    try {
+      StackExchangeThread[] threads = new StackExchangeThread[hits.size()];
+      if (!lazyHydration) {
+        int[] docIds = docIds(searcher, hits);
+        SingleStoredFieldVisitor visitor = newSerializedThreadVisitor();
+        for (int i : docIdOrder(docIds)) {
+          if (docIds[i] >= 0)
+            threads[i] = loadThread(searcher, docIds[i], visitor);
+        }
+      }
+
+      List<CandidateAnswer> candidateAnswers = new ArrayList<CandidateAnswer>(hits.size());
+      for (int i = 0; i < threads.length; i++) {
+        if (lazyHydration)
+          candidateAnswers.add(lazyThread(hits.get(i)));
+        else if (threads[i] != null)
+          candidateAnswers.add(withSearchFeatures(threads[i], hits.get(i)));
       }
       return candidateAnswers;
 
@@ -98,13 +592,211 @@ public class LuceneSearcher implements Searcher {
     }
   }
 
+  /**
+   * Load the threads of the hits and push them to the subscriber as soon as it subscribes, holding
+   * a searcher of the index until every thread is loaded or the subscriber unsubscribes. The hits
+   * are loaded by windows of {@link #hydrationWindow} hits, in document id order within a window,
+   * and the answers are emitted in the order of the hits, each one as soon as the threads of the
+   * hits before it are loaded. The first answer is thus emitted after at most a window of threads
+   * has been loaded.
+   */
+  @Override public Observable<CandidateAnswer> hydrateStream(final List<SearchHit> hits) {
+    return Observable.create(new Observable.OnSubscribe<CandidateAnswer>() {
+      @Override public void call(Subscriber<? super CandidateAnswer> subscriber) {
+        try {
+          IndexSearcher searcher = searcherManager.acquire();
+          try {
+            if (lazyHydration) {
+              for (SearchHit hit : hits) {
+                if (subscriber.isUnsubscribed())
+                  return;
+                subscriber.onNext(lazyThread(hit));
+              }
+            } else {
+              SingleStoredFieldVisitor visitor = newSerializedThreadVisitor();
+              for (int from = 0; from < hits.size(); from += hydrationWindow) {
+                List<SearchHit> window = hits.subList(from, Math.min(hits.size(), from + hydrationWindow));
+                int[] docIds = docIds(searcher, window);
+                CandidateAnswer[] answers = new CandidateAnswer[window.size()];
+                boolean[] loaded = new boolean[window.size()];
+                int next = 0;
+                for (int i : docIdOrder(docIds)) {
+                  if (subscriber.isUnsubscribed())
+                    return;
+                  if (docIds[i] >= 0)
+                    answers[i] = withSearchFeatures(loadThread(searcher, docIds[i], visitor), window.get(i));
+                  loaded[i] = true;
+                  for (; next < answers.length && loaded[next]; next++) {
+                    if (answers[next] != null)
+                      subscriber.onNext(answers[next]);
+                    answers[next] = null;
+                  }
+                }
+              }
+            }
+          } finally {
+            searcherManager.release(searcher);
+          }
+          subscriber.onCompleted();
+
+        } catch (IOException | IngestionException e) {
+          subscriber.onError(new SearchException(e));
+        }
+      }
+    });
+  }
+
+  /**
+   * @return a thread of a hit that is only loaded when its content is first accessed
+   */
+  private CandidateAnswer lazyThread(SearchHit hit) {
+    return withSearchFeatures(new LazyStackExchangeThread(hit.getThreadId(), new ThreadLoader(hit)), hit);
+  }
+
+  /**
+   * Record the score and rank of a hit as features of its thread
+   */
+  private static CandidateAnswer withSearchFeatures(CandidateAnswer candidateAnswer, SearchHit hit) {
+    candidateAnswer.setFeature(SEARCH_SCORE_SLOT, hit.getScore());
+    candidateAnswer.setFeature(SEARCH_RANK_SLOT, hit.getRank());
+    return candidateAnswer;
+  }
+
+  /**
+   * @return the ids of the documents of the hits' threads in the searcher's index, -1 for the
+   *         threads no longer indexed
+   */
+  private static int[] docIds(IndexSearcher searcher, List<SearchHit> hits) throws IOException {
+    int[] docIds = new int[hits.size()];
+    for (int i = 0; i < docIds.length; i++)
+      docIds[i] = docId(searcher, hits.get(i));
+    return docIds;
+  }
+
+  /**
+   * @return the id of the document of the hit's thread in the searcher's index, or -1 if the thread
+   *         is no longer indexed
+   */
+  private static int docId(IndexSearcher searcher, SearchHit hit) throws IOException {
+    return hit.getSource() == searcher.getIndexReader() ? hit.getDocId() : findDocId(searcher, hit);
+  }
+
+  /**
+   * @return the positions of the given document ids, sorted by document id
+   */
+  private static int[] docIdOrder(final int[] docIds) {
+    Integer[] order = new Integer[docIds.length];
+    for (int i = 0; i < order.length; i++)
+      order[i] = i;
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override public int compare(Integer i1, Integer i2) {
+        return Integer.compare(docIds[i1], docIds[i2]);
+      }
+    });
+    int[] positions = new int[order.length];
+    for (int i = 0; i < order.length; i++)
+      positions[i] = order[i];
+    return positions;
+  }
+
+  private static SingleStoredFieldVisitor newSerializedThreadVisitor() {
+    return new SingleStoredFieldVisitor(IndexDocumentFieldName.SERIALIZED_THREAD.toString());
+  }
+
+  /**
+   * Decode the thread of a document, reading only its serialized thread field
+   */
+  private static StackExchangeThread loadThread(IndexSearcher searcher, int docId, SingleStoredFieldVisitor visitor)
+      throws IOException, IngestionException {
+    long start = System.nanoTime();
+    visitor.reset();
+    searcher.doc(docId, visitor);
+    StackExchangeThread thread = StackExchangeThreadSerializer.deserializeThreadFromBinArr(visitor.getBinaryValue());
+    metrics.recordTime("search.lucene.deserialization", start);
+    return thread;
+  }
+
+  /**
+   * Loads the thread of a hit for a {@link LazyStackExchangeThread}, from the index as it is when
+   * the thread is first accessed
+   */
+  private class ThreadLoader implements Callable<StackExchangeThread> {
+    private final SearchHit hit;
+
+    private ThreadLoader(SearchHit hit) {
+      this.hit = hit;
+    }
+
+    @Override public StackExchangeThread call() throws IOException, IngestionException, SearchException {
+      IndexSearcher searcher = searcherManager.acquire();
+      try {
+        int docId = docId(searcher, hit);
+        if (docId < 0)
+          throw new SearchException(Messages.getString("RetrieveAndRank.THREAD_NOT_INDEXED") + hit.getThreadId()); //$NON-NLS-1$
+        return loadThread(searcher, docId, newSerializedThreadVisitor());
+      } finally {
+        searcherManager.release(searcher);
+      }
+    }
+  }
+
+  /**
+   * @return the id of the document of the hit's thread in the current index, or -1 if the thread
+   *         is no longer indexed
+   */
+  private static int findDocId(IndexSearcher searcher, SearchHit hit) throws IOException {
+    ScoreDoc[] scoreDocs = searcher.search(NumericRangeQuery.newIntRange(
+        IndexDocumentFieldName.THREAD_POST_ID.toString(), hit.getThreadId(), hit.getThreadId(), true, true), 1).scoreDocs;
+    return scoreDocs.length == 0 ? -1 : scoreDocs[0].doc;
+  }
+
+  /**
+   * Collects the top hits of each slice of the index, which are searched in parallel when the
+   * searcher has an executor, and merges them into the overall top hits
+   */
+  private class TopHitsCollectorManager implements CollectorManager<Collector, TopDocs> {
+    private final List<TopScoreDocCollector> sliceCollectors = new ArrayList<TopScoreDocCollector>();
+
+    @Override public synchronized Collector newCollector() throws IOException {
+      TopScoreDocCollector collector = TopScoreDocCollector.create(candidateAnswerNum);
+      sliceCollectors.add(collector);
+      if (earlyTerminationHits > 0)
+        return new EarlyTerminatingQualityCollector(collector, earlyTerminationHits);
+      return collector;
+    }
+
+    @Override public synchronized TopDocs reduce(Collection<Collector> collectors) throws IOException {
+      TopDocs[] sliceTopDocs = new TopDocs[sliceCollectors.size()];
+      for (int i = 0; i < sliceTopDocs.length; i++)
+        sliceTopDocs[i] = sliceCollectors.get(i).topDocs();
+      return TopDocs.merge(candidateAnswerNum, sliceTopDocs);
+    }
+  }
+
+  /**
+   * Give up this searcher's hold on the index after all the search action have been performed. The
+   * index itself is closed once no other searcher is using it.
+   * 
+   * @throws IOException
+   */
+  @Override public void close() throws IOException {
+    if (batchPool != null) {
+      batchPool.shutdown();
+      batchPool = null;
+    }
+    if (indexHandle != null) {
+      indexHandle.close();
+      indexHandle = null;
+    }
+  }
+
   /**
    * Close the index reader after all the search action have been performed
    * 
    * @throws IOException
    */
   public void closeIndexReader() throws IOException {
-    indexReader.close();
+    close();
   }
 
   /**
@@ -150,8 +842,8 @@ public class LuceneSearcher implements Searcher {
    */
   private void initialize(Directory indexDir) throws SearchException {
     try {
-      indexReader = DirectoryReader.open(indexDir);
-      searcher = new IndexSearcher(indexReader);
+      searcherManager = new SearcherManager(indexDir, null);
+      indexHandle = searcherManager;
     } catch (IOException e) {
       throw new SearchException(e);
     }
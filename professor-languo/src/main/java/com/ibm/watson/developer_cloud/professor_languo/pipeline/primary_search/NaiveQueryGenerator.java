@@ -27,7 +27,6 @@ import org.apache.lucene.search.BooleanClause.Occur;
 
 import com.ibm.watson.developer_cloud.professor_languo.data_model.Question;
 import com.ibm.watson.developer_cloud.professor_languo.exception.SearchException;
-import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeQuestion;
 import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeConstants.IndexDocumentFieldName;
 
 public abstract class NaiveQueryGenerator implements QueryComponent {
@@ -55,18 +54,16 @@ public abstract class NaiveQueryGenerator implements QueryComponent {
    * @throws SearchException
    */
   protected Query createNaiveNgramQuery(Question question, int gap) throws SearchException {
-    return createNaiveQuery(question, new NgramAnalyzer(gap));
+    return createNaiveQuery(question, NgramAnalyzer.forGap(gap));
   }
 
   private Query createNaiveQuery(Question question, Analyzer analyzer) throws SearchException {
     List<String> tokens;
-    StackExchangeQuestion queryQuestion = (StackExchangeQuestion) question;
-    String title = queryQuestion.getTitleText();
     List<TermQuery> termQueries = new ArrayList<TermQuery>();
     BooleanQuery query = new BooleanQuery();
 
     try {
-      tokens = AnalyzerUtils.collectTokens(analyzer, title);
+      tokens = QuestionAnalysisCache.titleTokens(question, analyzer);
       for (String token : tokens)
         termQueries.add(new TermQuery(new Term(IndexDocumentFieldName.THREAD_TITLE.toString(), token.trim())));// TODO:
       for (TermQuery q : termQueries)
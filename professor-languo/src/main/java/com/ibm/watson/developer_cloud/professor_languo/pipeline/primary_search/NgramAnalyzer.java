@@ -14,6 +14,9 @@
 
 package com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.core.LowerCaseFilter;
 import org.apache.lucene.analysis.core.StopAnalyzer;
@@ -30,6 +33,28 @@ public class NgramAnalyzer extends StopwordAnalyzerBase {
 
   public static final CharArraySet STOP_WORDS_SET = StopAnalyzer.ENGLISH_STOP_WORDS_SET;
 
+  /** the shared analyzers of each gap, see {@link #forGap(int)} **/
+  private static final ConcurrentMap<Integer, NgramAnalyzer> SHARED = new ConcurrentHashMap<Integer, NgramAnalyzer>();
+
+  /**
+   * Return the shared analyzer of the given gap with the default stop words. Analyzers reuse their
+   * token stream components per thread, so sharing them spares building a new filter chain for
+   * every question.
+   *
+   * @param gap - the maximum number of tokens in a shingle
+   * @return the shared analyzer
+   */
+  public static NgramAnalyzer forGap(int gap) {
+    NgramAnalyzer analyzer = SHARED.get(gap);
+    if (analyzer == null) {
+      NgramAnalyzer newAnalyzer = new NgramAnalyzer(gap);
+      analyzer = SHARED.putIfAbsent(gap, newAnalyzer);
+      if (analyzer == null)
+        analyzer = newAnalyzer;
+    }
+    return analyzer;
+  }
+
   public NgramAnalyzer(CharArraySet stopWords) {
     super(stopWords);
   }
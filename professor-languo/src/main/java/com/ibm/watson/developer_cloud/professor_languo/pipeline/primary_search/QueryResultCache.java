@@ -0,0 +1,159 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.search.Query;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * A bounded, thread-safe cache of the {@link SearchHit}s of recent queries, evicting the least
+ * recently used queries first. Queries are keyed on the query generator that built them and on
+ * their analyzed form, so equivalent questions share an entry. The cache only holds lightweight
+ * hits, the threads are still loaded by {@link Searcher#hydrate(List)}.
+ * <p>
+ * The cached hits are only valid for the version of the index they were found on, so the cache
+ * must be invalidated whenever the index is reopened. Searches still running on the previous
+ * version must not repopulate it, so callers read {@link #getGeneration()} before acquiring their
+ * searcher and hand it back to {@link #put(String, List, long)}.
+ */
+public class QueryResultCache {
+
+  /** rough size of a cached hit and of the bookkeeping of an entry, for the footprint estimate **/
+  private static final long HIT_BYTES = 48;
+  private static final long ENTRY_BYTES = 96;
+
+  private final Cache<String, List<SearchHit>> cache;
+  private final AtomicLong estimatedBytes = new AtomicLong();
+  private volatile long generation = 0;
+
+  /**
+   * @param maxEntries - the number of queries to hold before evicting the least recently used ones
+   */
+  public QueryResultCache(long maxEntries) {
+    cache = CacheBuilder.newBuilder().maximumSize(maxEntries).recordStats()
+        .removalListener(new RemovalListener<String, List<SearchHit>>() {
+          @Override public void onRemoval(RemovalNotification<String, List<SearchHit>> notification) {
+            estimatedBytes.addAndGet(-estimateBytes(notification.getKey(), notification.getValue()));
+          }
+        }).build();
+  }
+
+  /**
+   * @param generator - the name of the query generator that built the query, may be
+   *        <code>null</code>
+   * @param query - the analyzed query
+   * @param searchParams - the parameters of the search that change its hits, such as the number of
+   *        hits
+   * @return the key of the query in the cache
+   */
+  public static String key(String generator, Query query, String searchParams) {
+    return generator + '\u0000' + searchParams + '\u0000' + query.toString();
+  }
+
+  /**
+   * @param key - the key of a query
+   * @return the cached hits of the query, or <code>null</code> if it is not cached
+   */
+  public List<SearchHit> get(String key) {
+    return cache.getIfPresent(key);
+  }
+
+  /**
+   * @return the number of times the cache has been invalidated, to be passed to
+   *         {@link #put(String, List, long)}
+   */
+  public long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Cache the hits of a query, unless the cache was invalidated since the search started
+   *
+   * @param key - the key of a query
+   * @param hits - the hits of the query
+   * @param searchGeneration - the generation of the cache read before the search started
+   */
+  public synchronized void put(String key, List<SearchHit> hits, long searchGeneration) {
+    if (searchGeneration != generation)
+      return;
+    List<SearchHit> cachedHits = Collections.unmodifiableList(hits);
+    estimatedBytes.addAndGet(estimateBytes(key, cachedHits));
+    cache.put(key, cachedHits);
+  }
+
+  /**
+   * Drop every cached query, typically because the index was reopened
+   */
+  public synchronized void invalidateAll() {
+    generation++;
+    cache.invalidateAll();
+  }
+
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+
+  /**
+   * @return the fraction of lookups that found the query in the cache
+   */
+  public double getHitRate() {
+    return cache.stats().hitRate();
+  }
+
+  /**
+   * @return the number of queries evicted to keep the cache within its bounds
+   */
+  public long getEvictionCount() {
+    return cache.stats().evictionCount();
+  }
+
+  /**
+   * @return the number of queries in the cache
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  /**
+   * @return an estimate of the memory held by the cached queries, in bytes
+   */
+  public long getEstimatedBytes() {
+    return estimatedBytes.get();
+  }
+
+  @Override public String toString() {
+    CacheStats stats = cache.stats();
+    return "QueryResultCache [size=" + cache.size() + ", hits=" + stats.hitCount() + ", misses=" + stats.missCount()
+        + ", hitRate=" + stats.hitRate() + ", evictions=" + stats.evictionCount() + ", estimatedBytes="
+        + estimatedBytes.get() + "]";
+  }
+
+  private static long estimateBytes(String key, List<SearchHit> hits) {
+    return ENTRY_BYTES + 2L * key.length() + HIT_BYTES * hits.size();
+  }
+}
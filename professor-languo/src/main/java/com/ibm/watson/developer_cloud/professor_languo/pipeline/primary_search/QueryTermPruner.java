@@ -0,0 +1,219 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+
+/**
+ * Prunes the optional clauses of the queries built by the query generators down to their most
+ * selective terms. The generators add one clause per title token and field, and more for every
+ * n-gram, so long questions produce hundreds of clauses, most of them on common terms that cost a
+ * lot of postings to score and add little to the ranking.
+ * <p>
+ * The clauses of a query are grouped by the tokens they search for, so that a token is kept or
+ * dropped in every field at once. A group's document frequency is the highest document frequency
+ * of its clauses, a clause searching several tokens counting the rarest of them. Groups above the
+ * maximum document frequency ratio are dropped, then only the most selective groups are kept. The
+ * most selective group is always kept, so a query never loses all of its optional clauses.
+ */
+public class QueryTermPruner {
+
+  private final int maxTerms;
+  private final double maxDfRatio;
+
+  /**
+   * The outcome of pruning a query
+   */
+  public static class Result {
+    private final Query query;
+    private final int clauses;
+    private final int keptClauses;
+    private final long savedPostings;
+
+    private Result(Query query, int clauses, int keptClauses, long savedPostings) {
+      this.query = query;
+      this.clauses = clauses;
+      this.keptClauses = keptClauses;
+      this.savedPostings = savedPostings;
+    }
+
+    /**
+     * @return the pruned query
+     */
+    public Query getQuery() {
+      return query;
+    }
+
+    /**
+     * @return the number of clauses of the original query
+     */
+    public int getClauses() {
+      return clauses;
+    }
+
+    /**
+     * @return the number of clauses kept in the pruned query
+     */
+    public int getKeptClauses() {
+      return keptClauses;
+    }
+
+    /**
+     * @return the estimated cost saved by the pruning, as the number of postings of the terms of the
+     *         dropped clauses
+     */
+    public long getSavedPostings() {
+      return savedPostings;
+    }
+
+    @Override public String toString() {
+      return "kept " + keptClauses + "/" + clauses + " clauses, saved ~" + savedPostings + " postings";
+    }
+  }
+
+  /**
+   * @param maxTerms - the number of tokens to keep, or 0 to keep every token under the ratio
+   * @param maxDfRatio - the highest ratio of documents a kept token may appear in, or 1 to keep
+   *        tokens regardless of their frequency
+   */
+  public QueryTermPruner(int maxTerms, double maxDfRatio) {
+    this.maxTerms = maxTerms;
+    this.maxDfRatio = maxDfRatio;
+  }
+
+  /**
+   * @return whether this pruner may drop any clause
+   */
+  public boolean isEnabled() {
+    return maxTerms > 0 || maxDfRatio < 1;
+  }
+
+  /**
+   * Prune the optional clauses of a {@link BooleanQuery}. Other queries, required and prohibited
+   * clauses and clauses whose terms cannot be extracted are left untouched.
+   *
+   * @param reader - the reader whose document frequencies select the terms
+   * @param query - the query to prune
+   * @return the pruned query and how much was pruned
+   * @throws IOException
+   */
+  public Result prune(IndexReader reader, Query query) throws IOException {
+    if (!(query instanceof BooleanQuery))
+      return new Result(query, 1, 1, 0);
+    BooleanQuery booleanQuery = (BooleanQuery) query;
+    BooleanClause[] clauses = booleanQuery.getClauses();
+
+    // group the prunable clauses by the tokens they search for, in query order
+    Map<Set<String>, ClauseGroup> groups = new LinkedHashMap<Set<String>, ClauseGroup>();
+    for (BooleanClause clause : clauses) {
+      if (clause.getOccur() != Occur.SHOULD)
+        continue;
+      Set<Term> terms = extractTerms(clause.getQuery());
+      if (terms == null || terms.isEmpty())
+        continue;
+      Set<String> tokens = new TreeSet<String>();
+      long clauseDf = Long.MAX_VALUE, clausePostings = 0;
+      for (Term term : terms) {
+        tokens.add(term.text());
+        int df = reader.docFreq(term);
+        clauseDf = Math.min(clauseDf, df);
+        clausePostings += df;
+      }
+      ClauseGroup group = groups.get(tokens);
+      if (group == null) {
+        group = new ClauseGroup();
+        groups.put(tokens, group);
+      }
+      group.clauses.add(clause);
+      group.docFreq = Math.max(group.docFreq, clauseDf);
+      group.postings += clausePostings;
+    }
+    if (groups.isEmpty())
+      return new Result(query, clauses.length, clauses.length, 0);
+
+    List<ClauseGroup> ranked = new ArrayList<ClauseGroup>(groups.values());
+    Collections.sort(ranked, new Comparator<ClauseGroup>() {
+      @Override public int compare(ClauseGroup g1, ClauseGroup g2) {
+        return Long.compare(g1.docFreq, g2.docFreq);
+      }
+    });
+    long maxDocFreq = (long) (maxDfRatio * reader.maxDoc());
+    Set<BooleanClause> dropped = Collections.newSetFromMap(new IdentityHashMap<BooleanClause, Boolean>());
+    long savedPostings = 0;
+    for (int i = 0; i < ranked.size(); i++) {
+      ClauseGroup group = ranked.get(i);
+      boolean keep = i == 0 || ((maxTerms <= 0 || i < maxTerms) && (maxDfRatio >= 1 || group.docFreq <= maxDocFreq));
+      if (!keep) {
+        dropped.addAll(group.clauses);
+        savedPostings += group.postings;
+      }
+    }
+    if (dropped.isEmpty())
+      return new Result(query, clauses.length, clauses.length, 0);
+
+    BooleanQuery pruned = new BooleanQuery(booleanQuery.isCoordDisabled());
+    pruned.setBoost(booleanQuery.getBoost());
+    pruned.setMinimumNumberShouldMatch(booleanQuery.getMinimumNumberShouldMatch());
+    for (BooleanClause clause : clauses) {
+      if (!dropped.contains(clause))
+        pruned.add(clause);
+    }
+    return new Result(pruned, clauses.length, pruned.clauses().size(), savedPostings);
+  }
+
+  /**
+   * @return the terms of the query, or <code>null</code> if they cannot be extracted without
+   *         rewriting it
+   */
+  private static Set<Term> extractTerms(Query query) {
+    Set<Term> terms = new HashSet<Term>();
+    try {
+      query.extractTerms(terms);
+    } catch (UnsupportedOperationException e) {
+      return null;
+    }
+    return terms;
+  }
+
+  /**
+   * The clauses of a query searching for the same tokens
+   */
+  private static class ClauseGroup {
+    private final List<BooleanClause> clauses = new ArrayList<BooleanClause>();
+    private long docFreq = 0;
+    private long postings = 0;
+  }
+
+  @Override public String toString() {
+    return "QueryTermPruner [maxTerms=" + maxTerms + ", maxDfRatio=" + maxDfRatio + "]";
+  }
+}
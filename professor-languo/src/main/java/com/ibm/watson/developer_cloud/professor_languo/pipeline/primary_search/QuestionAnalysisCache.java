@@ -0,0 +1,74 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.lucene.analysis.Analyzer;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.Question;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeQuestion;
+
+/**
+ * Holds the tokens of the title of each question being answered, per analyzer, so that the
+ * {@link QueryComponent}s building queries for the same question run each analysis chain once
+ * between them. Questions are held weakly and compared by identity, so their tokens are dropped
+ * along with the question once it has been answered.
+ * <p>
+ * Analyzers are compared by identity too, which is why the query generators share their analyzers
+ * through {@link SingletonAnalyzer} and {@link NgramAnalyzer#forGap(int)} rather than creating new
+ * ones.
+ */
+public final class QuestionAnalysisCache {
+
+  private static final LoadingCache<Question, ConcurrentMap<Analyzer, List<String>>> TOKENS =
+      CacheBuilder.newBuilder().weakKeys()
+          .build(new CacheLoader<Question, ConcurrentMap<Analyzer, List<String>>>() {
+            @Override public ConcurrentMap<Analyzer, List<String>> load(Question question) {
+              return new ConcurrentHashMap<Analyzer, List<String>>();
+            }
+          });
+
+  private QuestionAnalysisCache() {}
+
+  /**
+   * Return the tokens of the question's title, analyzing the title only the first time they are
+   * asked for with the given analyzer
+   *
+   * @param question - the question being answered
+   * @param analyzer - the analyzer tokenizing the title
+   * @return the unmodifiable list of tokens of the title
+   * @throws IOException
+   */
+  public static List<String> titleTokens(Question question, Analyzer analyzer) throws IOException {
+    ConcurrentMap<Analyzer, List<String>> tokensByAnalyzer = TOKENS.getUnchecked(question);
+    List<String> tokens = tokensByAnalyzer.get(analyzer);
+    if (tokens == null) {
+      String title = ((StackExchangeQuestion) question).getTitleText();
+      tokens = Collections.unmodifiableList(AnalyzerUtils.collectTokens(analyzer, title));
+      List<String> existing = tokensByAnalyzer.putIfAbsent(analyzer, tokens);
+      if (existing != null)
+        tokens = existing;
+    }
+    return tokens;
+  }
+}
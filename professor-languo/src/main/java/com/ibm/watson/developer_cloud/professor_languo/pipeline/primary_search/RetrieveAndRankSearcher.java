@@ -16,9 +16,16 @@ package com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -29,6 +36,10 @@ import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.apache.solr.client.solrj.request.QueryRequest;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+
+import rx.Observable;
+import rx.Subscriber;
 
 import com.ibm.watson.developer_cloud.professor_languo.configuration.Messages;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.RetrieveAndRankConstants;
@@ -37,7 +48,10 @@ import com.ibm.watson.developer_cloud.professor_languo.exception.IngestionExcept
 import com.ibm.watson.developer_cloud.professor_languo.exception.SearchException;
 import com.ibm.watson.developer_cloud.professor_languo.ingestion.RankerCreationUtil;
 import com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing.StackExchangeThreadSerializer;
+import com.ibm.watson.developer_cloud.professor_languo.metrics.MetricsRegistry;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.LazyStackExchangeThread;
 import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeConstants.IndexDocumentFieldName;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeThread;
 import com.ibm.watson.developer_cloud.retrieve_and_rank.v1.RetrieveAndRank;
 
 /**
@@ -46,6 +60,7 @@ import com.ibm.watson.developer_cloud.retrieve_and_rank.v1.RetrieveAndRank;
 public class RetrieveAndRankSearcher implements Searcher {
 
   private static final Logger log = LogManager.getLogger(RetrieveAndRankSearcher.class.getName());;
+  private static final MetricsRegistry metrics = MetricsRegistry.getDefault();
 
   private String collection_name;
   private String request_handler = RetrieveAndRankSearcherConstants.FCSELECT_REQUEST_HANDLER;
@@ -54,6 +69,12 @@ public class RetrieveAndRankSearcher implements Searcher {
 
   HttpSolrClient solrClient;
 
+  /** the pool sending the queries of a batch, or null to send them in turn **/
+  private ExecutorService batchExecutor;
+
+  /** whether hydrated threads are only deserialized when their content is first accessed **/
+  private boolean lazyHydration = false;
+
   /**
    * Creates search service searcher with FCSSELECT request handler as default
    */
@@ -102,6 +123,25 @@ public class RetrieveAndRankSearcher implements Searcher {
     service.setUsernameAndPassword(username, password);
     final String uri = service.getSolrUrl(solr_cluster_id);
     solrClient = new HttpSolrClient(uri, RankerCreationUtil.createHttpClient(uri, username, password));
+
+    int batchThreads = Integer.parseInt(properties.getProperty(RetrieveAndRankConstants.SEARCH_BATCH_THREADS,
+        RetrieveAndRankConstants.DEFAULT_SEARCH_BATCH_THREADS));
+    if (batchThreads > 1)
+      batchExecutor = Executors.newFixedThreadPool(batchThreads);
+
+    lazyHydration = Boolean.parseBoolean(properties.getProperty(RetrieveAndRankConstants.LAZY_HYDRATION, "false"));
+  }
+
+  /**
+   * Close the connection to the cluster
+   * 
+   * @throws IOException
+   */
+  @Override public void close() throws IOException {
+    if (batchExecutor != null)
+      batchExecutor.shutdown();
+    if (solrClient != null)
+      solrClient.close();
   }
 
   /**
@@ -115,11 +155,135 @@ public class RetrieveAndRankSearcher implements Searcher {
     return performSearch(query.toString(), numberOfAnswers);
   }
 
+  /**
+   * Perform a search query on the cluster, keeping the raw documents of the results in the hits so
+   * that only the threads that survive merging are deserialized
+   * 
+   * @param query - the query to send to the cluster
+   * @param generator - the name of the query generator of the query
+   * @return the hits of the query, in rank order
+   * @throws SearchException
+   */
+  @Override public List<SearchHit> searchHits(Query query, String generator) throws SearchException {
+    SolrDocumentList results = query(query.toString(), numberOfAnswers).getResults();
+    List<SearchHit> hits = new ArrayList<SearchHit>(results.size());
+    int rank = 1;
+    for (SolrDocument doc : results) {
+      int threadId = Integer.parseInt(doc.getFieldValue(RetrieveAndRankSearcherConstants.ID_FIELD).toString());
+      Object score = doc.getFieldValue(RetrieveAndRankSearcherConstants.SCORE_FIELD);
+      hits.add(new SearchHit(-1, threadId, score == null ? 0 : ((Number) score).doubleValue(), rank++, generator, doc));
+    }
+    return hits;
+  }
+
+  /**
+   * Perform the search queries on the cluster one after another, as the cluster has no way of
+   * scoring several queries in a single request
+   * 
+   * @param queries - the queries to send to the cluster
+   * @param generators - the names of the query generators of each query
+   * @return the hits of each query, in the order of the queries
+   * @throws SearchException
+   */
+  @Override public List<List<SearchHit>> searchCombinedHits(List<Query> queries, List<String> generators)
+      throws SearchException {
+    List<List<SearchHit>> results = new ArrayList<List<SearchHit>>(queries.size());
+    for (int i = 0; i < queries.size(); i++)
+      results.add(searchHits(queries.get(i), generators.get(i)));
+    return results;
+  }
+
+  /**
+   * Perform a batch of search queries on the cluster. The cluster has no multi-query request, so
+   * the queries are sent concurrently over the pooled connections of the client, overlapping their
+   * round trips.
+   * 
+   * @param queries - the queries to send to the cluster
+   * @param generators - the names of the query generators of each query
+   * @return the hits of each query, in the order of the queries
+   * @throws SearchException
+   */
+  @Override public List<List<SearchHit>> searchHitsBatch(final List<Query> queries, final List<String> generators)
+      throws SearchException {
+    if (batchExecutor == null || queries.size() < 2)
+      return searchCombinedHits(queries, generators);
+
+    List<Callable<List<SearchHit>>> searches = new ArrayList<Callable<List<SearchHit>>>(queries.size());
+    for (int i = 0; i < queries.size(); i++) {
+      final int queryIndex = i;
+      searches.add(new Callable<List<SearchHit>>() {
+        @Override public List<SearchHit> call() throws SearchException {
+          return searchHits(queries.get(queryIndex), generators.get(queryIndex));
+        }
+      });
+    }
+    try {
+      List<List<SearchHit>> results = new ArrayList<List<SearchHit>>(queries.size());
+      for (Future<List<SearchHit>> search : batchExecutor.invokeAll(searches))
+        results.add(search.get());
+      return results;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SearchException)
+        throw (SearchException) e.getCause();
+      throw new SearchException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SearchException(e);
+    }
+  }
+
+  /**
+   * Deserialize the threads of hits generated by this searcher, or with lazy hydration, wrap them
+   * so that they are only deserialized when their content is first accessed
+   * 
+   * @param hits - the hits to load
+   * @return an answer for each hit, in the order of the hits
+   * @throws SearchException
+   */
+  @Override public List<CandidateAnswer> hydrate(List<SearchHit> hits) throws SearchException {
+    List<CandidateAnswer> answers = new ArrayList<CandidateAnswer>(hits.size());
+    for (SearchHit hit : hits) {
+      SolrDocument doc = (SolrDocument) hit.getSource();
+      answers.add(lazyHydration ? toLazyCandidateAnswer(doc, hit.getThreadId()) : toCandidateAnswer(doc));
+    }
+    return answers;
+  }
+
+  /**
+   * Deserialize the threads of hits generated by this searcher as the subscriber asks for them, in
+   * the order of the hits
+   */
+  @Override public Observable<CandidateAnswer> hydrateStream(final List<SearchHit> hits) {
+    return Observable.create(new Observable.OnSubscribe<CandidateAnswer>() {
+      @Override public void call(Subscriber<? super CandidateAnswer> subscriber) {
+        try {
+          for (SearchHit hit : hits) {
+            if (subscriber.isUnsubscribed())
+              return;
+            SolrDocument doc = (SolrDocument) hit.getSource();
+            subscriber.onNext(lazyHydration ? toLazyCandidateAnswer(doc, hit.getThreadId()) : toCandidateAnswer(doc));
+          }
+          subscriber.onCompleted();
+        } catch (SearchException e) {
+          subscriber.onError(e);
+        }
+      }
+    });
+  }
+
   public Collection<CandidateAnswer> performSearch(String query) throws SearchException {
     return performSearch(query, numberOfAnswers);
   }
 
   public Collection<CandidateAnswer> performSearch(String query, int numAns) throws SearchException {
+    return responseToCollection(query(query, numAns));
+  }
+
+  /**
+   * Send a search query to the cluster, asking for the serialized thread and feature vector of
+   * each result
+   */
+  private QueryResponse query(String query, int numAns) throws SearchException {
 
     SolrQuery featureSolrQuery = new SolrQuery(query);
 
@@ -127,7 +291,8 @@ public class RetrieveAndRankSearcher implements Searcher {
     featureSolrQuery.setRequestHandler(request_handler);
     // Specify parameters for the response
     featureSolrQuery.setParam(RetrieveAndRankSearcherConstants.FIELD_LIST_PARAM,
-        RetrieveAndRankSearcherConstants.ID_FIELD + "," + RetrieveAndRankSearcherConstants.FEATURE_VECTOR_FIELD + ","
+        RetrieveAndRankSearcherConstants.ID_FIELD + "," + RetrieveAndRankSearcherConstants.SCORE_FIELD + ","
+            + RetrieveAndRankSearcherConstants.FEATURE_VECTOR_FIELD + ","
             + IndexDocumentFieldName.SERIALIZED_THREAD.toString());
 
     featureSolrQuery.setRows(numAns);
@@ -135,13 +300,15 @@ public class RetrieveAndRankSearcher implements Searcher {
     // Make the request
     final QueryRequest featureRequest = new QueryRequest(featureSolrQuery);
     QueryResponse featureResponse = null;
+    long start = System.nanoTime();
     try {
       featureResponse = processSolrRequest(featureRequest);
+      metrics.recordTime("search.rnr.query", start);
     } catch (IOException | SolrServerException | InterruptedException e) {
       log.error(e.toString(), e);
       throw new SearchException(e);
     }
-    return responseToCollection(featureResponse);
+    return featureResponse;
   }
 
   /**
@@ -190,35 +357,72 @@ public class RetrieveAndRankSearcher implements Searcher {
    */
   public Collection<CandidateAnswer> responseToCollection(QueryResponse response) throws SearchException {
     // Create a collection of answers to store the results of the query
-    Collection<CandidateAnswer> answers = new HashSet<CandidateAnswer>();
+    Collection<CandidateAnswer> answers = new LinkedHashSet<CandidateAnswer>();
 
     // Collect feature vectors and construct a CandidateAnswer
-    for (SolrDocument doc : response.getResults()) {
-      // read the binary SERIALIZED_THREAD field from the docs in the
-      // search results
-      Object bin = doc.getFieldValue(IndexDocumentFieldName.SERIALIZED_THREAD.toString());
+    for (SolrDocument doc : response.getResults())
+      answers.add(toCandidateAnswer(doc));
 
-      CandidateAnswer candidateAnswer;
-      try {
-        // create an answer from the deserialized thread.
-        candidateAnswer = StackExchangeThreadSerializer.deserializeThreadFromBinArr((byte[]) bin);
-
-        if (request_handler.equals(RetrieveAndRankSearcherConstants.FCSELECT_REQUEST_HANDLER)) {
-          // If response is for querying
-          String[] features = doc.getFieldValue(RetrieveAndRankSearcherConstants.FEATURE_VECTOR_FIELD).toString().trim()
-              .split(RetrieveAndRankSearcherConstants.FEATURE_VECTOR_DELIM);
-          for (int i = 0; i < features.length; i++) {
-            candidateAnswer.setFeatureValue(RetrieveAndRankSearcherConstants.FEATURE_HEADER + i,
-                Double.parseDouble(features[i]));
-          }
-        }
+    return answers;
+  }
 
-        answers.add(candidateAnswer);
-      } catch (IngestionException e) {
-        throw new SearchException(e);
-      }
+  /**
+   * Construct a {@link CandidateAnswer} from a document of the search results
+   * 
+   * @param doc - a document holding a serialized thread and, for feature queries, its feature
+   *        vector
+   * @return the answer
+   * @throws SearchException
+   */
+  private CandidateAnswer toCandidateAnswer(SolrDocument doc) throws SearchException {
+    CandidateAnswer candidateAnswer;
+    try {
+      // create an answer from the deserialized thread.
+      candidateAnswer = deserializeThread(doc);
+    } catch (IngestionException e) {
+      throw new SearchException(e);
     }
+    addFeatureVector(candidateAnswer, doc);
+    return candidateAnswer;
+  }
 
-    return answers;
+  /**
+   * Construct a {@link LazyStackExchangeThread} from a document of the search results, which only
+   * deserializes the thread when its content is first accessed
+   */
+  private CandidateAnswer toLazyCandidateAnswer(final SolrDocument doc, int threadId) {
+    CandidateAnswer candidateAnswer = new LazyStackExchangeThread(threadId, new Callable<StackExchangeThread>() {
+      @Override public StackExchangeThread call() throws IngestionException {
+        return deserializeThread(doc);
+      }
+    });
+    addFeatureVector(candidateAnswer, doc);
+    return candidateAnswer;
+  }
+
+  /**
+   * Read the binary SERIALIZED_THREAD field of a document of the search results
+   */
+  private static StackExchangeThread deserializeThread(SolrDocument doc) throws IngestionException {
+    long start = System.nanoTime();
+    Object bin = doc.getFieldValue(IndexDocumentFieldName.SERIALIZED_THREAD.toString());
+    StackExchangeThread thread = StackExchangeThreadSerializer.deserializeThreadFromBinArr((byte[]) bin);
+    metrics.recordTime("search.rnr.deserialization", start);
+    return thread;
+  }
+
+  /**
+   * Set the features of the feature vector of a document of the search results, if the response
+   * is for a feature query
+   */
+  private void addFeatureVector(CandidateAnswer candidateAnswer, SolrDocument doc) {
+    if (request_handler.equals(RetrieveAndRankSearcherConstants.FCSELECT_REQUEST_HANDLER)) {
+      String[] features = doc.getFieldValue(RetrieveAndRankSearcherConstants.FEATURE_VECTOR_FIELD).toString().trim()
+          .split(RetrieveAndRankSearcherConstants.FEATURE_VECTOR_DELIM);
+      for (int i = 0; i < features.length; i++) {
+        candidateAnswer.setFeatureValue(RetrieveAndRankSearcherConstants.FEATURE_HEADER + i,
+            Double.parseDouble(features[i]));
+      }
+    }
   }
 }
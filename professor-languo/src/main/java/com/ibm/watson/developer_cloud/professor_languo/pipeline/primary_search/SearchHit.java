@@ -0,0 +1,81 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search;
+
+/**
+ * A lightweight search result: the thread a query matched and how well it matched it, without
+ * the thread itself. Hits from several queries can be merged and deduplicated cheaply, and only
+ * the surviving hits are turned into threads by {@link Searcher#hydrate(java.util.List)}.
+ */
+public class SearchHit {
+  private final int docId;
+  private final int threadId;
+  private final double score;
+  private final int rank;
+  private final String generator;
+  private final Object source;
+
+  /**
+   * @param docId - the id of the matching document in the search index, or -1 if the index has no
+   *        document ids
+   * @param threadId - the post id of the matching thread
+   * @param score - the search score of the hit
+   * @param rank - the 1-based rank of the hit in the results of its query
+   * @param generator - the name of the query generator whose query found the hit, may be
+   *        <code>null</code>
+   * @param source - the searcher-specific handle used to load the thread, may be <code>null</code>
+   */
+  public SearchHit(int docId, int threadId, double score, int rank, String generator, Object source) {
+    this.docId = docId;
+    this.threadId = threadId;
+    this.score = score;
+    this.rank = rank;
+    this.generator = generator;
+    this.source = source;
+  }
+
+  public int getDocId() {
+    return docId;
+  }
+
+  public int getThreadId() {
+    return threadId;
+  }
+
+  public double getScore() {
+    return score;
+  }
+
+  public int getRank() {
+    return rank;
+  }
+
+  public String getGenerator() {
+    return generator;
+  }
+
+  /**
+   * @return the searcher-specific handle used to load the thread, such as the index reader the
+   *         document id belongs to or the raw search result
+   */
+  public Object getSource() {
+    return source;
+  }
+
+  @Override public String toString() {
+    return "SearchHit [threadId=" + threadId + ", score=" + score + ", rank=" + rank + ", generator=" + generator
+        + "]";
+  }
+}
@@ -14,20 +14,25 @@
 
 package com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search;
 
+import java.io.Closeable;
 import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
 
 import org.apache.lucene.search.Query;
 
+import rx.Observable;
+
 import com.ibm.watson.developer_cloud.professor_languo.data_model.CandidateAnswer;
 import com.ibm.watson.developer_cloud.professor_languo.exception.SearchException;
 
 /**
  * This interface defines a primary search component that is responsible for accepting queries and
- * returning search results obtained from querying an underlying search index.
+ * returning search results obtained from querying an underlying search index. Closing a
+ * {@link Searcher} releases its hold on the underlying search index.
  *
  */
-public interface Searcher {
+public interface Searcher extends Closeable {
 
   /**
    * Initialize the {@link Searcher}
@@ -45,4 +50,61 @@ public interface Searcher {
    */
   public Collection<CandidateAnswer> performSearch(Query query) throws SearchException;
 
+  /**
+   * Perform a search, and generate lightweight hits that identify the matching threads without
+   * loading them
+   *
+   * @param query - The query to be consumed by this {@link Searcher}
+   * @param generator - The name of the query generator of the query, recorded in each hit
+   * @return The hits of the query, in rank order
+   * @throws SearchException
+   */
+  public List<SearchHit> searchHits(Query query, String generator) throws SearchException;
+
+  /**
+   * Perform the searches of several queries at once, scoring every query in a single pass over
+   * the search index where the index allows it
+   *
+   * @param queries - The queries to be consumed by this {@link Searcher}
+   * @param generators - The names of the query generators of each query
+   * @return The hits of each query, in the order of the queries
+   * @throws SearchException
+   */
+  public List<List<SearchHit>> searchCombinedHits(List<Query> queries, List<String> generators)
+      throws SearchException;
+
+  /**
+   * Perform the independent searches of a batch of queries, typically from many questions, sharing
+   * the setup of the searches between them
+   *
+   * @param queries - The queries to be consumed by this {@link Searcher}
+   * @param generators - The names of the query generators of each query
+   * @return The hits of each query, in the order of the queries
+   * @throws SearchException
+   */
+  public List<List<SearchHit>> searchHitsBatch(List<Query> queries, List<String> generators) throws SearchException;
+
+  /**
+   * Load the threads of search hits
+   *
+   * @param hits - Hits generated by this {@link Searcher}
+   * @return A candidate answer for each hit whose thread is still in the index, in the order of
+   *         the hits
+   * @throws SearchException
+   */
+  public List<CandidateAnswer> hydrate(List<SearchHit> hits) throws SearchException;
+
+  /**
+   * Load the threads of search hits, emitting the candidate answers in the order of the hits, each
+   * one as soon as it and the answers before it are loaded, so that the answers can be processed
+   * while later threads are still being loaded. The threads are loaded and pushed to the subscriber
+   * as soon as it subscribes, whatever it requests, possibly in the order the index reads them best,
+   * so an answer may wait for the threads of later hits. Loading stops when the subscriber
+   * unsubscribes. Failures are emitted as {@link SearchException}s.
+   *
+   * @param hits - Hits generated by this {@link Searcher}
+   * @return A candidate answer for each hit whose thread is still in the index
+   */
+  public Observable<CandidateAnswer> hydrateStream(List<SearchHit> hits);
+
 }
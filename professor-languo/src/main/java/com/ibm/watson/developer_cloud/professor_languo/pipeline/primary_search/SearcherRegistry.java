@@ -0,0 +1,386 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.MMapDirectory;
+
+import com.ibm.watson.developer_cloud.professor_languo.configuration.Messages;
+
+/**
+ * A process-wide registry of Lucene searchers, keyed by index path. Every index is memory-mapped
+ * once and served by a single {@link SearcherManager}, no matter how many pipelines and components
+ * search it, so file descriptors and page cache use do not multiply with the number of components.
+ * <p>
+ * {@link #open(Path, boolean)} hands out a {@link SharedSearcher}, which lends
+ * {@link IndexSearcher}s to the pipeline threads through {@link SharedSearcher#acquire()} and
+ * {@link SharedSearcher#release(IndexSearcher)}. The index is closed once every
+ * {@link SharedSearcher} opened on it has been closed.
+ * <p>
+ * An index may be opened with a pool of search threads, in which case its searchers search the
+ * segments of the index in parallel. The pool is set up by the first {@link SharedSearcher} opened
+ * on the index and shared by all the others. The same goes for the {@link QueryResultCache} of the
+ * index, which is invalidated whenever the index is reopened, and for the interval at which the
+ * index is checked for changes and reopened. The settings asked for by the later handles are
+ * ignored, with a warning if they differ from those the index was opened with.
+ */
+public class SearcherRegistry {
+  private final static Logger logger = LogManager.getLogger(SearcherRegistry.class.getName());
+
+  private static final int PRELOAD_BUFFER_SIZE = 1 << 16;
+
+  private static final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+  /**
+   * The directory, searcher manager, search threads, query cache and refresh thread of an open
+   * index, along with the settings it was opened with and the number of {@link SharedSearcher}s
+   * using it
+   */
+  private static class Entry {
+    private final String key;
+    private final Directory directory;
+    private final ExecutorService executor;
+    private final SearcherManager searcherManager;
+    private final QueryResultCache queryCache;
+    private final int searchThreads;
+    private final int queryCacheSize;
+    private final int refreshSeconds;
+    private ScheduledExecutorService refresher = null;
+    private int refCount = 0;
+
+    private Entry(String key, Directory directory, int searchThreads, int queryCacheSize, int refreshSeconds)
+        throws IOException {
+      this.key = key;
+      this.directory = directory;
+      this.searchThreads = searchThreads;
+      this.queryCacheSize = queryCacheSize;
+      this.refreshSeconds = refreshSeconds;
+      final ExecutorService executor = searchThreads > 0 ? Executors.newFixedThreadPool(searchThreads) : null;
+      final QueryResultCache queryCache = queryCacheSize > 0 ? new QueryResultCache(queryCacheSize) : null;
+      this.executor = executor;
+      this.queryCache = queryCache;
+      try {
+        this.searcherManager = new SearcherManager(directory, new SearcherFactory() {
+          @Override public IndexSearcher newSearcher(IndexReader reader) throws IOException {
+            return new IndexSearcher(reader, executor);
+          }
+        });
+      } catch (IOException e) {
+        if (executor != null)
+          executor.shutdown();
+        throw e;
+      }
+      if (queryCache != null) {
+        searcherManager.addListener(new ReferenceManager.RefreshListener() {
+          @Override public void beforeRefresh() {}
+
+          @Override public void afterRefresh(boolean didRefresh) {
+            if (didRefresh)
+              queryCache.invalidateAll();
+          }
+        });
+      }
+    }
+
+    /**
+     * @return whether the index was opened with the given settings
+     */
+    private boolean hasSettings(int searchThreads, int queryCacheSize, int refreshSeconds) {
+      return this.searchThreads == searchThreads && this.queryCacheSize == queryCacheSize
+          && this.refreshSeconds == refreshSeconds;
+    }
+
+    /**
+     * Check the index for changes at the refresh interval, reopening it if it has changed
+     */
+    private void startRefreshing() {
+      if (refreshSeconds <= 0)
+        return;
+      refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "index-refresher");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      refresher.scheduleWithFixedDelay(new Runnable() {
+        @Override public void run() {
+          try {
+            searcherManager.maybeRefresh();
+          } catch (IOException e) {
+            logger.warn(Messages.getString("RetrieveAndRank.SEARCHER_REGISTRY_REFRESH_FAILED") + key, e); //$NON-NLS-1$
+          }
+        }
+      }, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stop checking the index for changes, waiting for a check in progress to complete so the index
+     * can be closed
+     */
+    private void stopRefreshing() {
+      if (refresher == null)
+        return;
+      refresher.shutdown();
+      try {
+        refresher.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Release the resources of the index
+     */
+    private void close() throws IOException {
+      stopRefreshing();
+      try {
+        searcherManager.close();
+      } finally {
+        if (executor != null)
+          executor.shutdown();
+        directory.close();
+      }
+    }
+  }
+
+  /**
+   * A handle on a shared index. Each handle must be closed exactly once, after which the searchers
+   * it lent should no longer be used.
+   */
+  public static class SharedSearcher implements Closeable {
+    private final Entry entry;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private SharedSearcher(Entry entry) {
+      this.entry = entry;
+    }
+
+    /**
+     * Borrow the current searcher of the index. Every call must be paired with a call to
+     * {@link #release(IndexSearcher)}, typically in a <code>finally</code> block.
+     *
+     * @return the current searcher
+     * @throws IOException
+     */
+    public IndexSearcher acquire() throws IOException {
+      return entry.searcherManager.acquire();
+    }
+
+    /**
+     * Return a searcher obtained from {@link #acquire()}
+     *
+     * @param searcher - the searcher to return
+     * @throws IOException
+     */
+    public void release(IndexSearcher searcher) throws IOException {
+      entry.searcherManager.release(searcher);
+    }
+
+    /**
+     * Reopen the index if it has changed since it was opened, invalidating its query cache. An index
+     * opened with a refresh interval is also reopened in the background.
+     *
+     * @return whether the index was reopened
+     * @throws IOException
+     */
+    public boolean maybeRefresh() throws IOException {
+      return entry.searcherManager.maybeRefresh();
+    }
+
+    /**
+     * @return the cache of the query results of the index, or <code>null</code> if results are not
+     *         cached
+     */
+    public QueryResultCache getQueryResultCache() {
+      return entry.queryCache;
+    }
+
+    /**
+     * @return whether the searchers of the index search its segments in parallel
+     */
+    public boolean isParallel() {
+      return entry.executor != null;
+    }
+
+    /**
+     * @return the manager of the shared index, for callers that manage searchers themselves
+     */
+    SearcherManager getSearcherManager() {
+      return entry.searcherManager;
+    }
+
+    @Override public void close() throws IOException {
+      if (closed.compareAndSet(false, true))
+        SearcherRegistry.release(entry);
+    }
+  }
+
+  private SearcherRegistry() {}
+
+  /**
+   * Open a handle on the index at the given path, opening the index if no other handle is using it
+   *
+   * @param indexPath - the path of the index directory
+   * @param preload - whether to read the index files through once when the index is opened, so
+   *        the first queries do not page them in from disk
+   * @return a handle on the shared index
+   * @throws IOException
+   */
+  public static SharedSearcher open(Path indexPath, boolean preload) throws IOException {
+    return open(indexPath, preload, 0);
+  }
+
+  /**
+   * Open a handle on the index at the given path, opening the index if no other handle is using it
+   *
+   * @param indexPath - the path of the index directory
+   * @param preload - whether to read the index files through once when the index is opened, so
+   *        the first queries do not page them in from disk
+   * @param searchThreads - the number of threads searching the segments of the index in parallel,
+   *        or 0 to search them on the calling thread. Ignored if the index is already open.
+   * @return a handle on the shared index
+   * @throws IOException
+   */
+  public static SharedSearcher open(Path indexPath, boolean preload, int searchThreads) throws IOException {
+    return open(indexPath, preload, searchThreads, 0);
+  }
+
+  /**
+   * Open a handle on the index at the given path, opening the index if no other handle is using it
+   *
+   * @param indexPath - the path of the index directory
+   * @param preload - whether to read the index files through once when the index is opened, so
+   *        the first queries do not page them in from disk
+   * @param searchThreads - the number of threads searching the segments of the index in parallel,
+   *        or 0 to search them on the calling thread. Ignored if the index is already open.
+   * @param queryCacheSize - the number of queries whose results are cached, or 0 not to cache
+   *        results. Ignored if the index is already open.
+   * @return a handle on the shared index
+   * @throws IOException
+   */
+  public static SharedSearcher open(Path indexPath, boolean preload, int searchThreads, int queryCacheSize)
+      throws IOException {
+    return open(indexPath, preload, searchThreads, queryCacheSize, 0);
+  }
+
+  /**
+   * Open a handle on the index at the given path, opening the index if no other handle is using it
+   *
+   * @param indexPath - the path of the index directory
+   * @param preload - whether to read the index files through once when the index is opened, so
+   *        the first queries do not page them in from disk
+   * @param searchThreads - the number of threads searching the segments of the index in parallel,
+   *        or 0 to search them on the calling thread. Ignored if the index is already open.
+   * @param queryCacheSize - the number of queries whose results are cached, or 0 not to cache
+   *        results. Ignored if the index is already open.
+   * @param refreshSeconds - the interval at which the index is checked for changes and reopened,
+   *        or 0 to only reopen it through {@link SharedSearcher#maybeRefresh()}. Ignored if the
+   *        index is already open.
+   * @return a handle on the shared index
+   * @throws IOException
+   */
+  public static SharedSearcher open(Path indexPath, boolean preload, int searchThreads, int queryCacheSize,
+      int refreshSeconds) throws IOException {
+    String key = indexPath.toAbsolutePath().normalize().toString();
+    synchronized (entries) {
+      Entry entry = entries.get(key);
+      if (entry == null) {
+        Directory directory = new MMapDirectory(indexPath);
+        try {
+          if (preload)
+            preload(directory);
+          entry = new Entry(key, directory, searchThreads, queryCacheSize, refreshSeconds);
+        } catch (IOException e) {
+          directory.close();
+          throw e;
+        }
+        entry.startRefreshing();
+        entries.put(key, entry);
+        logger.info(Messages.getString("RetrieveAndRank.SEARCHER_REGISTRY_OPEN") + key); //$NON-NLS-1$
+      } else if (!entry.hasSettings(searchThreads, queryCacheSize, refreshSeconds)) {
+        String message = Messages.getString("RetrieveAndRank.SEARCHER_REGISTRY_SETTINGS_IGNORED"); //$NON-NLS-1$
+        logger.warn(MessageFormat.format(message, key, searchThreads, queryCacheSize, refreshSeconds,
+            entry.searchThreads, entry.queryCacheSize, entry.refreshSeconds));
+      }
+      entry.refCount++;
+      return new SharedSearcher(entry);
+    }
+  }
+
+  /**
+   * @param indexPath - the path of an index directory
+   * @return whether the index at the given path is currently open in the registry
+   */
+  static boolean isOpen(Path indexPath) {
+    synchronized (entries) {
+      return entries.containsKey(indexPath.toAbsolutePath().normalize().toString());
+    }
+  }
+
+  private static void release(Entry entry) throws IOException {
+    synchronized (entries) {
+      if (--entry.refCount > 0)
+        return;
+      entries.remove(entry.key);
+    }
+    entry.close();
+    logger.info(Messages.getString("RetrieveAndRank.SEARCHER_REGISTRY_CLOSE") + entry.key); //$NON-NLS-1$
+    if (entry.queryCache != null)
+      logger.info(Messages.getString("RetrieveAndRank.QUERY_CACHE_STATS") + entry.queryCache); //$NON-NLS-1$
+  }
+
+  /**
+   * Read every file of the index through once so its pages are resident before the first query
+   */
+  private static void preload(Directory directory) throws IOException {
+    byte[] buffer = new byte[PRELOAD_BUFFER_SIZE];
+    for (String file : directory.listAll()) {
+      if (file.equals(IndexWriter.WRITE_LOCK_NAME))
+        continue;
+      try (IndexInput input = directory.openInput(file, IOContext.READONCE)) {
+        long remaining = input.length();
+        while (remaining > 0) {
+          int len = (int) Math.min(buffer.length, remaining);
+          input.readBytes(buffer, 0, len);
+          remaining -= len;
+        }
+      }
+    }
+  }
+}
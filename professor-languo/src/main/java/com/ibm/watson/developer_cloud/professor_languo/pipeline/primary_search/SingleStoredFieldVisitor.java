@@ -0,0 +1,89 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.StoredFieldVisitor;
+
+/**
+ * Reads the first value of a single stored field of a document, without materializing the other
+ * stored fields, and stops reading the document as soon as the value is found. The visitor can be
+ * reused for several documents by resetting it in between.
+ */
+final class SingleStoredFieldVisitor extends StoredFieldVisitor {
+
+  private final String field;
+  private Object value = null;
+
+  /**
+   * @param field - the name of the stored field to read
+   */
+  SingleStoredFieldVisitor(String field) {
+    this.field = field;
+  }
+
+  /**
+   * Forget the value read from the previous document
+   */
+  void reset() {
+    value = null;
+  }
+
+  /**
+   * @return the value of a binary field, or <code>null</code> if the document has none
+   */
+  byte[] getBinaryValue() {
+    return (byte[]) value;
+  }
+
+  /**
+   * @return the value of a numeric field, or <code>null</code> if the document has none
+   */
+  Number getNumericValue() {
+    return (Number) value;
+  }
+
+  @Override public Status needsField(FieldInfo fieldInfo) throws IOException {
+    if (value != null)
+      return Status.STOP;
+    return field.equals(fieldInfo.name) ? Status.YES : Status.NO;
+  }
+
+  @Override public void binaryField(FieldInfo fieldInfo, byte[] value) throws IOException {
+    this.value = value;
+  }
+
+  @Override public void stringField(FieldInfo fieldInfo, String value) throws IOException {
+    this.value = value;
+  }
+
+  @Override public void intField(FieldInfo fieldInfo, int value) throws IOException {
+    this.value = value;
+  }
+
+  @Override public void longField(FieldInfo fieldInfo, long value) throws IOException {
+    this.value = value;
+  }
+
+  @Override public void floatField(FieldInfo fieldInfo, float value) throws IOException {
+    this.value = value;
+  }
+
+  @Override public void doubleField(FieldInfo fieldInfo, double value) throws IOException {
+    this.value = value;
+  }
+}
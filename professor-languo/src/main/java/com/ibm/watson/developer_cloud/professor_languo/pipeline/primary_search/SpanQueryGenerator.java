@@ -29,7 +29,6 @@ import org.apache.lucene.index.Term;
 
 import com.ibm.watson.developer_cloud.professor_languo.data_model.Question;
 import com.ibm.watson.developer_cloud.professor_languo.exception.SearchException;
-import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeQuestion;
 import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeConstants.IndexDocumentFieldName;
 
 /**
@@ -65,27 +64,24 @@ public abstract class SpanQueryGenerator implements QueryComponent {
    * @throws SearchException
    */
   protected Query createBoostUnigramQuery(Question question, Analyzer analyzer) throws SearchException {
-    List<String> tokens;
-    StackExchangeQuestion queryQuestion = (StackExchangeQuestion) question;
-    String title = queryQuestion.getTitleText();
-    BooleanQuery query = new BooleanQuery();
-
     try {
-      tokens = AnalyzerUtils.collectTokens(analyzer, title);
-      // Loop through all tokens
-      for (int idx = 0; idx < tokens.size(); idx++) {
-        // For each field to search for
-        for (int fieldIdx = 0; fieldIdx < fieldsToSearch.length; fieldIdx++) {
-          TermQuery stq = new TermQuery(new Term(fieldsToSearch[fieldIdx], tokens.get(idx).trim()));
-          stq.setBoost(boostValues[fieldIdx]);
-
-          query.add(stq, Occur.SHOULD);
-        } // Repeat for every field in fieldsToSearch
-      } // Repeat for each token
+      return createBoostUnigramQuery(QuestionAnalysisCache.titleTokens(question, analyzer));
     } catch (IOException e) {
       throw new SearchException(e);
     }
+  }
 
+  private Query createBoostUnigramQuery(List<String> tokens) {
+    BooleanQuery query = new BooleanQuery();
+    // Loop through all tokens
+    for (int idx = 0; idx < tokens.size(); idx++) {
+      // For each field to search for
+      for (int fieldIdx = 0; fieldIdx < fieldsToSearch.length; fieldIdx++) {
+        TermQuery stq = new TermQuery(new Term(fieldsToSearch[fieldIdx], tokens.get(idx).trim()));
+        stq.setBoost(boostValues[fieldIdx]);
+        query.add(stq, Occur.SHOULD);
+      } // Repeat for every field in fieldsToSearch
+    } // Repeat for each token
     return query;
   }
 
@@ -104,42 +100,39 @@ public abstract class SpanQueryGenerator implements QueryComponent {
    * @throws SearchException
    */
   protected Query createNgramSpanQuery(Question question, Analyzer analyzer, int n) throws SearchException {
-    if (n == 1)
-      return createBoostUnigramQuery(question, analyzer);
-
-    return mergeBooleanQueries((BooleanQuery) createNgramQueryRecursive(question, analyzer, n),
-        (BooleanQuery) createNgramSpanQuery(question, analyzer, n - 1));
-  }
-
-  private Query createNgramQueryRecursive(Question question, Analyzer analyzer, int n) throws SearchException {
-    List<String> tokens;
-    StackExchangeQuestion queryQuestion = (StackExchangeQuestion) question;
-    String title = queryQuestion.getTitleText();
-    List<SpanTermQuery> termQueries = new ArrayList<SpanTermQuery>();
-    BooleanQuery query = new BooleanQuery();
-
     try {
-      tokens = AnalyzerUtils.collectTokens(analyzer, title);
-      // Loop through all tokens
-      for (int idx = 0; idx < tokens.size() - (n - 1); idx++) {
-        // For each field to search for
-        for (int fieldIdx = 0; fieldIdx < fieldsToSearch.length; fieldIdx++) {
-          // Make n-gram term query
-          for (int t = 0; t < n; t++) {
-            SpanTermQuery stq = new SpanTermQuery(new Term(fieldsToSearch[fieldIdx], tokens.get(idx + t).trim()));
-            stq.setBoost((float) (boostValues[fieldIdx] / 2.0));
-            termQueries.add(stq);
-          }
-          SpanNearQuery spanTitleQuery = new SpanNearQuery(
-              (SpanTermQuery[]) termQueries.toArray(new SpanTermQuery[termQueries.size()]), fuzzFactor, inOrder);
-          query.add(spanTitleQuery, Occur.SHOULD);
-          termQueries.clear();
-        } // Repeat for every field in fieldsToSearch
-      } // Repeat for each token
+      return createNgramSpanQuery(QuestionAnalysisCache.titleTokens(question, analyzer), n);
     } catch (IOException e) {
       throw new SearchException(e);
     }
+  }
 
+  private Query createNgramSpanQuery(List<String> tokens, int n) {
+    if (n == 1)
+      return createBoostUnigramQuery(tokens);
+    return mergeBooleanQueries((BooleanQuery) createNgramQueryRecursive(tokens, n),
+        (BooleanQuery) createNgramSpanQuery(tokens, n - 1));
+  }
+
+  private Query createNgramQueryRecursive(List<String> tokens, int n) {
+    List<SpanTermQuery> termQueries = new ArrayList<SpanTermQuery>();
+    BooleanQuery query = new BooleanQuery();
+    // Loop through all tokens
+    for (int idx = 0; idx < tokens.size() - (n - 1); idx++) {
+      // For each field to search for
+      for (int fieldIdx = 0; fieldIdx < fieldsToSearch.length; fieldIdx++) {
+        // Make n-gram term query
+        for (int t = 0; t < n; t++) {
+          SpanTermQuery stq = new SpanTermQuery(new Term(fieldsToSearch[fieldIdx], tokens.get(idx + t).trim()));
+          stq.setBoost((float) (boostValues[fieldIdx] / 2.0));
+          termQueries.add(stq);
+        }
+        SpanNearQuery spanTitleQuery = new SpanNearQuery(
+            (SpanTermQuery[]) termQueries.toArray(new SpanTermQuery[termQueries.size()]), fuzzFactor, inOrder);
+        query.add(spanTitleQuery, Occur.SHOULD);
+        termQueries.clear();
+      } // Repeat for every field in fieldsToSearch
+    } // Repeat for each token
     return query;
   }
 
@@ -0,0 +1,115 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.data_model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the features of a {@link CandidateAnswer}, kept by {@link FeatureSchema} slot
+ */
+public class CandidateAnswerFeaturesTest {
+  private CandidateAnswerFeaturesTest GIVEN = this, WHEN = this, THEN = this, AND = this;
+
+  private static final String FIRST = "CandidateAnswerFeaturesTest.first";
+  private static final String SECOND = "CandidateAnswerFeaturesTest.second";
+  private static final String UNSET = "CandidateAnswerFeaturesTest.unset";
+
+  private CandidateAnswer answer = new CandidateAnswer("label", "component");
+
+  /**
+   * Test that features set by name or by slot are read back either way, in slot order
+   */
+  @Test public void test_that_features_are_kept_by_slot() {
+    GIVEN.features_are_set();
+    THEN.features_are(FIRST, SECOND);
+    AND.feature_values_are(1.5, 2.5);
+    AND.unset_feature_is_absent();
+  }
+
+  /**
+   * Test that a feature set to null is no longer set
+   */
+  @Test public void test_that_null_unsets_a_feature() {
+    GIVEN.features_are_set();
+    WHEN.feature_is_unset(FIRST);
+    THEN.features_are(SECOND);
+  }
+
+  /**
+   * Test that the features survive serialization by name
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_features_are_serialized_by_name() throws Exception {
+    GIVEN.features_are_set();
+    WHEN.answer_is_serialized_and_deserialized();
+    THEN.features_are(FIRST, SECOND);
+    AND.feature_values_are(1.5, 2.5);
+  }
+
+  private void features_are_set() {
+    answer.setFeatureValue(FIRST, 1.5);
+    answer.setFeature(FeatureSchema.slot(SECOND), 2.5);
+  }
+
+  private void feature_is_unset(String feature) {
+    answer.setFeatureValue(feature, null);
+  }
+
+  private void answer_is_serialized_and_deserialized() throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(answer);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      answer = (CandidateAnswer) in.readObject();
+    }
+  }
+
+  private void features_are(String... features) {
+    assertEquals(Arrays.asList(features), new ArrayList<>(answer.getFeatures()));
+    List<String> slotOrder = new ArrayList<>();
+    for (int slot = answer.nextFeature(0); slot >= 0; slot = answer.nextFeature(slot + 1))
+      slotOrder.add(FeatureSchema.name(slot));
+    assertEquals(Arrays.asList(features), slotOrder);
+  }
+
+  private void feature_values_are(double first, double second) {
+    assertEquals(first, answer.getFeatureValue(FIRST), 0.0);
+    assertEquals(first, answer.getFeature(FeatureSchema.slot(FIRST)), 0.0);
+    assertEquals(second, answer.getFeatureValue(SECOND), 0.0);
+  }
+
+  private void unset_feature_is_absent() {
+    assertNull(answer.getFeatureValue(UNSET));
+    assertFalse(answer.hasFeature(FeatureSchema.slot(UNSET)));
+    assertEquals(0.0, answer.getFeature(FeatureSchema.slot(UNSET)), 0.0);
+    assertTrue(answer.hasFeature(FeatureSchema.find(FIRST)));
+  }
+}
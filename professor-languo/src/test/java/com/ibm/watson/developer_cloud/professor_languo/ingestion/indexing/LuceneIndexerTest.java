@@ -0,0 +1,169 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants;
+import com.ibm.watson.developer_cloud.professor_languo.exception.IngestionException;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeConstants.IndexDocumentFieldName;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeThread;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.PrimarySearchConstants;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.SingletonAnalyzer;
+
+/**
+ * Unit tests for the Lucene indexer
+ */
+public class LuceneIndexerTest {
+  private LuceneIndexerTest GIVEN = this, WHEN = this, AND = this, THEN = this;
+
+  @Rule public TemporaryFolder testOutputFolder = new TemporaryFolder();
+
+  private static final String INDEX_DIR = "index";
+  private String uniqThreadDirPath;
+  private int maxBufferedDocs = 0;
+  private int corpusSize;
+  private DirectoryReader reader;
+
+  /**
+   * Test that the sorted bulk-build mode writes a single segment whose documents are in decreasing
+   * order of thread quality, and marks the index as sorted
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_sorted_index_is_ordered_by_thread_quality() throws Exception {
+    GIVEN.serialized_threads_are_available(testOutputFolder);
+    WHEN.corpus_is_indexed(true);
+    THEN.index_has_a_single_segment_with_every_thread();
+    AND.documents_are_in_decreasing_quality_order();
+    AND.index_is_marked_as(LuceneIndexer.INDEX_SORT_BY_QUALITY);
+  }
+
+  /**
+   * Test that the documents stay in decreasing order of thread quality when the build flushes many
+   * segments that are merged into one
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_sorted_index_stays_ordered_across_flushed_segments() throws Exception {
+    GIVEN.serialized_threads_are_available(testOutputFolder);
+    AND.few_documents_are_buffered_before_each_flush();
+    WHEN.corpus_is_indexed(true);
+    THEN.index_has_a_single_segment_with_every_thread();
+    AND.documents_are_in_decreasing_quality_order();
+    AND.index_is_marked_as(LuceneIndexer.INDEX_SORT_BY_QUALITY);
+  }
+
+  /**
+   * Test that an index built without sorting is not marked as sorted
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_unsorted_index_is_not_marked_as_sorted() throws Exception {
+    GIVEN.serialized_threads_are_available(testOutputFolder);
+    WHEN.corpus_is_indexed(false);
+    THEN.index_is_marked_as(null);
+  }
+
+  /**
+   * Copy the serialized test threads into a folder standing in for the unique thread folder of a
+   * built corpus
+   *
+   * @param folder - the folder to copy the threads into
+   * @throws IOException
+   */
+  private void serialized_threads_are_available(TemporaryFolder folder) throws IOException {
+    File threadDir = folder.newFolder("uniqueThreads");
+    File sourceDir = new File(LuceneIndexerTest.class.getResource("/duplicateThreads/").getPath());
+    for (File serFile : sourceDir.listFiles()) {
+      if (serFile.getName().endsWith(".ser")) {
+        Files.copy(serFile.toPath(), new File(threadDir, serFile.getName()).toPath());
+      }
+    }
+    uniqThreadDirPath = threadDir.getPath();
+    corpusSize = threadDir.listFiles().length;
+  }
+
+  private void few_documents_are_buffered_before_each_flush() {
+    maxBufferedDocs = 2;
+  }
+
+  private void corpus_is_indexed(boolean sortByQuality) throws IngestionException, IOException {
+    SingletonAnalyzer.generateAnalyzer(PrimarySearchConstants.ENGLISH_ANALYZER);
+    LuceneIndexer indexer = new LuceneIndexer();
+    Properties indexConfig = indexConfig(testOutputFolder, sortByQuality);
+    if (maxBufferedDocs > 0)
+      indexConfig.put(ConfigurationConstants.INDEX_MAX_BUFFERED_DOCS, Integer.toString(maxBufferedDocs));
+    indexer.initialize(indexConfig);
+    indexer.indexCorpus(uniqThreadDirPath);
+    reader = DirectoryReader
+        .open(FSDirectory.open(new File(testOutputFolder.getRoot(), INDEX_DIR).toPath()));
+  }
+
+  /**
+   * @param folder - the folder to build the index in
+   * @param sortByQuality - whether to use the sorted bulk-build mode
+   * @return the properties configuring a {@link LuceneIndexer} to build a file system index
+   */
+  private static Properties indexConfig(TemporaryFolder folder, boolean sortByQuality) {
+    Properties indexConfig = new Properties();
+    indexConfig.put(ConfigurationConstants.INGESTION_BASE_DIR, folder.getRoot().getAbsolutePath());
+    indexConfig.put(ConfigurationConstants.INDEX_DIR_TYPE, ConfigurationConstants.IndexDirTypes.FS.toString());
+    indexConfig.put(ConfigurationConstants.INDEX_DIR, INDEX_DIR);
+    indexConfig.put(ConfigurationConstants.INDEX_STAT_PATH, "indexStat.txt");
+    indexConfig.put(ConfigurationConstants.INDEX_SORT_BY_QUALITY, Boolean.toString(sortByQuality));
+    return indexConfig;
+  }
+
+  private void index_has_a_single_segment_with_every_thread() {
+    assertEquals(1, reader.leaves().size());
+    assertEquals(corpusSize, reader.numDocs());
+  }
+
+  private void documents_are_in_decreasing_quality_order() throws IOException, IngestionException {
+    double previousQuality = Double.MAX_VALUE;
+    for (int docId = 0; docId < reader.maxDoc(); docId++) {
+      byte[] binCode =
+          reader.document(docId).getBinaryValue(IndexDocumentFieldName.SERIALIZED_THREAD.toString()).bytes;
+      StackExchangeThread thread = StackExchangeThreadSerializer.deserializeThreadFromBinArr(binCode);
+      double quality = LuceneIndexer.computeThreadQuality(thread);
+      assertTrue("Document " + docId + " is out of order", quality <= previousQuality);
+      previousQuality = quality;
+    }
+  }
+
+  private void index_is_marked_as(String expectedSort) throws IOException {
+    String sort = reader.getIndexCommit().getUserData().get(LuceneIndexer.INDEX_SORT_COMMIT_KEY);
+    if (expectedSort == null) {
+      assertNull(sort);
+    } else {
+      assertEquals(expectedSort, sort);
+    }
+    reader.close();
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.watson.developer_cloud.professor_languo.exception.IngestionException;
+
+/**
+ * Unit tests for the MinHash/LSH near-duplicate index
+ */
+public class NearDuplicateIndexTest {
+  private NearDuplicateIndexTest GIVEN = this, WHEN = this, AND = this, THEN = this;
+
+  @Rule public TemporaryFolder testOutputFolder = new TemporaryFolder();
+
+  private static final String TITLE = "How do I keep my quadcopter stable in windy conditions?";
+  private static final String BODY = "My quadcopter drifts badly as soon as the wind picks up. I have tuned the PID "
+      + "gains on the roll and pitch axes and calibrated the accelerometer, but it still tilts and loses altitude "
+      + "whenever there is a gust. What else should I look at to make it hold its position?";
+  private static final String EDITED_BODY = BODY.replace("picks up", "gets stronger");
+
+  private NearDuplicateIndex index;
+  private List<NearDuplicateIndex.Match> matches;
+
+  /**
+   * Test that a question with the same title, up to case and punctuation, is found as an exact match
+   */
+  @Test public void test_that_identical_title_is_an_exact_match() {
+    GIVEN.index_is_built();
+    WHEN.near_duplicates_are_found("how do I keep my Quadcopter stable in windy conditions", "");
+    THEN.best_match_is(1, true);
+  }
+
+  /**
+   * Test that a question whose body is slightly edited is found through the LSH tables
+   */
+  @Test public void test_that_edited_question_is_found() {
+    GIVEN.index_is_built();
+    WHEN.near_duplicates_are_found(TITLE.replace("How do I", "How can I"), EDITED_BODY);
+    THEN.best_match_is(1, false);
+    AND.best_match_similarity_is_above(0.7);
+  }
+
+  /**
+   * Test that an unrelated question has no near-duplicates
+   */
+  @Test public void test_that_unrelated_question_has_no_match() {
+    GIVEN.index_is_built();
+    WHEN.near_duplicates_are_found("Which servo should I use for a robot arm gripper?",
+        "I am building a small arm and need to pick a servo that can lift a few hundred grams.");
+    THEN.there_are_no_matches();
+  }
+
+  /**
+   * Test that the index can be written to disk and read back
+   *
+   * @throws IngestionException
+   */
+  @Test public void test_that_saved_index_can_be_loaded() throws IngestionException {
+    GIVEN.index_is_built();
+    WHEN.index_is_saved_and_loaded();
+    AND.near_duplicates_are_found(TITLE, BODY);
+    THEN.best_match_is(1, true);
+  }
+
+  private void index_is_built() {
+    index = new NearDuplicateIndex(NearDuplicateIndex.DEFAULT_NUM_BANDS, NearDuplicateIndex.DEFAULT_BAND_ROWS);
+    index.add(1, TITLE, BODY);
+    index.add(2, "Choosing a battery for a ground robot",
+        "What battery chemistry gives the best runtime for a four wheeled robot that weighs about ten kilograms?");
+  }
+
+  private void index_is_saved_and_loaded() throws IngestionException {
+    String path = testOutputFolder.getRoot().getAbsolutePath() + "/nearDuplicateIndex.ser";
+    index.save(path);
+    index = NearDuplicateIndex.load(path);
+  }
+
+  private void near_duplicates_are_found(String title, String body) {
+    matches = index.findNearDuplicates(title, body, 0.5);
+  }
+
+  private void best_match_is(int threadId, boolean exactTitle) {
+    assertFalse("No near-duplicate found", matches.isEmpty());
+    assertEquals(threadId, matches.get(0).getThreadId());
+    assertEquals(exactTitle, matches.get(0).isExactTitle());
+  }
+
+  private void best_match_similarity_is_above(double similarity) {
+    assertTrue(matches.get(0).getSimilarity() > similarity);
+  }
+
+  private void there_are_no_matches() {
+    assertTrue(matches.isEmpty());
+  }
+}
@@ -18,17 +18,22 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexableField;
@@ -68,7 +73,9 @@ public class RetrieveAndRankIndexerTest {
   private static CorpusBuilder corpusBuilder = null;
   private Properties appProperties;
   private String COLLECTION_NAME = "collection";
-  private List<SolrInputDocument> indexedRecords = new ArrayList<>();
+  private List<SolrInputDocument> indexedRecords = Collections.synchronizedList(new ArrayList<SolrInputDocument>());
+  private Properties uploadConfig = new Properties();
+  private AtomicInteger failedUploads = new AtomicInteger();
 
   /**
    * Initialize the indexer with appProperties configuration
@@ -99,6 +106,29 @@ public class RetrieveAndRankIndexerTest {
     when(indexer.solrClient.add(eq(COLLECTION_NAME), any(List.class))).thenAnswer(answer);
   }
 
+  /**
+   * Mock a solr client that fails the first upload it receives with a transient error and accepts
+   * every later one, recording the accepted documents in the indexedRecords field
+   * 
+   * @throws SolrServerException
+   * @throws IOException
+   */
+  @SuppressWarnings("unchecked") public void mock_flaky_solrClient() throws SolrServerException, IOException {
+    indexer.solrClient = mock(HttpSolrClient.class);
+
+    Answer<String> answer = new Answer<String>() {
+      @Override public String answer(InvocationOnMock invocation) throws Throwable {
+        if (failedUploads.getAndIncrement() == 0) {
+          throw new IOException("connection reset");
+        }
+        List<SolrInputDocument> batch = (List<SolrInputDocument>) invocation.getArguments()[1];
+        indexedRecords.addAll(batch);
+        return null;
+      }
+    };
+    when(indexer.solrClient.add(eq(COLLECTION_NAME), any(List.class))).thenAnswer(answer);
+  }
+
   /**
    * Mock a faulty SolrClient that throw a SolrServer Exception
    * 
@@ -227,6 +257,98 @@ public class RetrieveAndRankIndexerTest {
     THEN.compare_indexed_records_to_corpus();
   }
 
+  /**
+   * Test that every document is uploaded one batch at a time when the batch size is one, and that
+   * the upload statistics are recorded
+   * 
+   * @throws IngestionException
+   * @throws SolrServerException
+   * @throws IOException
+   */
+  @Test public void test_that_upload_statistics_are_recorded()
+      throws IngestionException, SolrServerException, IOException {
+    GIVEN.corpus_is_built();
+    AND.upload_is_configured_with_batch_size(1);
+    AND.rnr_indexer_is_created();
+    AND.mock_solrClient();
+    WHEN.documents_are_indexed_in_batches();
+    THEN.every_document_is_indexed_once();
+    AND.index_stats_contain_upload_statistics();
+  }
+
+  /**
+   * Test that a batch failing with a transient error is retried rather than failing the ingestion
+   * 
+   * @throws IngestionException
+   * @throws SolrServerException
+   * @throws IOException
+   */
+  @Test public void test_that_transient_failures_are_retried()
+      throws IngestionException, SolrServerException, IOException {
+    GIVEN.corpus_is_built();
+    AND.upload_is_configured_with_batch_size(1);
+    AND.rnr_indexer_is_created();
+    AND.mock_flaky_solrClient();
+    WHEN.documents_are_indexed_in_batches();
+    THEN.every_document_is_indexed_once();
+    AND.index_stats_contain_upload_statistics();
+  }
+
+  private void upload_is_configured_with_batch_size(int batchSize) {
+    uploadConfig.put(RetrieveAndRankConstants.INDEXING_BATCH_SIZE, Integer.toString(batchSize));
+    uploadConfig.put(RetrieveAndRankConstants.INDEXING_THREADS, "3");
+    uploadConfig.put(RetrieveAndRankConstants.INDEXING_MAX_IN_FLIGHT, "2");
+  }
+
+  /**
+   * Index the Corpus and check that the index was committed once every batch was sent
+   * 
+   * @throws IngestionException
+   * @throws SolrServerException
+   * @throws IOException
+   */
+  @SuppressWarnings("unchecked") private void documents_are_indexed_in_batches()
+      throws IngestionException, SolrServerException, IOException {
+    indexingStats = indexer.indexCorpus(corpusBuilder.getUniqueThreadDirPath());
+    verify(indexer.solrClient, atLeast(indexdCorpusSize())).add(eq(COLLECTION_NAME), any(List.class));
+    verify(indexer.solrClient, times(1)).commit(COLLECTION_NAME);
+  }
+
+  private int indexdCorpusSize() {
+    return new File(corpusBuilder.getUniqueThreadDirPath()).listFiles().length;
+  }
+
+  /**
+   * Check that each thread in the corpus was accepted by the solr client exactly once
+   * 
+   * @throws IngestionException
+   */
+  private void every_document_is_indexed_once() throws IngestionException {
+    indexdCorpus = corpusBuilder.getUniqueThreadSetFromBinFiles();
+    Set<Object> expectedIds = new HashSet<>();
+    for (StackExchangeThread thread : indexdCorpus) {
+      expectedIds.add(Integer.toString(thread.getId()));
+    }
+
+    Set<Object> indexedIds = new HashSet<>();
+    for (SolrInputDocument doc : indexedRecords) {
+      indexedIds.add(doc.getFieldValue(IndexDocumentFieldName.THREAD_POST_ID.toString()).toString());
+    }
+    assertEquals("Wrong number of documents indexed", indexdCorpus.size(), indexedRecords.size());
+    assertEquals(expectedIds, indexedIds);
+  }
+
+  /**
+   * Check that the batch count, per-batch latencies and throughput are recorded
+   */
+  private void index_stats_contain_upload_statistics() {
+    int expectedBatchNum = indexdCorpus.size();
+    assertEquals(expectedBatchNum, indexingStats.getStatistic(IndexStatFieldName.INDEX_BATCH_NUM.toString()));
+    List<?> latencies = (List<?>) indexingStats.getStatistic(IndexStatFieldName.INDEX_BATCH_LATENCIES.toString());
+    assertEquals(expectedBatchNum, latencies.size());
+    assertTrue((double) indexingStats.getStatistic(IndexStatFieldName.INDEX_THROUGHPUT.toString()) > 0);
+  }
+
   /**
    * Check that the index stats file contains the correct number of indexed documents
    * 
@@ -263,6 +385,8 @@ public class RetrieveAndRankIndexerTest {
     indexConfig.put(RetrieveAndRankConstants.RNR_ENDPOINT, "some_endpoint");
     indexConfig.put(RetrieveAndRankConstants.COLLECTION, COLLECTION_NAME);
     indexConfig.put(RetrieveAndRankConstants.SOLR_CLUSTER_ID, "some_cluster_id");
+    indexConfig.put(RetrieveAndRankConstants.INDEXING_RETRY_BACKOFF, "10");
+    indexConfig.putAll(uploadConfig);
 
     indexer.initialize(indexConfig);
   }
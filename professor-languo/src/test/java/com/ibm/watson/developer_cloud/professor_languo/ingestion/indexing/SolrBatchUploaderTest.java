@@ -0,0 +1,193 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient.RemoteSolrException;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit tests for the {@link SolrBatchUploader}, run against a mocked solr client standing in for
+ * the cluster
+ */
+public class SolrBatchUploaderTest {
+  private SolrBatchUploaderTest GIVEN = this, WHEN = this, AND = this, THEN = this;
+
+  private static final String COLLECTION_NAME = "collection";
+  private static final int NUM_BATCHES = 20;
+  private static final int MAX_IN_FLIGHT = 2;
+  private static final int RETRY_LIMIT = 2;
+
+  private HttpSolrClient solrClient;
+  private SolrBatchUploader uploader;
+  private List<SolrInputDocument> indexedRecords = Collections.synchronizedList(new ArrayList<SolrInputDocument>());
+  private AtomicInteger inFlight = new AtomicInteger();
+  private AtomicInteger maxObservedInFlight = new AtomicInteger();
+  private Exception thrown;
+
+  /**
+   * Test that batches are uploaded on several threads without exceeding the in-flight limit
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_in_flight_batches_are_bounded() throws Exception {
+    GIVEN.slow_solrClient_is_mocked();
+    AND.uploader_is_created(4);
+    WHEN.batches_are_uploaded();
+    THEN.every_batch_is_indexed();
+    AND.no_more_than_max_in_flight_batches_were_outstanding();
+  }
+
+  /**
+   * Test that a server error is retried until the retry limit, then reported
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_server_errors_are_retried_until_limit() throws Exception {
+    GIVEN.solrClient_fails_with(new RemoteSolrException("host", 503, "unavailable", null));
+    AND.uploader_is_created(1);
+    WHEN.one_batch_is_uploaded();
+    THEN.upload_failed_with(RemoteSolrException.class);
+    AND.add_was_called(RETRY_LIMIT + 1);
+  }
+
+  /**
+   * Test that a client error such as a malformed document is not retried
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_client_errors_are_not_retried() throws Exception {
+    GIVEN.solrClient_fails_with(new RemoteSolrException("host", 400, "bad request", null));
+    AND.uploader_is_created(1);
+    WHEN.one_batch_is_uploaded();
+    THEN.upload_failed_with(RemoteSolrException.class);
+    AND.add_was_called(1);
+  }
+
+  /**
+   * Test that an unexpected runtime error of the client is reported instead of dropping the batch
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_unexpected_runtime_errors_are_reported() throws Exception {
+    GIVEN.solrClient_fails_with(new SolrException(ErrorCode.UNKNOWN, "unexpected"));
+    AND.uploader_is_created(1);
+    WHEN.one_batch_is_uploaded();
+    THEN.upload_failed_with(SolrException.class);
+    AND.add_was_called(1);
+  }
+
+  /**
+   * Mock a solr client that holds on to each batch for a short while before accepting it, tracking
+   * how many batches it is working on at once
+   *
+   * @throws SolrServerException
+   * @throws IOException
+   */
+  @SuppressWarnings("unchecked") private void slow_solrClient_is_mocked() throws SolrServerException, IOException {
+    solrClient = mock(HttpSolrClient.class);
+    Answer<String> answer = new Answer<String>() {
+      @Override public String answer(InvocationOnMock invocation) throws Throwable {
+        int current = inFlight.incrementAndGet();
+        int max = maxObservedInFlight.get();
+        while (current > max && !maxObservedInFlight.compareAndSet(max, current)) {
+          max = maxObservedInFlight.get();
+        }
+        Thread.sleep(10);
+        indexedRecords.addAll((List<SolrInputDocument>) invocation.getArguments()[1]);
+        inFlight.decrementAndGet();
+        return null;
+      }
+    };
+    when(solrClient.add(eq(COLLECTION_NAME), any(List.class))).thenAnswer(answer);
+  }
+
+  @SuppressWarnings("unchecked") private void solrClient_fails_with(Exception e)
+      throws SolrServerException, IOException {
+    solrClient = mock(HttpSolrClient.class);
+    when(solrClient.add(eq(COLLECTION_NAME), any(List.class))).thenThrow(e);
+  }
+
+  private void uploader_is_created(int numThreads) {
+    uploader = new SolrBatchUploader(solrClient, COLLECTION_NAME, numThreads, MAX_IN_FLIGHT, RETRY_LIMIT, 1);
+  }
+
+  private void batches_are_uploaded() throws SolrServerException, IOException {
+    for (int i = 0; i < NUM_BATCHES; i++) {
+      uploader.submit(Collections.singletonList(createDocument(i)));
+    }
+    uploader.awaitCompletion();
+  }
+
+  private void one_batch_is_uploaded() {
+    try {
+      uploader.submit(Collections.singletonList(createDocument(0)));
+      uploader.awaitCompletion();
+    } catch (SolrServerException | IOException | RuntimeException e) {
+      thrown = e;
+    }
+  }
+
+  private void every_batch_is_indexed() {
+    assertEquals(NUM_BATCHES, indexedRecords.size());
+    assertEquals(NUM_BATCHES, uploader.getBatchLatencies().size());
+  }
+
+  private void no_more_than_max_in_flight_batches_were_outstanding() {
+    assertTrue("Too many batches in flight: " + maxObservedInFlight.get(),
+        maxObservedInFlight.get() <= MAX_IN_FLIGHT);
+  }
+
+  private void upload_failed_with(Class<? extends Exception> expected) {
+    if (thrown == null) {
+      fail("Expected the upload to fail");
+    }
+    assertEquals(expected, thrown.getClass());
+    assertTrue(uploader.getBatchLatencies().isEmpty());
+  }
+
+  @SuppressWarnings("unchecked") private void add_was_called(int expectedCalls)
+      throws SolrServerException, IOException {
+    verify(solrClient, times(expectedCalls)).add(eq(COLLECTION_NAME), any(List.class));
+  }
+
+  private static SolrInputDocument createDocument(int id) {
+    SolrInputDocument doc = new SolrInputDocument();
+    doc.addField("id", id);
+    return doc;
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the latency histogram and the metrics registry
+ */
+public class LatencyHistogramTest {
+  private LatencyHistogramTest GIVEN = this, WHEN = this, THEN = this, AND = this;
+
+  private LatencyHistogram histogram = new LatencyHistogram();
+  private MetricsRegistry registry = new MetricsRegistry();
+
+  /**
+   * Test that the percentiles of the recorded latencies are within the resolution of the buckets
+   */
+  @Test public void test_that_percentiles_are_within_bucket_resolution() {
+    GIVEN.latencies_from_1_to_n_are_recorded(100000);
+    THEN.percentile_is_about(50, 50000);
+    AND.percentile_is_about(95, 95000);
+    AND.percentile_is_about(99, 99000);
+    AND.percentile_is_about(100, 100000);
+    AND.histogram_summary_is(100000, 100000);
+  }
+
+  /**
+   * Test that every value falls within the bucket whose midpoint represents it
+   */
+  @Test public void test_that_bucket_midpoints_are_close_to_their_values() {
+    for (long value = 0; value < 1 << 20; value = value * 3 / 2 + 1)
+      THEN.midpoint_of_bucket_is_about(value);
+    AND.midpoint_of_bucket_is_about(Long.MAX_VALUE);
+  }
+
+  /**
+   * Test that the registry counts events and times stages under their names
+   */
+  @Test public void test_that_registry_reports_counters_and_timers() {
+    WHEN.registry_records_a_stage("stage.one", 3);
+    AND.registry_counts("candidates", 7);
+    THEN.registry_counter_is("candidates", 7);
+    AND.registry_counter_is("missing", 0);
+    AND.registry_timer_count_is("stage.one", 3);
+    AND.report_mentions("stage.one", "candidates");
+  }
+
+  private void latencies_from_1_to_n_are_recorded(int n) {
+    for (int i = 1; i <= n; i++)
+      histogram.record(i);
+  }
+
+  private void percentile_is_about(double percentile, long expected) {
+    long actual = histogram.getPercentile(percentile);
+    assertEquals(expected, actual, expected * 0.04);
+  }
+
+  private void histogram_summary_is(long count, long max) {
+    assertEquals(count, histogram.getCount());
+    assertEquals(max, histogram.getMax());
+    assertEquals((max + 1) / 2.0, histogram.getMean(), 1e-6);
+  }
+
+  private void midpoint_of_bucket_is_about(long value) {
+    long midpoint = LatencyHistogram.midpoint(LatencyHistogram.bucket(value));
+    assertTrue(value + " -> " + midpoint, Math.abs((double) midpoint - value) <= value * 0.04);
+  }
+
+  private void registry_records_a_stage(String name, int times) {
+    for (int i = 0; i < times; i++)
+      registry.recordTime(name, System.nanoTime());
+  }
+
+  private void registry_counts(String name, int times) {
+    for (int i = 0; i < times; i++)
+      registry.increment(name);
+  }
+
+  private void registry_counter_is(String name, long count) {
+    assertEquals(count, registry.getCount(name));
+  }
+
+  private void registry_timer_count_is(String name, long count) {
+    assertEquals(count, registry.timer(name).getCount());
+  }
+
+  private void report_mentions(String... names) {
+    String report = registry.report();
+    for (String name : names)
+      assertTrue(report, report.contains(name));
+  }
+}
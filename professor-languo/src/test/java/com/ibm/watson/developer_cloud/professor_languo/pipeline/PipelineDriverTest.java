@@ -19,10 +19,22 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
@@ -30,16 +42,28 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import rx.Observable;
+import rx.functions.Func0;
+import rx.functions.Func1;
 
+import com.ibm.watson.developer_cloud.professor_languo.api.AnswerCheckpoint;
 import com.ibm.watson.developer_cloud.professor_languo.api.AnswerGenerator;
+import com.ibm.watson.developer_cloud.professor_languo.api.AnswerMergerAndRanker;
+import com.ibm.watson.developer_cloud.professor_languo.api.AnswerScorer;
+import com.ibm.watson.developer_cloud.professor_languo.api.CloneableTrainableComponent;
 import com.ibm.watson.developer_cloud.professor_languo.api.PipelineQuestionAnswerer;
+import com.ibm.watson.developer_cloud.professor_languo.api.QuestionAnswerer.AnsweredQuestion;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants.PipelineResultsTsvFileFormats;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.CandidateAnswer;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.Question;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.QuestionAnswerSet;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.QuestionAnswerSet.CorrectAnswer;
 import com.ibm.watson.developer_cloud.professor_languo.exception.IngestionException;
 import com.ibm.watson.developer_cloud.professor_languo.exception.PipelineException;
 import com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing.StackExchangeThreadSerializer;
+import com.ibm.watson.developer_cloud.professor_languo.metrics.LatencyHistogram;
+import com.ibm.watson.developer_cloud.professor_languo.metrics.MetricsRegistry;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeQuestion;
 import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeThread;
 import com.ibm.watson.developer_cloud.professor_languo.pipeline.PipelineDriver;
 import com.ibm.watson.developer_cloud.professor_languo.pipeline.TrustingMergerAndRanker;
@@ -56,6 +80,8 @@ public class PipelineDriverTest {
   private static File dupThreadTsvFile =
       new File(PipelineDriverTest.class.getResource("/duplicateThreads/dup_thread.tsv").getPath());
 
+  private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
   private static File serializedThreadsDir =
       new File(PipelineDriverTest.class.getResource("/duplicateThreads/").getPath());
 
@@ -65,12 +91,105 @@ public class PipelineDriverTest {
 
   File resultOutputFile;
 
+  private List<CandidateAnswer> answers;
+
+  private QuestionAnswerSet testSet;
+
+  private QuestionAnswerSet trainingSet;
+
+  private FoldScorer foldScorer;
+
+  private FoldMerger foldMerger;
+
+  private List<AnsweredQuestion> answeredQuestions;
+
+  private File checkpointFile;
+
+  private Map<String, List<CandidateAnswer>> checkpointedAnswers;
+
   @Test public void test_that_pipeline_can_be_executed_successfully() throws PipelineException, IOException {
     GIVEN.properties_are_initialized();
     WHEN.pipeline_is_launched();
     THEN.test_results_are_written_to_file();
   }
 
+  @Test public void test_that_candidate_answers_can_be_scored_in_parallel() throws IOException {
+    GIVEN.properties_are_initialized();
+    AND.candidate_answers_are_scored_in_parallel();
+    WHEN.question_is_answered();
+    THEN.answers_are_ranked_by_confidence();
+  }
+
+  @Test public void test_that_a_question_set_can_be_streamed_with_few_questions_in_flight()
+      throws IOException, PipelineException {
+    GIVEN.properties_are_initialized();
+    AND.few_questions_are_in_flight_and_answers_are_released();
+    WHEN.test_set_is_answered();
+    THEN.every_question_is_answered_with_released_answers();
+    AND.test_results_are_written_to_file();
+  }
+
+  @Test(timeout = 60000) public void test_that_a_single_pipeline_thread_answers_several_questions_at_once()
+      throws IOException, PipelineException {
+    GIVEN.properties_are_initialized();
+    AND.one_pipeline_thread_answers_several_questions_at_once();
+    AND.candidate_answers_are_scored_in_parallel();
+    WHEN.test_set_is_answered();
+    THEN.every_question_is_answered_with_all_its_answers();
+  }
+
+  @Test(timeout = 60000) public void test_that_folds_can_be_trained_in_parallel_with_cloned_components()
+      throws IOException, PipelineException {
+    GIVEN.properties_are_initialized();
+    AND.folds_are_trained_in_parallel(3);
+    WHEN.pipeline_is_trained();
+    THEN.each_fold_is_scored_by_its_own_trained_copy(3);
+    AND.every_fold_is_merged_by_the_shared_merger_before_it_finishes_training();
+  }
+
+  @Test public void test_that_lazy_generators_and_mergers_are_timed_until_their_answers_complete()
+      throws IOException {
+    GIVEN.properties_are_initialized();
+    AND.metrics_are_reset();
+    WHEN.question_is_answered_by_slow_components();
+    THEN.slow_components_are_timed_until_their_answers_complete();
+    AND.fast_merger_is_not_timed_with_the_slow_components_before_it();
+    AND.stage_timers_are_reported();
+  }
+
+  @Test public void test_that_duplicate_answers_are_left_unscored() throws IOException {
+    GIVEN.properties_are_initialized();
+    AND.duplicate_answers_are_filtered();
+    WHEN.question_is_answered_with_duplicate_answers();
+    THEN.duplicate_answers_are_left_unscored();
+  }
+
+  @Test public void test_that_duplicate_answers_are_left_unscored_when_scored_in_parallel() throws IOException {
+    GIVEN.properties_are_initialized();
+    AND.duplicate_answers_are_filtered();
+    AND.candidate_answers_are_scored_in_parallel();
+    WHEN.question_is_answered_with_duplicate_answers();
+    THEN.duplicate_answers_are_left_unscored();
+  }
+
+  @Test public void test_that_only_the_top_answers_are_kept() throws IOException {
+    GIVEN.properties_are_initialized();
+    AND.only_the_top_answers_are_kept(2);
+    WHEN.question_is_answered();
+    THEN.top_answers_are_ranked_by_confidence(2);
+  }
+
+  @Test public void test_that_a_stopped_run_is_resumed_from_its_checkpoint() throws IOException, PipelineException {
+    GIVEN.properties_are_initialized();
+    AND.answered_questions_are_checkpointed();
+    AND.test_set_is_answered();
+    AND.run_is_stopped_halfway_through_writing_the_checkpoint();
+    WHEN.test_set_is_answered();
+    THEN.checkpointed_questions_are_replayed_and_the_others_answered_once();
+    AND.test_results_are_written_to_file();
+    AND.replayed_answers_are_written_to_the_results_file();
+  }
+
   private void properties_are_initialized() throws IOException {
     properties = new Properties();
 
@@ -93,6 +212,215 @@ public class PipelineDriverTest {
         PipelineResultsTsvFileFormats.DEFAULT.toString());
   }
 
+  private void candidate_answers_are_scored_in_parallel() {
+    properties.setProperty(PipelineQuestionAnswerer.PROP_SCORING_THREADS, "4");
+  }
+
+  private void duplicate_answers_are_filtered() {
+    properties.setProperty(PipelineQuestionAnswerer.PROP_FILTER_DUPS, "true");
+  }
+
+  private void few_questions_are_in_flight_and_answers_are_released() {
+    properties.setProperty(PipelineQuestionAnswerer.PROP_NUM_THREADS, "4");
+    properties.setProperty(PipelineQuestionAnswerer.PROP_MAX_QUESTIONS_IN_FLIGHT, "2");
+    properties.setProperty(PipelineQuestionAnswerer.PROP_RELEASE_ANSWERS, "true");
+  }
+
+  private void one_pipeline_thread_answers_several_questions_at_once() {
+    properties.setProperty(PipelineQuestionAnswerer.PROP_NUM_THREADS, "1");
+    properties.setProperty(PipelineQuestionAnswerer.PROP_MAX_QUESTIONS_IN_FLIGHT, "4");
+  }
+
+  private void folds_are_trained_in_parallel(int numFolds) {
+    properties.setProperty(PipelineQuestionAnswerer.PROP_NUM_THREADS, "4");
+    properties.setProperty(PipelineQuestionAnswerer.PROP_NUM_FOLDS, Integer.toString(numFolds));
+    properties.setProperty(PipelineQuestionAnswerer.PROP_PARALLEL_FOLDS, "true");
+  }
+
+  private void answered_questions_are_checkpointed() {
+    checkpointFile = new File(testOutputFolder.getRoot(), "checkpoint.tsv");
+    properties.setProperty(PipelineQuestionAnswerer.PROP_CHECKPOINT_FILE, checkpointFile.getAbsolutePath());
+  }
+
+  private void run_is_stopped_halfway_through_writing_the_checkpoint() throws IOException {
+    List<String> lines = FileUtils.readLines(checkpointFile);
+    assertEquals(testSet.size(), lines.size());
+    Map<String, List<CandidateAnswer>> answers = new HashMap<>();
+    for (AnsweredQuestion answeredQuestion : answeredQuestions)
+      answers.put(answeredQuestion.getQuestion().getId(), answeredQuestion.getAnswers());
+    checkpointedAnswers = new LinkedHashMap<>();
+    for (String line : lines.subList(0, lines.size() / 2)) {
+      String questionId = URLDecoder.decode(line.substring(0, line.indexOf('\t')), "UTF-8");
+      checkpointedAnswers.put(questionId, answers.get(questionId));
+    }
+    String partialLine = lines.get(lines.size() / 2);
+    FileUtils.writeLines(checkpointFile, "UTF-8", lines.subList(0, lines.size() / 2), "\n");
+    FileUtils.writeStringToFile(checkpointFile, partialLine.substring(0, partialLine.length() / 2), "UTF-8", true);
+  }
+
+  private void checkpointed_questions_are_replayed_and_the_others_answered_once() throws IOException {
+    assertEquals(testSet.size(), answeredQuestions.size());
+    int replayed = 0;
+    for (Entry<String, List<CandidateAnswer>> checkpointed : checkpointedAnswers.entrySet()) {
+      AnsweredQuestion answeredQuestion = answeredQuestions.get(replayed++);
+      assertEquals(checkpointed.getKey(), answeredQuestion.getQuestion().getId());
+      assertEquals(checkpointed.getValue().size(), answeredQuestion.getAnswers().size());
+      for (int i = 0; i < checkpointed.getValue().size(); i++) {
+        CandidateAnswer expected = checkpointed.getValue().get(i);
+        CandidateAnswer actual = answeredQuestion.getAnswers().get(i);
+        assertEquals(expected.getAnswerLabel(), actual.getAnswerLabel());
+        assertEquals(expected.getConfidence(), actual.getConfidence());
+      }
+    }
+    // the partial line is ignored, and every question is recorded exactly once
+    assertEquals(testSet.size() + 1, FileUtils.readLines(checkpointFile).size());
+    try (AnswerCheckpoint checkpoint = new AnswerCheckpoint(checkpointFile)) {
+      assertEquals(testSet.size(), checkpoint.size());
+    }
+  }
+
+  private void replayed_answers_are_written_to_the_results_file() throws IOException {
+    Set<String> rows = new HashSet<>(FileUtils.readLines(resultOutputFile));
+    for (Entry<String, List<CandidateAnswer>> checkpointed : checkpointedAnswers.entrySet()) {
+      Collection<CorrectAnswer> correctAnswers = testSet.getAnswers(checkpointed.getKey());
+      for (CandidateAnswer answer : checkpointed.getValue()) {
+        String row = checkpointed.getKey() + '\t' + answer.getAnswerLabel() + '\t' + answer.getConfidence() + '\t'
+            + CorrectAnswer.isCorrect(answer, correctAnswers);
+        assertTrue("Missing replayed row " + row, rows.contains(row));
+      }
+    }
+  }
+
+  private void pipeline_is_trained() throws PipelineException {
+    trainingSet = QuestionSetManager.newInstance(properties).getTrainingSet();
+    foldScorer = new FoldScorer();
+    foldMerger = new FoldMerger();
+    DummyQuestionAnswerer questionAnswerer = new DummyQuestionAnswerer(foldScorer, null, foldMerger);
+    questionAnswerer.initialize(properties);
+    questionAnswerer.train(trainingSet, null);
+    questionAnswerer.finish();
+  }
+
+  private void each_fold_is_scored_by_its_own_trained_copy(int numFolds) {
+    // the questions left over by the folds of equal size make up one more fold
+    assertTrue(foldScorer.copies.size() >= numFolds);
+    int scoredByCopies = 0;
+    for (FoldScorer copy : foldScorer.copies) {
+      assertEquals(1, copy.trainingSetSizes.size());
+      assertTrue(copy.trainingSetSizes.get(0) < trainingSet.size());
+      scoredByCopies += copy.scored.get();
+    }
+    assertEquals(trainingSet.size() * DummyQuestionAnswerer.DummyAnswerGenerator.NUM_ANSWERS, scoredByCopies);
+    assertEquals(0, foldScorer.scored.get());
+    assertEquals(Collections.singletonList(trainingSet.size()), foldScorer.trainingSetSizes);
+  }
+
+  private void every_fold_is_merged_by_the_shared_merger_before_it_finishes_training() {
+    assertEquals(0, foldMerger.copies.size());
+    assertEquals(trainingSet.size(), foldMerger.mergedBeforeFinishing);
+    assertEquals(Collections.singletonList(trainingSet.size()), foldMerger.trainingSetSizes);
+  }
+
+  private void test_set_is_answered() throws PipelineException {
+    testSet = QuestionSetManager.newInstance(properties).getTestSet();
+    DummyQuestionAnswerer questionAnswerer = new DummyQuestionAnswerer();
+    questionAnswerer.initialize(properties);
+    answeredQuestions = questionAnswerer.apply(testSet).toList().toBlocking().single();
+    questionAnswerer.finish();
+  }
+
+  private void every_question_is_answered_with_released_answers() {
+    assertEquals(testSet.size(), answeredQuestions.size());
+    for (AnsweredQuestion answeredQuestion : answeredQuestions)
+      assertTrue(answeredQuestion.getAnswers().isEmpty());
+  }
+
+  private void every_question_is_answered_with_all_its_answers() {
+    assertEquals(testSet.size(), answeredQuestions.size());
+    for (AnsweredQuestion answeredQuestion : answeredQuestions)
+      assertEquals(DummyQuestionAnswerer.DummyAnswerGenerator.NUM_ANSWERS, answeredQuestion.getAnswers().size());
+  }
+
+  private void question_is_answered() {
+    DummyQuestionAnswerer questionAnswerer = new DummyQuestionAnswerer();
+    questionAnswerer.initialize(properties);
+    answers = questionAnswerer.answer(new StackExchangeQuestion("How do I keep my quadcopter stable?", "", null, 1,
+        "robotics"), new ArrayList<CorrectAnswer>()).toBlocking().single();
+    questionAnswerer.finish();
+  }
+
+  private void question_is_answered_with_duplicate_answers() {
+    MetricsRegistry.getDefault().reset();
+    foldScorer = new FoldScorer();
+    DummyQuestionAnswerer questionAnswerer =
+        new DummyQuestionAnswerer(foldScorer, new DuplicatingAnswerGenerator(), null);
+    questionAnswerer.initialize(properties);
+    answers = questionAnswerer.answer(new StackExchangeQuestion("How do I keep my quadcopter stable?", "", null, 1,
+        "robotics"), new ArrayList<CorrectAnswer>()).toBlocking().single();
+    questionAnswerer.finish();
+  }
+
+  private void duplicate_answers_are_left_unscored() {
+    Set<String> labels = new HashSet<>();
+    for (CandidateAnswer answer : answers)
+      labels.add(answer.getAnswerLabel());
+    assertEquals(2 * DummyQuestionAnswerer.DummyAnswerGenerator.NUM_ANSWERS, answers.size());
+    assertEquals(labels.size(), foldScorer.scored.get());
+    assertEquals(answers.size() - labels.size(),
+        MetricsRegistry.getDefault().getCount("pipeline.candidates.duplicates"));
+  }
+
+  private void metrics_are_reset() {
+    MetricsRegistry.getDefault().reset();
+  }
+
+  private void question_is_answered_by_slow_components() {
+    DummyQuestionAnswerer questionAnswerer =
+        new DummyQuestionAnswerer(null, new SlowAnswerGenerator(), new SlowMergerAndRanker());
+    questionAnswerer.initialize(properties);
+    answers = questionAnswerer.answer(new StackExchangeQuestion("How do I keep my quadcopter stable?", "", null, 1,
+        "robotics"), new ArrayList<CorrectAnswer>()).toBlocking().single();
+    questionAnswerer.finish();
+  }
+
+  private void slow_components_are_timed_until_their_answers_complete() {
+    assertTrue(stageTime("pipeline.answerGeneration." + SlowAnswerGenerator.class.getSimpleName()) >= SLOW_NANOS);
+    assertTrue(stageTime("pipeline.mergingAndRanking." + SlowMergerAndRanker.class.getSimpleName()) >= SLOW_NANOS);
+  }
+
+  private void fast_merger_is_not_timed_with_the_slow_components_before_it() {
+    assertTrue(stageTime("pipeline.mergingAndRanking." + TrustingMergerAndRanker.class.getSimpleName()) < SLOW_NANOS);
+  }
+
+  private void stage_timers_are_reported() {
+    String report = MetricsRegistry.getDefault().report();
+    assertTrue(report.contains("pipeline.answerGeneration." + SlowAnswerGenerator.class.getSimpleName()));
+    assertTrue(report.contains("pipeline.mergingAndRanking." + SlowMergerAndRanker.class.getSimpleName()));
+  }
+
+  /**
+   * @return the time recorded by the timer of the stage of a single question
+   */
+  private static long stageTime(String timerName) {
+    LatencyHistogram timer = MetricsRegistry.getDefault().timer(timerName);
+    assertEquals(1, timer.getCount());
+    return timer.getMax();
+  }
+
+  private void answers_are_ranked_by_confidence() {
+    top_answers_are_ranked_by_confidence(DummyQuestionAnswerer.DummyAnswerGenerator.NUM_ANSWERS);
+  }
+
+  private void only_the_top_answers_are_kept(int topK) {
+    properties.setProperty(PipelineQuestionAnswerer.PROP_TOP_K, Integer.toString(topK));
+  }
+
+  private void top_answers_are_ranked_by_confidence(int numAnswers) {
+    assertEquals(numAnswers, answers.size());
+    for (int i = 1; i < answers.size(); i++)
+      assertTrue(answers.get(i - 1).getConfidence() >= answers.get(i).getConfidence());
+  }
+
   private void pipeline_is_launched() throws PipelineException {
     PipelineDriver.drive(properties);
   }
@@ -109,15 +437,31 @@ public class PipelineDriverTest {
 
     private static final String DUMMY_FEATURE_NAME = "dummyFeature";
 
+    private final AnswerScorer scorer;
+
+    private final AnswerGenerator generator;
+
+    private final AnswerMergerAndRanker merger;
+
     @SuppressWarnings("unused") public DummyQuestionAnswerer() {
-      super();
+      this(null, null, null);
+    }
+
+    DummyQuestionAnswerer(AnswerScorer scorer, AnswerGenerator generator, AnswerMergerAndRanker merger) {
+      this.scorer = scorer;
+      this.generator = generator;
+      this.merger = merger;
     }
 
     @Override public void initialize(Properties properties) {
 
       // Add the pipeline components for this dummy pipeline
-      addAnswerGenerationComponent(new DummyAnswerGenerator());
+      if (scorer != null)
+        addAnswerScorerComponent(scorer);
+      addAnswerGenerationComponent(generator == null ? new DummyAnswerGenerator() : generator);
       addAnswerMergerAndRankerComponent(new TrustingMergerAndRanker());
+      if (merger != null)
+        addAnswerMergerAndRankerComponent(merger);
       addAnswerPostprocessorComponent(new ResultWriter());
 
       super.initialize(properties);
@@ -169,4 +513,118 @@ public class PipelineDriverTest {
 
     }
   }
+
+  /**
+   * A scorer recording what it is trained on and how many answers it scores, and the copies made
+   * of it for the training folds
+   */
+  private static class FoldScorer implements AnswerScorer, CloneableTrainableComponent {
+
+    private final List<FoldScorer> copies = new CopyOnWriteArrayList<>();
+    private final List<Integer> trainingSetSizes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger scored = new AtomicInteger();
+
+    @Override public void initialize(Properties properties) {}
+
+    @Override public void train(QuestionAnswerSet trainingSet) {
+      trainingSetSizes.add(trainingSet.size());
+    }
+
+    @Override public CloneableTrainableComponent cloneForTraining() {
+      FoldScorer copy = new FoldScorer();
+      copies.add(copy);
+      return copy;
+    }
+
+    @Override public CandidateAnswer scoreCandidateAnswer(Question question, CandidateAnswer answer) {
+      scored.incrementAndGet();
+      return answer;
+    }
+  }
+
+  /**
+   * A generator that generates each of its answers twice, under the same label
+   */
+  private static class DuplicatingAnswerGenerator extends DummyQuestionAnswerer.DummyAnswerGenerator {
+    @Override public Observable<CandidateAnswer> generateCandidateAnswers(Question question) {
+      Observable<CandidateAnswer> candidateAnswers = super.generateCandidateAnswers(question).cache();
+      return candidateAnswers.concatWith(candidateAnswers);
+    }
+  }
+
+  /**
+   * A generator that only generates its answers, slowly, once they are subscribed to
+   */
+  private static class SlowAnswerGenerator extends DummyQuestionAnswerer.DummyAnswerGenerator {
+    @Override public Observable<CandidateAnswer> generateCandidateAnswers(final Question question) {
+      return Observable.defer(new Func0<Observable<CandidateAnswer>>() {
+        @Override public Observable<CandidateAnswer> call() {
+          sleep(SLOW_NANOS);
+          return SlowAnswerGenerator.super.generateCandidateAnswers(question);
+        }
+      });
+    }
+  }
+
+  /**
+   * A merger that, like a remote ranker, collects every answer then takes a while to rank them
+   */
+  private static class SlowMergerAndRanker implements AnswerMergerAndRanker {
+    @Override public void initialize(Properties properties) {}
+
+    @Override public Observable<CandidateAnswer> mergeAndRankAnswers(Question question,
+        Observable<CandidateAnswer> answers, Collection<CorrectAnswer> correctAnswers) {
+      return answers.toList().concatMap(new Func1<List<CandidateAnswer>, Observable<CandidateAnswer>>() {
+        @Override public Observable<CandidateAnswer> call(List<CandidateAnswer> mergedAnswers) {
+          sleep(SLOW_NANOS);
+          return Observable.from(mergedAnswers);
+        }
+      });
+    }
+
+    @Override public void finishTraining() {}
+  }
+
+  private static void sleep(long nanos) {
+    try {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * A merger recording what it is trained on, how many training runs it merged before finishing
+   * its training, and the copies made of it
+   */
+  private static class FoldMerger implements AnswerMergerAndRanker, CloneableTrainableComponent {
+
+    private final List<FoldMerger> copies = new CopyOnWriteArrayList<>();
+    private final List<Integer> trainingSetSizes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger merged = new AtomicInteger();
+    private int mergedBeforeFinishing = -1;
+
+    @Override public void initialize(Properties properties) {}
+
+    @Override public void train(QuestionAnswerSet trainingSet) {
+      trainingSetSizes.add(trainingSet.size());
+    }
+
+    @Override public CloneableTrainableComponent cloneForTraining() {
+      FoldMerger copy = new FoldMerger();
+      copies.add(copy);
+      return copy;
+    }
+
+    @Override public Observable<CandidateAnswer> mergeAndRankAnswers(Question question,
+        Observable<CandidateAnswer> answers, Collection<CorrectAnswer> correctAnswers) {
+      if (correctAnswers != null)
+        merged.incrementAndGet();
+      return answers;
+    }
+
+    @Override public void finishTraining() {
+      mergedBeforeFinishing = merged.get();
+    }
+  }
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.pipeline.answer_gen;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.lucene.search.Query;
+import org.junit.Test;
+
+import rx.Observable;
+
+import com.ibm.watson.developer_cloud.professor_languo.api.BatchAnswerGenerator;
+import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.CandidateAnswer;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.Question;
+import com.ibm.watson.developer_cloud.professor_languo.exception.IngestionException;
+import com.ibm.watson.developer_cloud.professor_languo.exception.SearchException;
+import com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing.NearDuplicateIndex;
+import com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing.StackExchangeThreadSerializer;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeQuestion;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeThread;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.PipelineConstants;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.SearchHit;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.Searcher;
+
+/**
+ * Unit tests for the near-duplicate answer generator
+ */
+public class NearDuplicateAnswerGeneratorTest {
+  private NearDuplicateAnswerGeneratorTest GIVEN = this, WHEN = this, AND = this, THEN = this;
+
+  private static final StackExchangeQuestion UNRELATED_QUESTION = new StackExchangeQuestion(
+      "Which servo should I use for a gripper?", "I need a servo that can lift a few hundred grams.", null, 1,
+      "robotics");
+
+  private StackExchangeThread indexedThread, searchedThread;
+  private BatchAnswerGenerator searchAnswerGenerator;
+  private List<Observable<CandidateAnswer>> batchAnswers;
+  private NearDuplicateAnswerGenerator generator;
+  private List<CandidateAnswer> answers;
+
+  /**
+   * Test that a question duplicating an indexed thread is answered without searching
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_duplicate_question_skips_search() throws Exception {
+    GIVEN.generator_is_initialized();
+    WHEN.answers_are_generated(new StackExchangeQuestion(indexedThread));
+    THEN.search_was_skipped();
+    AND.answers_are(indexedThread);
+    AND.answer_has_near_duplicate_features(0, 1.0, 1.0);
+    AND.answer_is_ranked_by_similarity(0, 1.0, 1);
+  }
+
+  /**
+   * Test that a batch of questions is searched in a single batch, leaving out the questions
+   * answered by their near-duplicates alone
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_batch_searches_only_questions_without_close_duplicates() throws Exception {
+    GIVEN.generator_is_initialized();
+    WHEN.batch_answers_are_generated(new StackExchangeQuestion(indexedThread), UNRELATED_QUESTION);
+    THEN.only_the_unrelated_question_was_searched_in_a_batch();
+    AND.batch_answers_are(indexedThread, searchedThread);
+  }
+
+  /**
+   * Test that an unrelated question falls back to the search, with zero near-duplicate features
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_unrelated_question_is_searched() throws Exception {
+    GIVEN.generator_is_initialized();
+    WHEN.answers_are_generated(UNRELATED_QUESTION);
+    THEN.answers_are(searchedThread);
+    AND.answer_has_near_duplicate_features(0, 0.0, 0.0);
+  }
+
+  private void generator_is_initialized() throws IngestionException, SearchException {
+    String serializedThreadDir = NearDuplicateAnswerGeneratorTest.class.getResource("/serializedThread/").getPath();
+    indexedThread = StackExchangeThreadSerializer.deserializeThreadFromBinFile("193152.ser", serializedThreadDir);
+    searchedThread = StackExchangeThreadSerializer.deserializeThreadFromBinFile("249052.ser", serializedThreadDir);
+
+    NearDuplicateIndex index =
+        new NearDuplicateIndex(NearDuplicateIndex.DEFAULT_NUM_BANDS, NearDuplicateIndex.DEFAULT_BAND_ROWS);
+    index.add(indexedThread.getId(), indexedThread.getQuestion().getUnformattedTitle(),
+        indexedThread.getQuestion().getUnformattedBody());
+
+    // the id lookup of the near-duplicate finds its document with a constant score
+    Searcher searcher = mock(Searcher.class);
+    when(searcher.searchHits(any(Query.class), anyString()))
+        .thenReturn(Collections.singletonList(new SearchHit(0, indexedThread.getId(), 0.25, 1, null, null)));
+    when(searcher.hydrateStream(anyListOf(SearchHit.class)))
+        .thenReturn(Observable.<CandidateAnswer>just(indexedThread));
+    searchAnswerGenerator = mock(BatchAnswerGenerator.class);
+    when(searchAnswerGenerator.generateCandidateAnswers(any(Question.class)))
+        .thenReturn(Observable.<CandidateAnswer>just(searchedThread));
+    when(searchAnswerGenerator.generateCandidateAnswers(anyListOf(Question.class)))
+        .thenReturn(Collections.singletonList(Observable.<CandidateAnswer>just(searchedThread)));
+
+    Properties properties = new Properties();
+    properties.put(ConfigurationConstants.CANDIDATE_ANSWER_NUM, "5");
+    generator = new NearDuplicateAnswerGenerator(searchAnswerGenerator, index, searcher);
+    generator.initialize(properties);
+  }
+
+  private void answers_are_generated(Question question) {
+    answers = generator.generateCandidateAnswers(question).toList().toBlocking().single();
+  }
+
+  private void batch_answers_are_generated(Question... questions) {
+    batchAnswers = generator.generateCandidateAnswers(Arrays.<Question>asList(questions));
+  }
+
+  private void only_the_unrelated_question_was_searched_in_a_batch() {
+    verify(searchAnswerGenerator).generateCandidateAnswers(Collections.<Question>singletonList(UNRELATED_QUESTION));
+    verify(searchAnswerGenerator, never()).generateCandidateAnswers(any(Question.class));
+  }
+
+  private void batch_answers_are(StackExchangeThread... threads) {
+    assertEquals(threads.length, batchAnswers.size());
+    for (int i = 0; i < threads.length; i++) {
+      answers = batchAnswers.get(i).toList().toBlocking().single();
+      answers_are(threads[i]);
+    }
+  }
+
+  private void search_was_skipped() {
+    verify(searchAnswerGenerator, never()).generateCandidateAnswers(any(Question.class));
+  }
+
+  private void answers_are(StackExchangeThread... threads) {
+    assertEquals(threads.length, answers.size());
+    for (int i = 0; i < threads.length; i++)
+      assertEquals(threads[i].getId(), ((StackExchangeThread) answers.get(i)).getId());
+  }
+
+  private void answer_is_ranked_by_similarity(int index, double similarity, int rank) {
+    CandidateAnswer answer = answers.get(index);
+    assertEquals(similarity, answer.getFeatureValue(PipelineConstants.FEATURE_SEARCH_SCORE), 0.0);
+    assertEquals(rank, answer.getFeatureValue(PipelineConstants.FEATURE_SEARCH_RANK), 0.0);
+  }
+
+  private void answer_has_near_duplicate_features(int index, double similarity, double exactTitle) {
+    CandidateAnswer answer = answers.get(index);
+    assertEquals(similarity, answer.getFeatureValue(PipelineConstants.FEATURE_NEAR_DUPLICATE_SIMILARITY), 0.0);
+    assertEquals(exactTitle, answer.getFeatureValue(PipelineConstants.FEATURE_NEAR_DUPLICATE_EXACT_TITLE), 0.0);
+  }
+}
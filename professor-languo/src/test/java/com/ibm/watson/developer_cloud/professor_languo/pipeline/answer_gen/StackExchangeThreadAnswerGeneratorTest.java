@@ -0,0 +1,383 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.pipeline.answer_gen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.search.Query;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import rx.Observable;
+import rx.functions.Func1;
+import rx.observers.TestSubscriber;
+
+import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.CandidateAnswer;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.Question;
+import com.ibm.watson.developer_cloud.professor_languo.exception.IngestionException;
+import com.ibm.watson.developer_cloud.professor_languo.exception.SearchException;
+import com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing.StackExchangeThreadSerializer;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeQuestion;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeThread;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.PipelineConstants;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.NaiveBigramQueryGenerator;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.NaiveStandardQueryGenerator;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.PrimarySearchConstants;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.QueryComponent;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.SearchHit;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.Searcher;
+
+/**
+ * Unit tests for the search-based answer generator
+ */
+public class StackExchangeThreadAnswerGeneratorTest {
+  private StackExchangeThreadAnswerGeneratorTest GIVEN = this, WHEN = this, AND = this, THEN = this;
+
+  private static final long SEARCH_TIMEOUT_SECONDS = 2;
+
+  private StackExchangeThread firstThread, secondThread;
+  private Properties properties;
+  private StackExchangeThreadAnswerGenerator generator;
+  private final AtomicBoolean searchesOverlapped = new AtomicBoolean(false);
+  private final ConcurrentHashMap<Integer, AtomicInteger> loadCounts = new ConcurrentHashMap<Integer, AtomicInteger>();
+  private final ConcurrentHashMap<Integer, String> claimingGenerators = new ConcurrentHashMap<Integer, String>();
+  private final Set<Thread> loadingThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+  private List<CandidateAnswer> answers;
+  private List<List<CandidateAnswer>> batchAnswers;
+  private Searcher batchSearcher;
+  private Searcher generatorSearcher;
+
+  /**
+   * Test that the searches of the query components run at the same time when several query
+   * generator threads are configured, and that their results are merged without duplicates
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_query_components_are_searched_concurrently() throws Exception {
+    GIVEN.generator_is_initialized_with_threads(2);
+    WHEN.answers_are_generated();
+    THEN.searches_overlapped(true);
+    AND.answers_are_unique_threads(firstThread, secondThread);
+    AND.each_thread_was_loaded_once();
+  }
+
+  /**
+   * Test that a post found by several concurrent searches is claimed by the first query component
+   * whatever search completes first, and that the subscribing thread is not held while the
+   * searches run, the threads being loaded by the pool thread completing the last search
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_concurrent_searches_claim_posts_in_component_order() throws Exception {
+    GIVEN.generator_is_initialized_with_threads(2);
+    AND.first_component_search_completes_last();
+    WHEN.answers_are_subscribed_to_without_waiting_for_the_searches();
+    THEN.answers_are_unique_threads(firstThread, secondThread);
+    AND.thread_was_claimed_by(firstThread, NaiveStandardQueryGenerator.class);
+    AND.threads_were_not_loaded_on(Thread.currentThread());
+  }
+
+  /**
+   * Test that the searches of the query components run in turn by default, and that their results
+   * are merged without duplicates
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_query_components_are_searched_in_turn_by_default() throws Exception {
+    GIVEN.generator_is_initialized_with_threads(1);
+    WHEN.answers_are_generated();
+    THEN.searches_overlapped(false);
+    AND.answers_are_unique_threads(firstThread, secondThread);
+    AND.each_thread_was_loaded_once();
+  }
+
+  /**
+   * Test that in combined mode each candidate answer carries the search score and rank of every
+   * query component, with zeros for the query components that did not find it
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_combined_search_records_per_component_features() throws Exception {
+    GIVEN.generator_is_initialized_with_threads(1);
+    AND.combined_search_is_enabled();
+    WHEN.answers_are_generated();
+    THEN.answers_are_unique_threads(firstThread, secondThread);
+    AND.answer_has_component_features(firstThread, NaiveStandardQueryGenerator.class, 2.0, 1.0);
+    AND.answer_has_component_features(firstThread, NaiveBigramQueryGenerator.class, 1.0, 2.0);
+    AND.answer_has_component_features(secondThread, NaiveStandardQueryGenerator.class, 0.0, 0.0);
+    AND.answer_has_component_features(secondThread, NaiveBigramQueryGenerator.class, 3.0, 1.0);
+    AND.each_thread_was_loaded_once();
+  }
+
+  /**
+   * Test that the queries of a batch of questions are searched in a single batch, and that each
+   * question gets the unique threads of its own hits
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_question_batch_is_searched_at_once() throws Exception {
+    GIVEN.generator_is_initialized_with_threads(1);
+    AND.batch_searcher_is_used();
+    WHEN.answers_are_generated_for_a_batch();
+    THEN.batch_was_searched_once();
+    AND.batch_answers_are_unique_threads();
+  }
+
+  @After public void close_generator() throws Exception {
+    generator.close();
+  }
+
+  /**
+   * Initialize a generator with two query components over a searcher whose first search waits for
+   * the second one to start. The first search finds one thread, the second finds it again along
+   * with another thread.
+   */
+  private void generator_is_initialized_with_threads(int threads) throws IngestionException, SearchException {
+    String serializedThreadDir =
+        StackExchangeThreadAnswerGeneratorTest.class.getResource("/serializedThread/").getPath();
+    firstThread = StackExchangeThreadSerializer.deserializeThreadFromBinFile("193152.ser", serializedThreadDir);
+    secondThread = StackExchangeThreadSerializer.deserializeThreadFromBinFile("249052.ser", serializedThreadDir);
+
+    final CountDownLatch bothSearching = new CountDownLatch(2);
+    final AtomicInteger searchNum = new AtomicInteger(0);
+    Searcher searcher = hydratingSearcher();
+    generatorSearcher = searcher;
+    when(searcher.searchHits(any(Query.class), anyString())).thenAnswer(new Answer<List<SearchHit>>() {
+      @Override public List<SearchHit> answer(InvocationOnMock invocation) throws Throwable {
+        String generator = (String) invocation.getArguments()[1];
+        boolean first = searchNum.getAndIncrement() == 0;
+        bothSearching.countDown();
+        if (first) {
+          searchesOverlapped.set(bothSearching.await(SEARCH_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+          return Arrays.asList(hit(firstThread, 1, 1, generator));
+        }
+        return Arrays.asList(hit(firstThread, 1, 1, generator), hit(secondThread, 1, 2, generator));
+      }
+    });
+
+    properties = new Properties();
+    properties.put(ConfigurationConstants.ANALYZER, PrimarySearchConstants.ENGLISH_ANALYZER);
+    properties.put(ConfigurationConstants.QUERY_GENERATORS, PrimarySearchConstants.NAIVE_STANDARD_QUERY_GENERATOR
+        + "," + PrimarySearchConstants.NAIVE_BIGRAM_QUERY_GENERATOR);
+    properties.put(ConfigurationConstants.QUERY_GENERATOR_THREADS, Integer.toString(threads));
+    generator = new StackExchangeThreadAnswerGenerator(new ArrayList<QueryComponent>(), searcher);
+    generator.initialize(properties);
+  }
+
+  /**
+   * Make the search of the first query component, which finds the first thread, complete well after
+   * that of the second one, which finds both threads
+   */
+  private void first_component_search_completes_last() throws SearchException {
+    final String standard = NaiveStandardQueryGenerator.class.getSimpleName();
+    // stubbed without calling the search of the mock, which waits for a second search
+    doAnswer(new Answer<List<SearchHit>>() {
+      @Override public List<SearchHit> answer(InvocationOnMock invocation) throws Throwable {
+        String generator = (String) invocation.getArguments()[1];
+        if (standard.equals(generator)) {
+          Thread.sleep(200);
+          return Arrays.asList(hit(firstThread, 1, 1, generator));
+        }
+        return Arrays.asList(hit(secondThread, 1, 1, generator), hit(firstThread, 1, 2, generator));
+      }
+    }).when(generatorSearcher).searchHits(any(Query.class), anyString());
+  }
+
+  /**
+   * Re-initialize the generator in combined mode over a searcher whose first query finds the first
+   * thread, and whose second query finds the second thread ahead of the first one
+   */
+  private void combined_search_is_enabled() throws Exception {
+    String standard = NaiveStandardQueryGenerator.class.getSimpleName();
+    String bigram = NaiveBigramQueryGenerator.class.getSimpleName();
+    Searcher searcher = hydratingSearcher();
+    when(searcher.searchCombinedHits(anyListOf(Query.class), anyListOf(String.class)))
+        .thenReturn(Arrays.asList(Arrays.asList(hit(firstThread, 2, 1, standard)),
+            Arrays.asList(hit(secondThread, 3, 1, bigram), hit(firstThread, 1, 2, bigram))));
+
+    properties.put(ConfigurationConstants.QUERY_GENERATORS_COMBINED, "true");
+    generator.close();
+    generator = new StackExchangeThreadAnswerGenerator(new ArrayList<QueryComponent>(), searcher);
+    generator.initialize(properties);
+  }
+
+  /**
+   * Re-initialize the generator over a searcher whose batches find the first thread for every query
+   * of the first question, and both threads for every query of the second question
+   */
+  private void batch_searcher_is_used() throws Exception {
+    batchSearcher = hydratingSearcher();
+    when(batchSearcher.searchHitsBatch(anyListOf(Query.class), anyListOf(String.class)))
+        .thenAnswer(new Answer<List<List<SearchHit>>>() {
+          @Override public List<List<SearchHit>> answer(InvocationOnMock invocation) throws Throwable {
+            List<?> generators = (List<?>) invocation.getArguments()[1];
+            List<List<SearchHit>> results = new ArrayList<List<SearchHit>>();
+            for (int i = 0; i < generators.size(); i++) {
+              String generator = (String) generators.get(i);
+              if (i < generators.size() / 2)
+                results.add(Arrays.asList(hit(firstThread, 1, 1, generator)));
+              else
+                results.add(Arrays.asList(hit(firstThread, 1, 1, generator), hit(secondThread, 1, 2, generator)));
+            }
+            return results;
+          }
+        });
+    generator.close();
+    generator = new StackExchangeThreadAnswerGenerator(new ArrayList<QueryComponent>(), batchSearcher);
+    generator.initialize(properties);
+  }
+
+  /**
+   * @return a mock searcher that loads the threads of hits from their serialized files as they are
+   *         streamed, counting how many times each thread is loaded
+   */
+  private Searcher hydratingSearcher() throws SearchException {
+    loadCounts.clear();
+    Searcher searcher = mock(Searcher.class);
+    when(searcher.hydrateStream(anyListOf(SearchHit.class))).thenAnswer(new Answer<Observable<CandidateAnswer>>() {
+      @Override public Observable<CandidateAnswer> answer(InvocationOnMock invocation) throws Throwable {
+        List<?> hits = (List<?>) invocation.getArguments()[0];
+        return Observable.from(hits).map(new Func1<Object, CandidateAnswer>() {
+          @Override public CandidateAnswer call(Object hit) {
+            String serializedThreadDir =
+                StackExchangeThreadAnswerGeneratorTest.class.getResource("/serializedThread/").getPath();
+            int threadId = ((SearchHit) hit).getThreadId();
+            claimingGenerators.put(threadId, String.valueOf(((SearchHit) hit).getGenerator()));
+            loadingThreads.add(Thread.currentThread());
+            loadCounts.putIfAbsent(threadId, new AtomicInteger());
+            loadCounts.get(threadId).incrementAndGet();
+            try {
+              return StackExchangeThreadSerializer.deserializeThreadFromBinFile(threadId + ".ser", serializedThreadDir);
+            } catch (IngestionException e) {
+              throw new RuntimeException(e);
+            }
+          }
+        });
+      }
+    });
+    return searcher;
+  }
+
+  private static SearchHit hit(StackExchangeThread thread, double score, int rank, String generator) {
+    return new SearchHit(-1, thread.getId(), score, rank, generator, null);
+  }
+
+  private void thread_was_claimed_by(StackExchangeThread thread, Class<? extends QueryComponent> component) {
+    assertEquals(component.getSimpleName(), claimingGenerators.get(thread.getId()));
+  }
+
+  private void threads_were_not_loaded_on(Thread thread) {
+    assertFalse(loadingThreads.isEmpty());
+    assertFalse(loadingThreads.contains(thread));
+  }
+
+  private void each_thread_was_loaded_once() {
+    for (AtomicInteger loadCount : loadCounts.values())
+      assertEquals(1, loadCount.get());
+  }
+
+  private void answer_has_component_features(StackExchangeThread thread, Class<? extends QueryComponent> component,
+      double score, double rank) {
+    for (CandidateAnswer answer : answers) {
+      if (((StackExchangeThread) answer).getId() == thread.getId()) {
+        assertEquals(score,
+            answer.getFeatureValue(PipelineConstants.FEATURE_SEARCH_SCORE + "_" + component.getSimpleName()), 0.0);
+        assertEquals(rank,
+            answer.getFeatureValue(PipelineConstants.FEATURE_SEARCH_RANK + "_" + component.getSimpleName()), 0.0);
+      }
+    }
+  }
+
+  private void answers_are_generated_for_a_batch() {
+    List<Question> questions = Arrays.<Question>asList(
+        new StackExchangeQuestion("How do I keep my quadcopter stable?", "", null, 1, "robotics"),
+        new StackExchangeQuestion("Which servo should I use for a gripper?", "", null, 2, "robotics"));
+    batchAnswers = new ArrayList<List<CandidateAnswer>>();
+    for (Observable<CandidateAnswer> questionAnswers : generator.generateCandidateAnswers(questions))
+      batchAnswers.add(questionAnswers.toList().toBlocking().single());
+  }
+
+  private void batch_was_searched_once() throws SearchException {
+    verify(batchSearcher, times(1)).searchHitsBatch(anyListOf(Query.class), anyListOf(String.class));
+    verify(batchSearcher, never()).searchHits(any(Query.class), anyString());
+  }
+
+  private void batch_answers_are_unique_threads() {
+    assertEquals(2, batchAnswers.size());
+    answers = batchAnswers.get(0);
+    answers_are_unique_threads(firstThread);
+    answers = batchAnswers.get(1);
+    answers_are_unique_threads(firstThread, secondThread);
+  }
+
+  private void answers_are_generated() {
+    StackExchangeQuestion question = new StackExchangeQuestion("How do I keep my quadcopter stable?",
+        "My quadcopter drifts as soon as the wind picks up.", null, 1, "robotics");
+    answers = generator.generateCandidateAnswers(question).toList().toBlocking().single();
+  }
+
+  private void answers_are_subscribed_to_without_waiting_for_the_searches() {
+    StackExchangeQuestion question = new StackExchangeQuestion("How do I keep my quadcopter stable?",
+        "My quadcopter drifts as soon as the wind picks up.", null, 1, "robotics");
+    TestSubscriber<CandidateAnswer> subscriber = new TestSubscriber<CandidateAnswer>();
+    generator.generateCandidateAnswers(question).subscribe(subscriber);
+    // the search of the first query component is still running
+    assertTrue(subscriber.getOnCompletedEvents().isEmpty());
+    subscriber.awaitTerminalEvent(SEARCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    subscriber.assertNoErrors();
+    answers = subscriber.getOnNextEvents();
+  }
+
+  private void searches_overlapped(boolean overlapped) {
+    assertEquals(overlapped, searchesOverlapped.get());
+  }
+
+  private void answers_are_unique_threads(StackExchangeThread... threads) {
+    Set<Integer> expectedIds = new HashSet<Integer>();
+    for (StackExchangeThread thread : threads)
+      expectedIds.add(thread.getId());
+    Set<Integer> answerIds = new HashSet<Integer>();
+    for (CandidateAnswer answer : answers)
+      assertTrue("Duplicate answer", answerIds.add(((StackExchangeThread) answer).getId()));
+    assertEquals(expectedIds, answerIds);
+  }
+}
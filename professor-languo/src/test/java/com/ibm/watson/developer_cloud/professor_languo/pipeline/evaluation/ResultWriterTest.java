@@ -29,6 +29,7 @@ import org.junit.rules.TemporaryFolder;
 
 import rx.Observable;
 
+import com.ibm.watson.developer_cloud.professor_languo.api.PipelineQuestionAnswerer;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants;
 import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants.PipelineResultsTsvFileFormats;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.CandidateAnswer;
@@ -52,6 +53,8 @@ public class ResultWriterTest {
 
   private File resultOutputFile;
 
+  private File checkpointFile;
+
   @Test public void test_that_default_format_results_are_written_correctly() throws IOException {
     GIVEN.sample_input_is_created();
     AND.default_result_writer_is_initialized();
@@ -76,6 +79,16 @@ public class ResultWriterTest {
     THEN.competition_results_match_reference_competition_results();
   }
 
+  @Test(expected = RuntimeException.class) public void test_that_verbose_format_is_rejected_with_a_checkpoint()
+      throws IOException {
+    GIVEN.answers_are_checkpointed();
+    WHEN.verbose_result_writer_is_initialized();
+  }
+
+  private void answers_are_checkpointed() throws IOException {
+    checkpointFile = testOutputFolder.newFile();
+  }
+
   private void sample_input_is_created() {
     question1 = new StackExchangeQuestion(
         "What is the Answer to the Ultimate Question of Life" + ", the Universe, and Everything?", null, null, 42, "");
@@ -164,6 +177,8 @@ public class ResultWriterTest {
     props.setProperty(ConfigurationConstants.PIPELINE_RESULTS_TSV_FILE_PATH, resultOutputFile.getAbsolutePath());
     props.setProperty(ConfigurationConstants.PIPELINE_RESULTS_TSV_FILE_FORMAT,
         PipelineResultsTsvFileFormats.VERBOSE.toString());
+    if (checkpointFile != null)
+      props.setProperty(PipelineQuestionAnswerer.PROP_CHECKPOINT_FILE, checkpointFile.getAbsolutePath());
 
     resultWriter = new ResultWriter();
     resultWriter.initialize(props);
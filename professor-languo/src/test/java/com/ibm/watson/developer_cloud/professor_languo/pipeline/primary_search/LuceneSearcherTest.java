@@ -0,0 +1,638 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.watson.developer_cloud.professor_languo.configuration.ConfigurationConstants;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.CandidateAnswer;
+import com.ibm.watson.developer_cloud.professor_languo.exception.IngestionException;
+import com.ibm.watson.developer_cloud.professor_languo.exception.SearchException;
+import com.ibm.watson.developer_cloud.professor_languo.ingestion.indexing.LuceneIndexer;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.LazyStackExchangeThread;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeConstants.IndexDocumentFieldName;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeQuestion;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeThread;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.PipelineConstants;
+
+/**
+ * Unit tests for the Lucene searcher
+ */
+public class LuceneSearcherTest {
+  private LuceneSearcherTest GIVEN = this, WHEN = this, AND = this, THEN = this;
+
+  @Rule public TemporaryFolder testOutputFolder = new TemporaryFolder();
+
+  private static final String INDEX_DIR = "index";
+  private static final int CANDIDATE_ANSWER_NUM = 5;
+
+  private Properties properties;
+  private LuceneSearcher searcher, secondSearcher;
+  private Set<CandidateAnswer> results;
+  private List<Query> queries;
+  private List<List<SearchHit>> separateResults, combinedResults;
+  private List<CandidateAnswer> lazyAnswers;
+  private SearcherRegistry.SharedSearcher sharedIndex;
+
+  /**
+   * Test that early termination on an index sorted by quality returns the highest-quality matches
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_early_termination_returns_highest_quality_threads() throws Exception {
+    GIVEN.index_is_built(true);
+    AND.early_termination_is_enabled();
+    WHEN.every_thread_is_searched();
+    THEN.results_are_the_first_indexed_threads();
+  }
+
+  /**
+   * Test that early termination is ignored when the index is not sorted by quality
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_early_termination_is_ignored_on_unsorted_index() throws Exception {
+    GIVEN.index_is_built(false);
+    AND.early_termination_is_enabled();
+    WHEN.every_thread_is_searched();
+    THEN.expected_number_of_results_are_returned();
+  }
+
+  /**
+   * Test that searchers over the same index share it, and that the index stays open until every
+   * searcher using it is closed
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_searchers_share_the_index_until_all_are_closed() throws Exception {
+    GIVEN.index_is_built(false);
+    AND.index_preload_is_enabled();
+    WHEN.two_searchers_are_initialized();
+    AND.first_searcher_is_closed();
+    THEN.index_is_open(true);
+    AND.second_searcher_still_finds_results();
+    WHEN.second_searcher_is_closed();
+    THEN.index_is_open(false);
+  }
+
+  /**
+   * Test that searching the segments in parallel finds the same hits as searching them in turn
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_parallel_search_finds_the_same_hits() throws Exception {
+    GIVEN.index_is_built(false);
+    AND.searcher_is_initialized();
+    AND.every_thread_is_searched();
+    Set<CandidateAnswer> sequentialResults = results;
+    WHEN.searcher_is_initialized_with_search_threads(4);
+    AND.every_thread_is_searched();
+    THEN.results_are(sequentialResults);
+  }
+
+  /**
+   * Test that the search threads are limited to the cores left to each pipeline thread
+   */
+  @Test public void test_that_search_threads_do_not_oversubscribe_the_cores() {
+    assertEquals(4, LuceneSearcher.limitSearchThreads(4, 1, 8));
+    assertEquals(2, LuceneSearcher.limitSearchThreads(4, 4, 8));
+    assertEquals(0, LuceneSearcher.limitSearchThreads(4, 8, 8));
+    assertEquals(0, LuceneSearcher.limitSearchThreads(0, 1, 8));
+  }
+
+  /**
+   * Test that scoring several queries in a single pass finds the same hits, with the same scores,
+   * as searching each query on its own, and that the hits load the threads they identify
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_combined_search_matches_separate_searches() throws Exception {
+    GIVEN.index_is_built(false);
+    AND.searcher_is_initialized();
+    WHEN.title_queries_are_searched_separately_and_combined();
+    THEN.combined_results_match_separate_results();
+    AND.hits_are_hydrated_in_order();
+  }
+
+  /**
+   * Test that streaming the threads of hits emits the same answers in the same order as loading
+   * them at once, and that a subscriber can stop the loading after the first answer
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_streamed_hydration_matches_hydration() throws Exception {
+    GIVEN.index_is_built(false);
+    AND.searcher_is_initialized();
+    WHEN.title_queries_are_searched_separately_and_combined();
+    THEN.streamed_answers_match_hydrated_answers();
+  }
+
+  /**
+   * Test that streaming the threads of hits by small windows still emits the answers in the order
+   * of the hits
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_streamed_hydration_keeps_the_hit_order_across_windows() throws Exception {
+    GIVEN.index_is_built(false);
+    AND.searcher_is_initialized();
+    AND.threads_are_streamed_by_windows_of(2);
+    WHEN.title_queries_are_searched_separately_and_combined();
+    THEN.streamed_answers_match_hydrated_answers();
+  }
+
+  /**
+   * Test that lazily hydrated threads carry the search features without being decoded, and decode
+   * to the same threads as eager hydration once their content is accessed
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_lazy_hydration_decodes_threads_on_first_access() throws Exception {
+    GIVEN.index_is_built(false);
+    AND.lazy_hydration_is_enabled();
+    AND.searcher_is_initialized();
+    WHEN.title_queries_are_searched_separately_and_combined();
+    AND.lazy_answers_are_hydrated();
+    THEN.lazy_answers_are_not_loaded();
+    AND.lazy_answers_match_eager_answers();
+  }
+
+  /**
+   * Test that a repeated query is answered from the query cache, and that reopening a changed index
+   * drops the cached hits
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_query_cache_is_invalidated_on_reopen() throws Exception {
+    GIVEN.index_is_built(false);
+    AND.searcher_is_initialized_with_query_cache(10);
+    WHEN.every_thread_is_searched_twice();
+    THEN.query_cache_counts_are(1, 1, 1);
+    WHEN.index_is_emptied_and_reopened();
+    THEN.query_cache_counts_are(1, 1, 0);
+    AND.searcher_finds_no_results();
+    AND.query_cache_counts_are(1, 2, 1);
+    searcher.close();
+    sharedIndex.close();
+  }
+
+  /**
+   * Test that a changed index is reopened in the background at the refresh interval, dropping the
+   * cached hits, without anyone asking for it to be reopened
+   *
+   * @throws Exception
+   */
+  @Test(timeout = 30000) public void test_that_changed_index_is_reopened_at_the_refresh_interval()
+      throws Exception {
+    GIVEN.index_is_built(false);
+    AND.index_is_refreshed_every_second();
+    AND.searcher_is_initialized_with_query_cache(10);
+    WHEN.every_thread_is_searched_twice();
+    AND.index_is_emptied();
+    THEN.searcher_eventually_finds_no_results();
+    searcher.close();
+    sharedIndex.close();
+  }
+
+  /**
+   * Test that the query cache evicts the least recently used queries beyond its size, and that its
+   * footprint estimate follows the entries it holds
+   */
+  @Test public void test_that_query_cache_evicts_beyond_its_size() {
+    QueryResultCache cache = new QueryResultCache(1);
+    List<SearchHit> hits = Arrays.asList(new SearchHit(0, 1, 1.0, 1, "generator", null));
+    cache.put("query1", hits, cache.getGeneration());
+    long footprint = cache.getEstimatedBytes();
+    assertTrue(footprint > 0);
+    cache.put("query2", hits, cache.getGeneration());
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(footprint, cache.getEstimatedBytes());
+    assertEquals(null, cache.get("query1"));
+    assertEquals(hits, cache.get("query2"));
+
+    long staleGeneration = cache.getGeneration();
+    cache.invalidateAll();
+    cache.put("query1", hits, staleGeneration);
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getEstimatedBytes());
+  }
+
+  private void searcher_is_initialized_with_query_cache(int size) throws Exception {
+    properties.put(ConfigurationConstants.QUERY_CACHE_SIZE, Integer.toString(size));
+    searcher = new LuceneSearcher();
+    searcher.initialize(properties);
+    sharedIndex = SearcherRegistry.open(new File(testOutputFolder.getRoot(), INDEX_DIR).toPath(), false);
+  }
+
+  private void every_thread_is_searched_twice() throws SearchException {
+    Set<CandidateAnswer> firstResults = searcher.performSearch(new MatchAllDocsQuery());
+    results = searcher.performSearch(new MatchAllDocsQuery());
+    results_are(firstResults);
+  }
+
+  private void index_is_refreshed_every_second() {
+    properties.put(ConfigurationConstants.INDEX_REFRESH_SECONDS, "1");
+  }
+
+  private void index_is_emptied() throws IOException {
+    IndexWriter writer = new IndexWriter(FSDirectory.open(new File(testOutputFolder.getRoot(), INDEX_DIR).toPath()),
+        new IndexWriterConfig(SingletonAnalyzer.getAnalyzer()));
+    writer.deleteAll();
+    writer.close();
+  }
+
+  private void index_is_emptied_and_reopened() throws IOException {
+    index_is_emptied();
+    assertTrue(sharedIndex.maybeRefresh());
+  }
+
+  private void searcher_eventually_finds_no_results() throws SearchException, InterruptedException {
+    while (!searcher.performSearch(new MatchAllDocsQuery()).isEmpty())
+      Thread.sleep(100);
+  }
+
+  private void searcher_finds_no_results() throws SearchException {
+    assertTrue(searcher.performSearch(new MatchAllDocsQuery()).isEmpty());
+  }
+
+  private void query_cache_counts_are(long hits, long misses, long size) {
+    QueryResultCache cache = sharedIndex.getQueryResultCache();
+    assertEquals(hits, cache.getHitCount());
+    assertEquals(misses, cache.getMissCount());
+    assertEquals(size, cache.size());
+  }
+
+  /**
+   * Test that searching a batch of queries on the work-stealing pool finds the same hits as
+   * searching each query on its own
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_batch_search_matches_separate_searches() throws Exception {
+    GIVEN.index_is_built(false);
+    AND.batch_search_threads_are(4);
+    AND.searcher_is_initialized();
+    WHEN.title_queries_are_searched_separately_and_in_a_batch();
+    THEN.combined_results_match_separate_results();
+  }
+
+  /**
+   * Test that rescoring the hits of a cheap title and tag query with a span query gives them the
+   * scores the span query gives them when run directly, so the best title match still comes first
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_two_stage_search_rescores_with_positional_scores() throws Exception {
+    GIVEN.index_is_built(false);
+    AND.searcher_is_initialized();
+    AND.span_query_is_built_for_first_title();
+    AND.span_query_is_searched();
+    List<SearchHit> fullResults = separateResults.get(0);
+    WHEN.searcher_is_initialized_with_rescore_window(1000);
+    AND.span_query_is_searched();
+    THEN.results_match(fullResults);
+  }
+
+  /**
+   * Test that a positional query with a prefix clause, whose terms are only known once it is
+   * rewritten against the index, is rescored instead of failing to have its terms extracted
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_two_stage_search_rewrites_multi_term_queries() throws Exception {
+    GIVEN.index_is_built(false);
+    AND.searcher_is_initialized();
+    AND.span_query_is_built_for_first_title();
+    AND.prefix_of_a_title_term_is_added_to_the_query();
+    AND.span_query_is_searched();
+    List<SearchHit> fullResults = separateResults.get(0);
+    WHEN.searcher_is_initialized_with_rescore_window(1000);
+    AND.span_query_is_searched();
+    THEN.results_match(fullResults);
+  }
+
+  private void span_query_is_built_for_first_title() throws Exception {
+    DirectoryReader reader =
+        DirectoryReader.open(FSDirectory.open(new File(testOutputFolder.getRoot(), INDEX_DIR).toPath()));
+    String title = reader.document(0).get(IndexDocumentFieldName.THREAD_TITLE.toString());
+    reader.close();
+    Query spanQuery = QueryComponentFactory.generateQueryComponent(PrimarySearchConstants.SPAN_BIGRAM_QUERY_GENERATOR)
+        .generateQuery(new StackExchangeQuestion(title, "", null, 1, ""));
+    assertTrue(LuceneSearcher.isPositional(spanQuery));
+    assertFalse(LuceneSearcher.isPositional(LuceneSearcher.firstPassQuery(spanQuery)));
+    queries = Arrays.asList(spanQuery);
+  }
+
+  private void prefix_of_a_title_term_is_added_to_the_query() {
+    Set<Term> terms = new HashSet<Term>();
+    queries.get(0).extractTerms(terms);
+    Term term = terms.iterator().next();
+    BooleanQuery query = new BooleanQuery();
+    query.add(queries.get(0), Occur.SHOULD);
+    query.add(new PrefixQuery(new Term(term.field(), term.text().substring(0, 1))), Occur.SHOULD);
+    assertTrue(LuceneSearcher.isPositional(query));
+    queries = Arrays.<Query>asList(query);
+  }
+
+  private void span_query_is_searched() throws SearchException, IOException {
+    separateResults = new ArrayList<List<SearchHit>>();
+    separateResults.add(searcher.searchHits(queries.get(0), "span"));
+    searcher.close();
+  }
+
+  private void results_match(List<SearchHit> expected) {
+    List<SearchHit> rescored = separateResults.get(0);
+    assertFalse(rescored.isEmpty());
+    assertEquals(expected.get(0).getThreadId(), rescored.get(0).getThreadId());
+    Map<Integer, Double> expectedScores = scoresById(expected);
+    for (int i = 0; i < rescored.size(); i++) {
+      SearchHit hit = rescored.get(i);
+      if (expectedScores.containsKey(hit.getThreadId()))
+        assertEquals(expectedScores.get(hit.getThreadId()), hit.getScore(), 1e-6);
+      if (i > 0)
+        assertTrue(rescored.get(i - 1).getScore() >= hit.getScore());
+    }
+  }
+
+  private void searcher_is_initialized_with_rescore_window(int window) throws SearchException {
+    properties.put(ConfigurationConstants.RESCORE_WINDOW, Integer.toString(window));
+    searcher = new LuceneSearcher();
+    searcher.initialize(properties);
+  }
+
+  private void batch_search_threads_are(int threads) {
+    properties.put(ConfigurationConstants.SEARCH_BATCH_THREADS, Integer.toString(threads));
+  }
+
+  private void title_queries_are_searched_separately_and_in_a_batch() throws Exception {
+    title_queries_are_searched_separately_and_combined();
+    combinedResults = searcher.searchHitsBatch(queries, Arrays.asList("first", "second", "all"));
+    searcher.close();
+  }
+
+  private void title_queries_are_searched_separately_and_combined() throws Exception {
+    QueryParser parser =
+        new QueryParser(IndexDocumentFieldName.THREAD_TITLE.toString(), SingletonAnalyzer.getAnalyzer());
+    DirectoryReader reader =
+        DirectoryReader.open(FSDirectory.open(new File(testOutputFolder.getRoot(), INDEX_DIR).toPath()));
+    queries = Arrays.asList(
+        parser.parse(QueryParser.escape(reader.document(0).get(IndexDocumentFieldName.THREAD_TITLE.toString()))),
+        parser.parse(QueryParser.escape(reader.document(1).get(IndexDocumentFieldName.THREAD_TITLE.toString()))),
+        new MatchAllDocsQuery());
+    reader.close();
+
+    List<String> generators = Arrays.asList("first", "second", "all");
+    separateResults = new ArrayList<List<SearchHit>>();
+    for (int i = 0; i < queries.size(); i++)
+      separateResults.add(searcher.searchHits(queries.get(i), generators.get(i)));
+    combinedResults = searcher.searchCombinedHits(queries, generators);
+  }
+
+  private void combined_results_match_separate_results() {
+    assertEquals(queries.size(), combinedResults.size());
+    for (int i = 0; i < queries.size(); i++) {
+      assertFalse(combinedResults.get(i).isEmpty());
+      assertEquals(scoresById(separateResults.get(i)), scoresById(combinedResults.get(i)));
+    }
+  }
+
+  private void hits_are_hydrated_in_order() throws SearchException, IOException {
+    List<SearchHit> hits = combinedResults.get(2);
+    List<CandidateAnswer> answers = searcher.hydrate(hits);
+    searcher.close();
+    assertEquals(hits.size(), answers.size());
+    for (int i = 0; i < hits.size(); i++) {
+      assertEquals(hits.get(i).getThreadId(), ((StackExchangeThread) answers.get(i)).getId());
+      assertEquals(hits.get(i).getScore(), answers.get(i).getFeatureValue(PipelineConstants.FEATURE_SEARCH_SCORE), 0.0);
+      assertEquals(hits.get(i).getRank(), answers.get(i).getFeatureValue(PipelineConstants.FEATURE_SEARCH_RANK), 0.0);
+    }
+  }
+
+  private void streamed_answers_match_hydrated_answers() throws SearchException, IOException {
+    // the threads are read in document id order, so the hits are put in the opposite order
+    List<SearchHit> hits = new ArrayList<SearchHit>(combinedResults.get(2));
+    Collections.sort(hits, new Comparator<SearchHit>() {
+      @Override public int compare(SearchHit hit1, SearchHit hit2) {
+        return Integer.compare(hit2.getDocId(), hit1.getDocId());
+      }
+    });
+    List<CandidateAnswer> answers = searcher.hydrate(hits);
+    List<CandidateAnswer> streamedAnswers = searcher.hydrateStream(hits).toList().toBlocking().single();
+    CandidateAnswer firstAnswer = searcher.hydrateStream(hits).first().toBlocking().single();
+    searcher.close();
+
+    Map<Integer, Double> scores = new HashMap<Integer, Double>();
+    for (CandidateAnswer answer : answers)
+      scores.put(((StackExchangeThread) answer).getId(), answer.getFeatureValue(PipelineConstants.FEATURE_SEARCH_SCORE));
+    Map<Integer, Double> streamedScores = new HashMap<Integer, Double>();
+    for (CandidateAnswer answer : streamedAnswers)
+      streamedScores.put(((StackExchangeThread) answer).getId(),
+          answer.getFeatureValue(PipelineConstants.FEATURE_SEARCH_SCORE));
+    assertEquals(scores, streamedScores);
+    assertEquals(answers.size(), streamedAnswers.size());
+    for (int i = 0; i < answers.size(); i++)
+      assertEquals(((StackExchangeThread) answers.get(i)).getId(),
+          ((StackExchangeThread) streamedAnswers.get(i)).getId());
+    assertEquals(((StackExchangeThread) answers.get(0)).getId(), ((StackExchangeThread) firstAnswer).getId());
+  }
+
+  private void threads_are_streamed_by_windows_of(int hits) {
+    searcher.hydrationWindow = hits;
+  }
+
+  private void lazy_hydration_is_enabled() {
+    properties.put(ConfigurationConstants.LAZY_HYDRATION, "true");
+  }
+
+  private void lazy_answers_are_hydrated() throws SearchException {
+    lazyAnswers = searcher.hydrate(combinedResults.get(2));
+  }
+
+  private void lazy_answers_are_not_loaded() {
+    List<SearchHit> hits = combinedResults.get(2);
+    assertEquals(hits.size(), lazyAnswers.size());
+    for (int i = 0; i < hits.size(); i++) {
+      LazyStackExchangeThread answer = (LazyStackExchangeThread) lazyAnswers.get(i);
+      assertEquals(hits.get(i).getThreadId(), answer.getId());
+      assertEquals(hits.get(i).getScore(), answer.getFeatureValue(PipelineConstants.FEATURE_SEARCH_SCORE), 0.0);
+      assertFalse(answer.isLoaded());
+    }
+  }
+
+  private void lazy_answers_match_eager_answers() throws SearchException, IOException {
+    properties.put(ConfigurationConstants.LAZY_HYDRATION, "false");
+    secondSearcher = new LuceneSearcher();
+    secondSearcher.initialize(properties);
+    List<CandidateAnswer> eagerAnswers = secondSearcher.hydrate(combinedResults.get(2));
+    for (int i = 0; i < eagerAnswers.size(); i++) {
+      StackExchangeThread lazy = (StackExchangeThread) lazyAnswers.get(i);
+      StackExchangeThread eager = (StackExchangeThread) eagerAnswers.get(i);
+      assertEquals(eager.getQuestion(), lazy.getQuestion());
+      assertTrue(((LazyStackExchangeThread) lazy).isLoaded());
+      assertEquals(eager.getAnswers(), lazy.getAnswers());
+      assertEquals(eager.getAnswerTitle().getText(), lazy.getAnswerTitle().getText());
+      assertEquals(eager.getSite(), lazy.getComponentId());
+    }
+    searcher.close();
+    secondSearcher.close();
+  }
+
+  private static Map<Integer, Double> scoresById(List<SearchHit> hits) {
+    Map<Integer, Double> scores = new HashMap<Integer, Double>();
+    for (SearchHit hit : hits)
+      scores.put(hit.getThreadId(), hit.getScore());
+    return scores;
+  }
+
+  private void searcher_is_initialized() throws SearchException {
+    searcher = new LuceneSearcher();
+    searcher.initialize(properties);
+  }
+
+  private void searcher_is_initialized_with_search_threads(int searchThreads) throws SearchException {
+    properties.put(ConfigurationConstants.SEARCH_THREADS, Integer.toString(searchThreads));
+    searcher = new LuceneSearcher();
+    searcher.initialize(properties);
+  }
+
+  private void results_are(Set<CandidateAnswer> expected) {
+    assertEquals(ids(expected), ids(results));
+  }
+
+  private static Set<Integer> ids(Set<CandidateAnswer> answers) {
+    Set<Integer> ids = new HashSet<Integer>();
+    for (CandidateAnswer answer : answers)
+      ids.add(((StackExchangeThread) answer).getId());
+    return ids;
+  }
+
+  private void index_preload_is_enabled() {
+    properties.put(ConfigurationConstants.INDEX_PRELOAD, "true");
+  }
+
+  private void two_searchers_are_initialized() throws SearchException {
+    searcher = new LuceneSearcher();
+    searcher.initialize(properties);
+    secondSearcher = new LuceneSearcher();
+    secondSearcher.initialize(properties);
+  }
+
+  private void first_searcher_is_closed() throws IOException {
+    searcher.close();
+  }
+
+  private void second_searcher_is_closed() throws IOException {
+    secondSearcher.close();
+  }
+
+  private void second_searcher_still_finds_results() throws SearchException {
+    assertEquals(CANDIDATE_ANSWER_NUM, secondSearcher.performSearch(new MatchAllDocsQuery()).size());
+  }
+
+  private void index_is_open(boolean open) {
+    boolean isOpen = SearcherRegistry.isOpen(new File(testOutputFolder.getRoot(), INDEX_DIR).toPath());
+    if (open) {
+      assertTrue(isOpen);
+    } else {
+      assertFalse(isOpen);
+    }
+  }
+
+  private void index_is_built(boolean sortByQuality) throws IOException, IngestionException {
+    File threadDir = testOutputFolder.newFolder("uniqueThreads");
+    File sourceDir = new File(LuceneSearcherTest.class.getResource("/duplicateThreads/").getPath());
+    for (File serFile : sourceDir.listFiles()) {
+      if (serFile.getName().endsWith(".ser")) {
+        Files.copy(serFile.toPath(), new File(threadDir, serFile.getName()).toPath());
+      }
+    }
+
+    properties = new Properties();
+    properties.put(ConfigurationConstants.INGESTION_BASE_DIR, testOutputFolder.getRoot().getAbsolutePath());
+    properties.put(ConfigurationConstants.INDEX_DIR_TYPE, ConfigurationConstants.IndexDirTypes.FS.toString());
+    properties.put(ConfigurationConstants.INDEX_DIR, INDEX_DIR);
+    properties.put(ConfigurationConstants.INDEX_STAT_PATH, "indexStat.txt");
+    properties.put(ConfigurationConstants.INDEX_SORT_BY_QUALITY, Boolean.toString(sortByQuality));
+    properties.put(ConfigurationConstants.CANDIDATE_ANSWER_NUM, Integer.toString(CANDIDATE_ANSWER_NUM));
+
+    SingletonAnalyzer.generateAnalyzer(PrimarySearchConstants.ENGLISH_ANALYZER);
+    LuceneIndexer indexer = new LuceneIndexer();
+    indexer.initialize(properties);
+    indexer.indexCorpus(threadDir.getPath());
+  }
+
+  private void early_termination_is_enabled() throws SearchException {
+    properties.put(ConfigurationConstants.SEARCH_EARLY_TERMINATION_HITS, Integer.toString(CANDIDATE_ANSWER_NUM));
+    searcher = new LuceneSearcher();
+    searcher.initialize(properties);
+  }
+
+  private void every_thread_is_searched() throws SearchException, IOException {
+    results = searcher.performSearch(new MatchAllDocsQuery());
+    searcher.closeIndexReader();
+  }
+
+  private void results_are_the_first_indexed_threads() throws IOException, IngestionException {
+    Set<Integer> expectedIds = new HashSet<Integer>();
+    DirectoryReader reader =
+        DirectoryReader.open(FSDirectory.open(new File(testOutputFolder.getRoot(), INDEX_DIR).toPath()));
+    for (int docId = 0; docId < CANDIDATE_ANSWER_NUM; docId++) {
+      expectedIds.add(Integer.parseInt(reader.document(docId).get(IndexDocumentFieldName.THREAD_POST_ID.toString())));
+    }
+    reader.close();
+
+    Set<Integer> resultIds = new HashSet<Integer>();
+    for (CandidateAnswer answer : results) {
+      resultIds.add(((StackExchangeThread) answer).getId());
+    }
+    assertEquals(expectedIds, resultIds);
+  }
+
+  private void expected_number_of_results_are_returned() {
+    assertEquals(CANDIDATE_ANSWER_NUM, results.size());
+  }
+}
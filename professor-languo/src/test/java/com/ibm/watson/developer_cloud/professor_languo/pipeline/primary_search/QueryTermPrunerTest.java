@@ -0,0 +1,147 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests for the IDF-based query term pruner
+ */
+public class QueryTermPrunerTest {
+  private QueryTermPrunerTest GIVEN = this, WHEN = this, AND = this, THEN = this;
+
+  private static final String[] FIELDS = {"title", "body"};
+  private static final int NUM_DOCS = 10;
+
+  private IndexReader reader;
+  private BooleanQuery query;
+  private QueryTermPruner.Result result;
+
+  /**
+   * Test that only the most selective tokens are kept, in every field
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_pruning_keeps_the_most_selective_terms() throws Exception {
+    GIVEN.index_is_built();
+    AND.query_is_built("common", "rare", "medium");
+    WHEN.query_is_pruned(2, 1);
+    THEN.kept_tokens_are("rare", "medium");
+    AND.kept_clauses_are(4);
+    AND.saved_postings_are(2 * NUM_DOCS);
+  }
+
+  /**
+   * Test that tokens appearing in too many documents are dropped
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_pruning_drops_frequent_terms() throws Exception {
+    GIVEN.index_is_built();
+    AND.query_is_built("common", "rare", "medium");
+    WHEN.query_is_pruned(0, 0.6);
+    THEN.kept_tokens_are("rare", "medium");
+  }
+
+  /**
+   * Test that the most selective token is kept even if it is too frequent, so the query still
+   * matches something
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_pruning_keeps_at_least_one_term() throws Exception {
+    GIVEN.index_is_built();
+    AND.query_is_built("common");
+    WHEN.query_is_pruned(0, 0.1);
+    THEN.kept_tokens_are("common");
+    AND.saved_postings_are(0);
+  }
+
+  @After public void close_reader() throws IOException {
+    reader.close();
+  }
+
+  /**
+   * Index documents all containing "common", half of them containing "medium" and one containing
+   * "rare", in both fields
+   */
+  private void index_is_built() throws IOException {
+    RAMDirectory directory = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new WhitespaceAnalyzer()));
+    for (int i = 0; i < NUM_DOCS; i++) {
+      String text = "common" + (i % 2 == 0 ? " medium" : "") + (i == 0 ? " rare" : "");
+      Document doc = new Document();
+      for (String field : FIELDS)
+        doc.add(new TextField(field, text, Field.Store.NO));
+      writer.addDocument(doc);
+    }
+    writer.close();
+    reader = DirectoryReader.open(directory);
+  }
+
+  private void query_is_built(String... tokens) {
+    query = new BooleanQuery();
+    for (String token : tokens) {
+      for (String field : FIELDS)
+        query.add(new TermQuery(new Term(field, token)), Occur.SHOULD);
+    }
+  }
+
+  private void query_is_pruned(int maxTerms, double maxDfRatio) throws IOException {
+    result = new QueryTermPruner(maxTerms, maxDfRatio).prune(reader, query);
+    assertEquals(query.clauses().size(), result.getClauses());
+  }
+
+  private void kept_tokens_are(String... tokens) {
+    Set<Term> terms = new HashSet<Term>();
+    result.getQuery().extractTerms(terms);
+    Set<Term> expected = new HashSet<Term>();
+    for (String token : tokens) {
+      for (String field : FIELDS)
+        expected.add(new Term(field, token));
+    }
+    assertEquals(expected, terms);
+    assertTrue(result.getKeptClauses() <= result.getClauses());
+  }
+
+  private void kept_clauses_are(int clauses) {
+    assertEquals(clauses, result.getKeptClauses());
+  }
+
+  private void saved_postings_are(long postings) {
+    assertEquals(postings, result.getSavedPostings());
+  }
+}
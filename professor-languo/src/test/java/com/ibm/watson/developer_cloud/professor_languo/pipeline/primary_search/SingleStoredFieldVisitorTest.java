@@ -0,0 +1,94 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests for the visitor reading a single stored field of a document
+ */
+public class SingleStoredFieldVisitorTest {
+  private SingleStoredFieldVisitorTest GIVEN = this, AND = this, THEN = this;
+
+  private static final byte[] BLOB = {1, 2, 3};
+
+  private IndexReader reader;
+  private SingleStoredFieldVisitor blobVisitor = new SingleStoredFieldVisitor("blob");
+
+  /**
+   * Test that numeric and binary fields are read on their own, and that a reset visitor does not
+   * keep the value of the previous document
+   *
+   * @throws Exception
+   */
+  @Test public void test_that_only_the_requested_field_is_read() throws Exception {
+    GIVEN.index_is_built();
+    THEN.id_of_document_is(0, 42);
+    AND.blob_of_document_is(0, BLOB);
+    AND.blob_of_document_is(1, null);
+  }
+
+  @After public void close_reader() throws IOException {
+    reader.close();
+  }
+
+  private void index_is_built() throws IOException {
+    RAMDirectory directory = new RAMDirectory();
+    IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new WhitespaceAnalyzer()));
+    Document doc = new Document();
+    doc.add(new TextField("title", "some title", Field.Store.YES));
+    doc.add(new IntField("id", 42, Field.Store.YES));
+    doc.add(new StoredField("blob", BLOB));
+    writer.addDocument(doc);
+    doc = new Document();
+    doc.add(new TextField("title", "other title", Field.Store.YES));
+    writer.addDocument(doc);
+    writer.close();
+    reader = DirectoryReader.open(directory);
+  }
+
+  private void id_of_document_is(int docId, int id) throws IOException {
+    SingleStoredFieldVisitor visitor = new SingleStoredFieldVisitor("id");
+    reader.document(docId, visitor);
+    assertEquals(id, visitor.getNumericValue().intValue());
+  }
+
+  private void blob_of_document_is(int docId, byte[] blob) throws IOException {
+    blobVisitor.reset();
+    reader.document(docId, blobVisitor);
+    if (blob == null)
+      assertNull(blobVisitor.getBinaryValue());
+    else
+      assertArrayEquals(blob, blobVisitor.getBinaryValue());
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.primary_search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.professor_languo.data_model.Question;
+import com.ibm.watson.developer_cloud.professor_languo.model.stack_exchange.StackExchangeQuestion;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.AnalyzerUtils;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.NgramAnalyzer;
+import com.ibm.watson.developer_cloud.professor_languo.pipeline.primary_search.QuestionAnalysisCache;
+
+public class QuestionAnalysisCacheTest {
+
+  QuestionAnalysisCacheTest GIVEN = this, AND = this, WHEN = this, THEN = this;
+
+  private final String title = "The quick brown fox jumped over the lazy dogs";
+
+  private Question question, otherQuestion;
+  private List<String> firstTokens, secondTokens, otherTokens;
+
+  @Test public void test_that_title_is_analyzed_once_per_question_and_analyzer() throws IOException {
+    GIVEN.questions_are_built();
+    WHEN.title_tokens_are_collected();
+    THEN.tokens_are_shared_within_the_question();
+    AND.tokens_match_a_fresh_analysis();
+  }
+
+  @Test public void test_that_ngram_analyzers_are_shared_per_gap() {
+    assertSame(NgramAnalyzer.forGap(2), NgramAnalyzer.forGap(2));
+    assertNotSame(NgramAnalyzer.forGap(2), NgramAnalyzer.forGap(3));
+  }
+
+  private void questions_are_built() {
+    question = new StackExchangeQuestion(title, "", null, 1, "");
+    otherQuestion = new StackExchangeQuestion(title, "", null, 1, "");
+  }
+
+  private void title_tokens_are_collected() throws IOException {
+    firstTokens = QuestionAnalysisCache.titleTokens(question, NgramAnalyzer.forGap(2));
+    secondTokens = QuestionAnalysisCache.titleTokens(question, NgramAnalyzer.forGap(2));
+    otherTokens = QuestionAnalysisCache.titleTokens(otherQuestion, NgramAnalyzer.forGap(2));
+  }
+
+  private void tokens_are_shared_within_the_question() {
+    assertSame(firstTokens, secondTokens);
+    assertNotSame(firstTokens, otherTokens);
+  }
+
+  private void tokens_match_a_fresh_analysis() throws IOException {
+    List<String> expected = AnalyzerUtils.collectTokens(new NgramAnalyzer(2), title);
+    assertEquals(expected, firstTokens);
+    assertEquals(expected, otherTokens);
+  }
+}
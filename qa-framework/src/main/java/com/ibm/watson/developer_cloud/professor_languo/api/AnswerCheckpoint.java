@@ -0,0 +1,216 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.api;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.ibm.watson.developer_cloud.professor_languo.data_model.CandidateAnswer;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.FeatureSchema;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.Question;
+
+/**
+ * An append-only file of the answered questions of a run, so that a run that is stopped can be
+ * resumed without answering again the questions it had already answered. Each answered question
+ * is written on a line of its own as soon as it is recorded, with the label, component ID,
+ * confidence and features of each of its ranked answers. A line that was only partly written when
+ * the run stopped is ignored, and its question answered again.
+ * <p>
+ * The fields of a line are separated by tabs and URL-encoded: the question ID, the number of
+ * answers, then the label, component ID, confidence and features of each answer, the features
+ * being written as <code>name=value</code> pairs separated by commas. Nothing else of an answer is
+ * recorded, so the answers read back are plain {@link CandidateAnswer}s whatever their type was.
+ */
+public class AnswerCheckpoint implements Closeable {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  private static final String ENCODING = StandardCharsets.UTF_8.name();
+  private static final char FIELD_SEPARATOR = '\t';
+  private static final char FEATURE_SEPARATOR = ',';
+  private static final char VALUE_SEPARATOR = '=';
+  private static final int FIELDS_PER_ANSWER = 4;
+
+  /** the answers of the questions recorded by previous runs, by question ID **/
+  private final Map<String, List<CandidateAnswer>> recordedAnswers = new HashMap<>();
+
+  private final Writer writer;
+
+  /**
+   * Read the questions already recorded in a checkpoint file, and open it to record more
+   *
+   * @param file - the checkpoint file, created if it does not exist
+   * @throws IOException
+   */
+  public AnswerCheckpoint(File file) throws IOException {
+    boolean endsWithNewLine = true;
+    if (file.exists()) {
+      read(file);
+      endsWithNewLine = endsWithNewLine(file);
+    }
+    writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+    // a line left incomplete by a stopped run must not swallow the first line of this one
+    if (!endsWithNewLine) {
+      writer.write('\n');
+      writer.flush();
+    }
+  }
+
+  /**
+   * @return whether the answers of a question were recorded by a previous run
+   */
+  public boolean contains(String questionId) {
+    return recordedAnswers.containsKey(questionId);
+  }
+
+  /**
+   * @return the ranked answers of a question recorded by a previous run, or null if there are none
+   */
+  public List<CandidateAnswer> get(String questionId) {
+    List<CandidateAnswer> answers = recordedAnswers.get(questionId);
+    return answers == null ? null : Collections.unmodifiableList(answers);
+  }
+
+  /**
+   * @return the number of questions recorded by previous runs
+   */
+  public int size() {
+    return recordedAnswers.size();
+  }
+
+  /**
+   * Record the ranked answers of a question, and write them out to the file
+   *
+   * @throws RuntimeException if the answers could not be written
+   */
+  public void record(Question question, List<CandidateAnswer> answers) {
+    StringBuilder line = new StringBuilder();
+    line.append(encode(question.getId())).append(FIELD_SEPARATOR).append(answers.size());
+    for (CandidateAnswer answer : answers) {
+      line.append(FIELD_SEPARATOR).append(encode(answer.getAnswerLabel()));
+      line.append(FIELD_SEPARATOR).append(encode(answer.getComponentId()));
+      line.append(FIELD_SEPARATOR).append(answer.getConfidence() == null ? "" : answer.getConfidence());
+      line.append(FIELD_SEPARATOR);
+      for (int slot = answer.nextFeature(0); slot >= 0; slot = answer.nextFeature(slot + 1)) {
+        if (line.charAt(line.length() - 1) != FIELD_SEPARATOR)
+          line.append(FEATURE_SEPARATOR);
+        line.append(encode(FeatureSchema.name(slot))).append(VALUE_SEPARATOR).append(answer.getFeature(slot));
+      }
+    }
+    line.append('\n');
+    try {
+      synchronized (writer) {
+        writer.write(line.toString());
+        writer.flush();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to record the answers of question " + question.getId(), e);
+    }
+  }
+
+  @Override public void close() throws IOException {
+    writer.close();
+  }
+
+  private void read(File file) throws IOException {
+    try (BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty())
+          continue;
+        try {
+          parse(line);
+        } catch (RuntimeException e) {
+          logger.warn("Ignoring an incomplete line of checkpoint " + file + ": " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  private void parse(String line) {
+    String[] fields = line.split(String.valueOf(FIELD_SEPARATOR), -1);
+    int numAnswers = Integer.parseInt(fields[1]);
+    if (fields.length != 2 + numAnswers * FIELDS_PER_ANSWER)
+      throw new IllegalArgumentException("expected " + numAnswers + " answers");
+    List<CandidateAnswer> answers = new ArrayList<>(numAnswers);
+    for (int i = 2; i < fields.length; i += FIELDS_PER_ANSWER) {
+      String componentId = fields[i + 1].isEmpty() ? null : decode(fields[i + 1]);
+      CandidateAnswer answer = new CandidateAnswer(decode(fields[i]), componentId);
+      if (!fields[i + 2].isEmpty())
+        answer.setConfidence(Double.parseDouble(fields[i + 2]));
+      for (Entry<String, Double> feature : parseFeatures(fields[i + 3]).entrySet())
+        answer.setFeatureValue(feature.getKey(), feature.getValue());
+      answers.add(answer);
+    }
+    recordedAnswers.put(decode(fields[0]), answers);
+  }
+
+  private static Map<String, Double> parseFeatures(String field) {
+    Map<String, Double> features = new HashMap<>();
+    if (field.isEmpty())
+      return features;
+    for (String feature : field.split(String.valueOf(FEATURE_SEPARATOR))) {
+      int separator = feature.indexOf(VALUE_SEPARATOR);
+      features.put(decode(feature.substring(0, separator)), Double.parseDouble(feature.substring(separator + 1)));
+    }
+    return features;
+  }
+
+  private static boolean endsWithNewLine(File file) throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+      if (randomAccessFile.length() == 0)
+        return true;
+      randomAccessFile.seek(randomAccessFile.length() - 1);
+      return randomAccessFile.read() == '\n';
+    }
+  }
+
+  private static String encode(String s) {
+    try {
+      return s == null ? "" : URLEncoder.encode(s, ENCODING);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String decode(String s) {
+    try {
+      return URLDecoder.decode(s, ENCODING);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.api;
+
+import java.util.List;
+
+import rx.Observable;
+
+import com.ibm.watson.developer_cloud.professor_languo.data_model.CandidateAnswer;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.Question;
+
+/**
+ * An answer generator that can generate the answers of many questions at once, for example by
+ * sending the searches of all the questions to the search index in a single batch. The pipeline
+ * uses it when it applies to a whole question set.
+ *
+ */
+public interface BatchAnswerGenerator extends AnswerGenerator {
+
+  /**
+   * Identify the answers to each of the specified questions, as
+   * {@link AnswerGenerator#generateCandidateAnswers(Question)} would for each question on its own.
+   * The questions have already been analyzed.
+   *
+   * @param questions the questions to be answered
+   * @return the answers of each question, in the order of the questions
+   */
+  public List<Observable<CandidateAnswer>> generateCandidateAnswers(List<Question> questions);
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.api;
+
+/**
+ * A trainable component that can be copied, so that the folds of a cross-validation can each train
+ * their own copy and run at the same time.
+ *
+ */
+public interface CloneableTrainableComponent extends TrainableComponent {
+
+  /**
+   * Create an initialized, untrained copy of the component. The copy shares the read-only
+   * resources of the component, such as a search index, but none of its trained state, and is
+   * never closed: the component closes the resources it shares.
+   *
+   * @return a copy of the component, of the same class as the component
+   */
+  public CloneableTrainableComponent cloneForTraining();
+
+}
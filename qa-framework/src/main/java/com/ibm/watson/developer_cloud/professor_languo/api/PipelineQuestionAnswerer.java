@@ -14,14 +14,24 @@
 
 package com.ibm.watson.developer_cloud.professor_languo.api;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -31,10 +41,16 @@ import com.ibm.watson.developer_cloud.professor_languo.data_model.Question;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.QuestionAnswerSet;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.QuestionAnswerSet.CorrectAnswer;
 import com.ibm.watson.developer_cloud.professor_languo.data_model.QuestionAnswerSet.Fold;
+import com.ibm.watson.developer_cloud.professor_languo.data_model.TopCandidateAnswers;
+import com.ibm.watson.developer_cloud.professor_languo.metrics.MetricsRegistry;
+import com.ibm.watson.developer_cloud.professor_languo.metrics.StageTimer;
 
 import rx.Observable;
 import rx.Scheduler;
+import rx.functions.Action1;
+import rx.functions.Func0;
 import rx.functions.Func1;
+import rx.functions.Func2;
 import rx.schedulers.Schedulers;
 
 /**
@@ -57,19 +73,82 @@ public abstract class PipelineQuestionAnswerer implements QuestionAnswerer {
   private static final Logger logger = LogManager.getLogger();
   public static final String PROP_NUM_FOLDS = "PipelineQuestionAnswerer.numFolds";
   public static final String PROP_NUM_THREADS = "PipelineQuestionAnswerer.numThreads";
-  static final String PROP_FILTER_DUPS = "PipelineQuestionAnswerer.filterDuplicates";
+  public static final String PROP_BATCH_SIZE = "PipelineQuestionAnswerer.batchSize";
+  public static final String PROP_SCORING_THREADS = "PipelineQuestionAnswerer.scoringThreads";
+  public static final String PROP_SCORING_QUEUE_SIZE = "PipelineQuestionAnswerer.scoringQueueSize";
+  public static final String PROP_MAX_QUESTIONS_IN_FLIGHT = "PipelineQuestionAnswerer.maxQuestionsInFlight";
+  public static final String PROP_RELEASE_ANSWERS = "PipelineQuestionAnswerer.releaseAnswers";
+  public static final String PROP_PARALLEL_FOLDS = "PipelineQuestionAnswerer.parallelFolds";
+  public static final String PROP_TOP_K = "PipelineQuestionAnswerer.topK";
+  public static final String PROP_METRICS_REPORT_SECONDS = "PipelineQuestionAnswerer.metricsReportSeconds";
+  public static final String PROP_METRICS_REPORT_FILE = "PipelineQuestionAnswerer.metricsReportFile";
+  /**
+   * the file recording the answered questions of a set, see {@link AnswerCheckpoint}. The answers of
+   * the questions replayed from it are plain {@link CandidateAnswer}s holding only their label,
+   * component id, confidence and features, so answer postprocessors that need anything more of an
+   * answer, such as the thread of a search result, cannot be used with a checkpoint and should
+   * reject this property
+   **/
+  public static final String PROP_CHECKPOINT_FILE = "PipelineQuestionAnswerer.checkpointFile";
+  public static final String PROP_FILTER_DUPS = "PipelineQuestionAnswerer.filterDuplicates";
   int numFolds = -1;
+  private int batchSize = 1;
   private Scheduler scheduler;
   private ExecutorService executor;
 
+  /** the number of questions answered at once, or 0 to answer every question of a set at once **/
+  private int maxQuestionsInFlight;
+
+  /**
+   * whether the answers of a question of a set are released once they have been postprocessed, so
+   * that only the questions being answered are held in memory
+   **/
+  private boolean releaseAnswers;
+
+  /** whether the training folds run at the same time, each with its own trainable components **/
+  private boolean parallelFolds;
+
+  /** the number of best answers kept for each question, or 0 to keep every answer **/
+  private int topK;
+
+  /** the pool scoring the candidate answers of a question in parallel, or null to score them in turn **/
+  private ExecutorService scoringExecutor;
+  private Scheduler scoringScheduler;
+
+  /**
+   * the questions of a set answered by this run and by the runs it resumes, whose answers are replayed
+   * instead of computed again, or null
+   **/
+  private AnswerCheckpoint checkpoint;
+
+  /** the timers of each stage and component, and the counters of candidate answers **/
+  private static final MetricsRegistry metrics = MetricsRegistry.getDefault();
+
   @Override public Observable<List<CandidateAnswer>> answer(final Question question,
       final Collection<CorrectAnswer> correctAnswers) {
-    Observable<List<CandidateAnswer>> retval = process(question, null);
+    return answer(question, correctAnswers, null, null);
+  }
+
+  /**
+   * @param generatedAnswers - the answers already generated for the question by the batch answer
+   *        generators, in which case the question has already been analyzed, or null
+   * @param checkpoint - the checkpoint recording the answers once they are postprocessed, or null
+   */
+  private Observable<List<CandidateAnswer>> answer(final Question question,
+      final Collection<CorrectAnswer> correctAnswers,
+      Map<AnswerGenerator, Observable<CandidateAnswer>> generatedAnswers, final AnswerCheckpoint checkpoint) {
+    Observable<List<CandidateAnswer>> retval = process(question, null, generatedAnswers, null);
     retval = retval.map(new Func1<List<CandidateAnswer>, List<CandidateAnswer>>() {
       @Override public List<CandidateAnswer> call(List<CandidateAnswer> answers) {
         for (AnswerPostprocessor answerPostprocessor : answerPostprocessorComponents) {
+          long start = System.nanoTime();
           answerPostprocessor.postprocessAnswers(question, Observable.from(answers), correctAnswers);
+          metrics.recordTime("pipeline.postprocessing." + name(answerPostprocessor), start);
         }
+        metrics.increment("pipeline.questions.answered");
+        // recorded before the answers are compacted, which discards their features
+        if (checkpoint != null)
+          checkpoint.record(question, answers);
         for (CandidateAnswer answer : answers) {
           // discard search results for this answer because we are done processing it and we need to
           // free up memory
@@ -87,6 +166,23 @@ public abstract class PipelineQuestionAnswerer implements QuestionAnswerer {
       answerPostprocessor.finishPostprocessing();
     }
     executor.shutdown();
+    if (scoringExecutor != null)
+      scoringExecutor.shutdown();
+    metrics.stopReporting();
+    if (checkpoint != null) {
+      try {
+        checkpoint.close();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    close(questionAnalysisComponents);
+    close(answerGenerationComponents);
+    close(evidenceRetriverComponents);
+    close(searchResultProcessingComponents);
+    close(answerScorerComponents);
+    close(answerMergerAndRankerComponents);
+    close(answerPostprocessorComponents);
   }
 
   @Override public void train(QuestionAnswerSet trainSet, QuestionAnswerSet componentTraining) {
@@ -97,22 +193,120 @@ public abstract class PipelineQuestionAnswerer implements QuestionAnswerer {
     }
   }
 
+  /**
+   * Answer every question of a question set. If a batch size is set and some answer generators can
+   * generate answers in batches, the questions are answered a batch at a time, each batch answer
+   * generator generating the answers of the whole batch at once. At most
+   * {@link #PROP_MAX_QUESTIONS_IN_FLIGHT} questions are answered at once. If a checkpoint file is set,
+   * the questions it records are not answered again: their answers are replayed to the answer
+   * postprocessors first, before the other questions are answered and recorded.
+   */
   public Observable<AnsweredQuestion> apply(final QuestionAnswerSet testSet) {
     Observable<Question> questionStream = Observable.from(testSet.getQuestions());
+    Observable<AnsweredQuestion> replayedAnswers = Observable.empty();
+    if (checkpoint != null) {
+      replayedAnswers = questionStream.filter(new Func1<Question, Boolean>() {
+        @Override public Boolean call(Question question) {
+          return checkpoint.contains(question.getId());
+        }
+      }).map(new Func1<Question, AnsweredQuestion>() {
+        @Override public AnsweredQuestion call(Question question) {
+          return replay(testSet, question);
+        }
+      });
+      questionStream = questionStream.filter(new Func1<Question, Boolean>() {
+        @Override public Boolean call(Question question) {
+          return !checkpoint.contains(question.getId());
+        }
+      });
+    }
 
-    Observable<AnsweredQuestion> testAnswers =
-        scheduleMap(scheduler, questionStream, new Func1<Question, AnsweredQuestion>() {
-          @Override public AnsweredQuestion call(Question question) {
-            logger.info(question.getId());
-            Collection<CorrectAnswer> correctAnswers = testSet.getAnswers(question.getId());
-            Observable<List<CandidateAnswer>> candidates = answer(question, correctAnswers);
-            AnsweredQuestion retval = new AnsweredQuestion(question, candidates.toBlocking().first());
-            logger.trace(retval.getAnswers());
-            return retval;
-          }
-        });
+    Observable<AnsweredQuestion> testAnswers;
+    if (batchSize > 1 && hasBatchAnswerGenerators()) {
+      testAnswers =
+          questionStream.buffer(batchSize).concatMap(new Func1<List<Question>, Observable<AnsweredQuestion>>() {
+            @Override public Observable<AnsweredQuestion> call(List<Question> batch) {
+              final Map<Question, Map<AnswerGenerator, Observable<CandidateAnswer>>> generatedAnswers =
+                  generateBatchAnswers(batch);
+              return scheduleMap(Observable.from(batch), new Func1<Question, Observable<AnsweredQuestion>>() {
+                @Override public Observable<AnsweredQuestion> call(Question question) {
+                  return answer(testSet, question, generatedAnswers.get(question));
+                }
+              });
+            }
+          });
+    } else {
+      testAnswers = scheduleMap(questionStream, new Func1<Question, Observable<AnsweredQuestion>>() {
+        @Override public Observable<AnsweredQuestion> call(Question question) {
+          return answer(testSet, question, null);
+        }
+      });
+    }
+
+    return replayedAnswers.concatWith(testAnswers);
+  }
 
-    return testAnswers;
+  /**
+   * Replay the answers of a question recorded by the checkpoint to the answer postprocessors
+   */
+  private AnsweredQuestion replay(QuestionAnswerSet testSet, Question question) {
+    logger.debug("Replaying the answers of question " + question.getId() + " from the checkpoint");
+    List<CandidateAnswer> answers = checkpoint.get(question.getId());
+    Collection<CorrectAnswer> correctAnswers = testSet.getAnswers(question.getId());
+    for (AnswerPostprocessor answerPostprocessor : answerPostprocessorComponents)
+      answerPostprocessor.postprocessAnswers(question, Observable.from(answers), correctAnswers);
+    metrics.increment("pipeline.questions.replayed");
+    if (releaseAnswers)
+      return new AnsweredQuestion(question, Collections.<CandidateAnswer>emptyList());
+    return new AnsweredQuestion(question, answers);
+  }
+
+  private Observable<AnsweredQuestion> answer(QuestionAnswerSet testSet, final Question question,
+      Map<AnswerGenerator, Observable<CandidateAnswer>> generatedAnswers) {
+    logger.info(question.getId());
+    Collection<CorrectAnswer> correctAnswers = testSet.getAnswers(question.getId());
+    Observable<List<CandidateAnswer>> candidates = answer(question, correctAnswers, generatedAnswers, checkpoint);
+    return candidates.map(new Func1<List<CandidateAnswer>, AnsweredQuestion>() {
+      @Override public AnsweredQuestion call(List<CandidateAnswer> answers) {
+        logger.trace(answers);
+        if (releaseAnswers)
+          return new AnsweredQuestion(question, Collections.<CandidateAnswer>emptyList());
+        return new AnsweredQuestion(question, answers);
+      }
+    });
+  }
+
+  private boolean hasBatchAnswerGenerators() {
+    for (AnswerGenerator answerGenerator : answerGenerationComponents) {
+      if (answerGenerator instanceof BatchAnswerGenerator)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Analyze a batch of questions and generate their answers with every batch answer generator
+   *
+   * @return the answers of each batch answer generator for each question of the batch
+   */
+  private Map<Question, Map<AnswerGenerator, Observable<CandidateAnswer>>> generateBatchAnswers(
+      List<Question> batch) {
+    Map<Question, Map<AnswerGenerator, Observable<CandidateAnswer>>> generatedAnswers = new IdentityHashMap<>();
+    for (Question question : batch) {
+      analyze(question, null);
+      generatedAnswers.put(question, new IdentityHashMap<AnswerGenerator, Observable<CandidateAnswer>>());
+    }
+    for (AnswerGenerator answerGenerator : answerGenerationComponents) {
+      if (!(answerGenerator instanceof BatchAnswerGenerator))
+        continue;
+      long start = System.nanoTime();
+      List<Observable<CandidateAnswer>> answers =
+          ((BatchAnswerGenerator) answerGenerator).generateCandidateAnswers(batch);
+      metrics.recordTime("pipeline.batchAnswerGeneration." + name(answerGenerator), start);
+      for (int i = 0; i < batch.size(); i++)
+        generatedAnswers.get(batch.get(i)).put(answerGenerator, answers.get(i));
+    }
+    return generatedAnswers;
   }
 
   private void trainWithComponentTrainingData(QuestionAnswerSet trainSet, QuestionAnswerSet componentTraining) {
@@ -135,28 +329,31 @@ public abstract class PipelineQuestionAnswerer implements QuestionAnswerer {
     logger.info("number of folds:" + folds.size());
     logger.info("trainable components:" + trainableComponents);
 
-    for (Fold fold : folds) {
-      // train the subcomponents on the questions that are NOT in the fold
-      for (TrainableComponent trainable : trainableComponents) {
-        trainable.train(fold.getQuestionsOutOfFold());
-      }
-      // train the pipeline on the questions that are in the fold, with the subcomponents trained
-      // on questions not in the fold
-      Observable<Question> questionStream = Observable.from(fold.getQuestionsInFold().getQuestions());
-
-      Observable<List<CandidateAnswer>> trainAnswers =
-          scheduleMap(scheduler, questionStream, new Func1<Question, List<CandidateAnswer>>() {
-            @Override public List<CandidateAnswer> call(Question question) {
-              logger.info(question.getId());
-              Collection<CorrectAnswer> correctAnswers = trainSet.getAnswers(question.getId());
-              Observable<List<CandidateAnswer>> candidates = train(question, correctAnswers);
-              return candidates.toBlocking().first();
+    if (parallelFolds && folds.size() > 1 && canCloneTrainableComponents()) {
+      // each fold trains its own copies of the subcomponents on the questions that are NOT in the
+      // fold, then trains the pipeline on the questions that are in the fold, all the folds running
+      // at the same time. The mergers are shared and never cloned, so they merge the training runs of
+      // every fold before finishing their training. They are not trained on the questions out of
+      // each fold, but only on the whole training set once the folds are done.
+      Observable.from(folds).flatMap(new Func1<Fold, Observable<List<CandidateAnswer>>>() {
+        @Override public Observable<List<CandidateAnswer>> call(final Fold fold) {
+          return Observable.defer(new Func0<Observable<List<CandidateAnswer>>>() {
+            @Override public Observable<List<CandidateAnswer>> call() {
+              return train(fold, trainSet, cloneTrainableComponents(fold.getQuestionsOutOfFold()));
             }
-          });
-
-      // block until all the training runs for the fold are complete, because we are about to
-      // retrain the subcomponents.
-      trainAnswers.subscribeOn(scheduler).toBlocking().lastOrDefault(null);
+          }).subscribeOn(scheduler);
+        }
+      }).toBlocking().lastOrDefault(null);
+    } else {
+      for (Fold fold : folds) {
+        // train the subcomponents on the questions that are NOT in the fold
+        for (TrainableComponent trainable : trainableComponents) {
+          trainable.train(fold.getQuestionsOutOfFold());
+        }
+        // block the calling thread until all the training runs for the fold are complete, because
+        // we are about to retrain the subcomponents.
+        train(fold, trainSet, null).toBlocking().lastOrDefault(null);
+      }
     }
 
     // Complete training for the pipeline
@@ -173,69 +370,237 @@ public abstract class PipelineQuestionAnswerer implements QuestionAnswerer {
     }
   }
 
-  private Observable<List<CandidateAnswer>> train(final Question question,
-      final Collection<CorrectAnswer> correctAnswers) {
-    return process(question, correctAnswers);
+  /**
+   * Train the pipeline on the questions that are in a fold, with the subcomponents trained on
+   * questions not in the fold
+   * 
+   * @param foldComponents - the copies of the trainable components trained for the fold, or null
+   *        to use the trainable components themselves
+   */
+  private Observable<List<CandidateAnswer>> train(Fold fold, final QuestionAnswerSet trainSet,
+      final Map<QAComponent, QAComponent> foldComponents) {
+    Observable<Question> questionStream = Observable.from(fold.getQuestionsInFold().getQuestions());
+    return scheduleMap(questionStream, new Func1<Question, Observable<List<CandidateAnswer>>>() {
+      @Override public Observable<List<CandidateAnswer>> call(Question question) {
+        logger.info(question.getId());
+        Collection<CorrectAnswer> correctAnswers = trainSet.getAnswers(question.getId());
+        return process(question, correctAnswers, null, foldComponents);
+      }
+    });
+  }
+
+  private boolean canCloneTrainableComponents() {
+    for (TrainableComponent trainable : trainableComponents) {
+      if (!(trainable instanceof CloneableTrainableComponent) && !(trainable instanceof AnswerMergerAndRanker)) {
+        logger.warn("Training the folds one after another, because " + name(trainable) + " cannot be cloned.");
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param trainingSet - the questions the copies are trained on
+   * @return a trained copy of every trainable component but the mergers, by component
+   */
+  private Map<QAComponent, QAComponent> cloneTrainableComponents(QuestionAnswerSet trainingSet) {
+    Map<QAComponent, QAComponent> foldComponents = new IdentityHashMap<>();
+    for (TrainableComponent trainable : trainableComponents) {
+      // a copy of a merger would keep the training runs of its fold from the merger that finishes
+      // the training
+      if (trainable instanceof AnswerMergerAndRanker)
+        continue;
+      CloneableTrainableComponent copy = ((CloneableTrainableComponent) trainable).cloneForTraining();
+      copy.train(trainingSet);
+      foldComponents.put(trainable, copy);
+    }
+    return foldComponents;
+  }
+
+  /**
+   * @param foldComponents - the copies of the trainable components trained for a fold, or null
+   * @return the components, with the trainable ones replaced by their copy for the fold
+   */
+  @SuppressWarnings("unchecked") private static <T extends QAComponent> List<T> forFold(List<T> components,
+      Map<QAComponent, QAComponent> foldComponents) {
+    if (foldComponents == null)
+      return components;
+    List<T> retval = new ArrayList<>(components.size());
+    for (T component : components) {
+      QAComponent copy = foldComponents.get(component);
+      retval.add(copy == null ? component : (T) copy);
+    }
+    return retval;
   }
 
   /**
    * @param question A question to be answered.
    * @param correctAnswers In training mode, this is the collection of correct answers to the
    *        question. In answering mode, this is null.
+   * @param generatedAnswers The answers already generated for the question by the batch answer
+   *        generators, in which case the question has already been analyzed, or null.
+   * @param foldComponents The copies of the trainable components trained for the fold of the
+   *        question, or null to use the trainable components themselves.
    * @return Answers to the question. In answering mode, these should have meaningful confidence
    *         scores.
    */
   private Observable<List<CandidateAnswer>> process(final Question question,
-      final Collection<CorrectAnswer> correctAnswers) {
+      final Collection<CorrectAnswer> correctAnswers,
+      Map<AnswerGenerator, Observable<CandidateAnswer>> generatedAnswers,
+      final Map<QAComponent, QAComponent> foldComponents) {
 
-    for (TextAnalyzer analyzer : questionAnalysisComponents) {
-      analyzer.process(question);
-    }
+    final long questionStart = System.nanoTime();
+    if (generatedAnswers == null)
+      analyze(question, foldComponents);
 
     Collection<Observable<CandidateAnswer>> candidateAnswerStreams = new ArrayList<>(answerGenerationComponents.size());
-    for (AnswerGenerator answerGenerator : answerGenerationComponents) {
-      Observable<CandidateAnswer> candidateAnswersForGenerator = answerGenerator.generateCandidateAnswers(question);
-      candidateAnswerStreams.add(candidateAnswersForGenerator);
+    for (AnswerGenerator answerGenerator : forFold(answerGenerationComponents, foldComponents)) {
+      // the generators may only search once their answers are subscribed to, so they are timed
+      // until their answers complete. The answers generated in a batch were searched beforehand.
+      long start = System.nanoTime();
+      Observable<CandidateAnswer> candidateAnswersForGenerator;
+      if (generatedAnswers != null && generatedAnswers.containsKey(answerGenerator)) {
+        candidateAnswersForGenerator = generatedAnswers.get(answerGenerator);
+      } else {
+        candidateAnswersForGenerator = answerGenerator.generateCandidateAnswers(question);
+      }
+      candidateAnswersForGenerator = new StageTimer(metrics, "pipeline.answerGeneration." + name(answerGenerator))
+          .time(candidateAnswersForGenerator, start);
+      final String generatedCounter = "pipeline.candidates.generated." + name(answerGenerator);
+      candidateAnswerStreams.add(candidateAnswersForGenerator.doOnNext(new Action1<CandidateAnswer>() {
+        @Override public void call(CandidateAnswer answer) {
+          metrics.increment(generatedCounter);
+        }
+      }));
     }
     Observable<CandidateAnswer> candidateAnswers = Observable.merge(candidateAnswerStreams);
-    final Collection<String> observedKeys = new HashSet<>();
-    candidateAnswers = candidateAnswers.map(new Func1<CandidateAnswer, CandidateAnswer>() {
-      @Override public CandidateAnswer call(CandidateAnswer answer) {
-        if (!filterDuplicate(answer, observedKeys)) {
-          for (EvidenceRetriever retriever : evidenceRetriverComponents) {
-            retriever.findEvidence(question, answer);
-          }
-          answer.analyzeSearchResults(searchResultProcessingComponents);
-          for (AnswerScorer scorer : answerScorerComponents) {
-            scorer.scoreCandidateAnswer(question, answer);
-          }
+    final Set<String> observedKeys =
+        filterDups ? Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()) : null;
+    if (scoringExecutor == null) {
+      candidateAnswers = candidateAnswers.map(new Func1<CandidateAnswer, CandidateAnswer>() {
+        @Override public CandidateAnswer call(CandidateAnswer answer) {
+          if (!filterDuplicate(answer, observedKeys))
+            score(question, answer, foldComponents);
+          return answer;
         }
-        return answer;
-      }
-    });
+      });
+    } else {
+      // duplicates are filtered in the order the answers arrive, then each answer is scored on the
+      // scoring pool as soon as it arrives, and the scored answers are passed on in arrival order
+      // by the thread that scores them, as soon as they and the answers before them are scored,
+      // without any thread waiting for the scores. The answers are buffered ahead of the
+      // concatenation, which asks for one at a time, so that every answer starts scoring on arrival
+      Observable<Observable<CandidateAnswer>> scoredAnswers =
+          candidateAnswers.map(new Func1<CandidateAnswer, Observable<CandidateAnswer>>() {
+        @Override public Observable<CandidateAnswer> call(final CandidateAnswer answer) {
+          final boolean duplicate = filterDuplicate(answer, observedKeys);
+          Observable<CandidateAnswer> scoredAnswer = Observable.defer(new Func0<Observable<CandidateAnswer>>() {
+            @Override public Observable<CandidateAnswer> call() {
+              if (!duplicate)
+                score(question, answer, foldComponents);
+              return Observable.just(answer);
+            }
+          }).subscribeOn(scoringScheduler).cache();
+          // start scoring now, the errors are replayed to the subscriber of the scored answers
+          scoredAnswer.onErrorResumeNext(Observable.<CandidateAnswer>empty()).subscribe();
+          return scoredAnswer;
+        }
+      }).onBackpressureBuffer();
+      candidateAnswers = Observable.concat(scoredAnswers);
+    }
 
     Observable<CandidateAnswer> existingAnswers = candidateAnswers;
     Observable<CandidateAnswer> rankedAnswers = null;
-    for (AnswerMergerAndRanker answerMergerAndRanker : answerMergerAndRankerComponents) {
-      rankedAnswers = answerMergerAndRanker.mergeAndRankAnswers(question, existingAnswers, correctAnswers);
+    for (AnswerMergerAndRanker answerMergerAndRanker : forFold(answerMergerAndRankerComponents, foldComponents)) {
+      // a merger is timed from the completion of the answers it merges, which are timed on their own
+      StageTimer timer = new StageTimer(metrics, "pipeline.mergingAndRanking." + name(answerMergerAndRanker));
+      long start = System.nanoTime();
+      rankedAnswers =
+          answerMergerAndRanker.mergeAndRankAnswers(question, timer.startOnCompletion(existingAnswers), correctAnswers);
+      rankedAnswers = timer.time(rankedAnswers, start);
       existingAnswers = rankedAnswers;
     }
 
-    return rankedAnswers == null ? null : rankedAnswers.toSortedList();
+    if (rankedAnswers == null)
+      return null;
+    return rank(rankedAnswers).doOnNext(new Action1<List<CandidateAnswer>>() {
+      @Override public void call(List<CandidateAnswer> answers) {
+        metrics.recordTime("pipeline.question", questionStart);
+      }
+    });
   }
 
-  private synchronized boolean filterDuplicate(CandidateAnswer answer, Collection<String> observedKeys) {
-    if (filterDups) {
-      String label = answer.getAnswerLabel();
-      if (observedKeys.contains(label))
-        return true;
-      else {
-        observedKeys.add(label);
-        return false;
+  /**
+   * Sort the ranked answers of a question, keeping only the {@link #topK} best of them if it is
+   * set, in a heap of that size, instead of sorting them all
+   */
+  private Observable<List<CandidateAnswer>> rank(final Observable<CandidateAnswer> rankedAnswers) {
+    if (topK <= 0)
+      return rankedAnswers.toSortedList();
+    // deferred, so that every subscription reduces the answers into its own heap
+    return Observable.defer(new Func0<Observable<List<CandidateAnswer>>>() {
+      @Override public Observable<List<CandidateAnswer>> call() {
+        return rankedAnswers.reduce(new TopCandidateAnswers(topK),
+            new Func2<TopCandidateAnswers, CandidateAnswer, TopCandidateAnswers>() {
+              @Override public TopCandidateAnswers call(TopCandidateAnswers top, CandidateAnswer answer) {
+                return top.offer(answer);
+              }
+            }).map(new Func1<TopCandidateAnswers, List<CandidateAnswer>>() {
+              @Override public List<CandidateAnswer> call(TopCandidateAnswers top) {
+                metrics.increment("pipeline.candidates.droppedFromTopK", top.getDropped());
+                return top.toSortedList();
+              }
+            });
       }
-    } else {
-      return false;
+    });
+  }
+
+  /**
+   * Retrieve the evidence of a candidate answer, analyze its search results and score it. The
+   * evidence retrievers, search result processors and scorers may run on several answers at once.
+   */
+  private void score(Question question, CandidateAnswer answer, Map<QAComponent, QAComponent> foldComponents) {
+    for (EvidenceRetriever retriever : forFold(evidenceRetriverComponents, foldComponents)) {
+      long start = System.nanoTime();
+      retriever.findEvidence(question, answer);
+      metrics.recordTime("pipeline.evidenceRetrieval." + name(retriever), start);
+    }
+    long start = System.nanoTime();
+    answer.analyzeSearchResults(forFold(searchResultProcessingComponents, foldComponents));
+    metrics.recordTime("pipeline.searchResultAnalysis", start);
+    for (AnswerScorer scorer : forFold(answerScorerComponents, foldComponents)) {
+      start = System.nanoTime();
+      scorer.scoreCandidateAnswer(question, answer);
+      metrics.recordTime("pipeline.scoring." + name(scorer), start);
+    }
+    metrics.increment("pipeline.candidates.scored");
+  }
+
+  private void analyze(Question question, Map<QAComponent, QAComponent> foldComponents) {
+    long start = System.nanoTime();
+    for (TextAnalyzer analyzer : forFold(questionAnalysisComponents, foldComponents)) {
+      analyzer.process(question);
     }
+    metrics.recordTime("pipeline.questionAnalysis", start);
+  }
+
+  /**
+   * @return the name of a component in the metrics
+   */
+  private static String name(Object component) {
+    return component.getClass().getSimpleName();
+  }
+
+  /**
+   * @param observedKeys - the labels of the answers of the question seen so far, or null if
+   *        duplicates are not filtered
+   * @return whether an answer with the same label has already been seen for the question
+   */
+  private static boolean filterDuplicate(CandidateAnswer answer, Set<String> observedKeys) {
+    if (observedKeys == null || observedKeys.add(answer.getAnswerLabel()))
+      return false;
+    metrics.increment("pipeline.candidates.duplicates");
+    return true;
   }
 
   protected void addQuestionAnalysisComponent(TextAnalyzer questionAnalysisComponent) {
@@ -289,7 +654,39 @@ public abstract class PipelineQuestionAnswerer implements QuestionAnswerer {
     executor = Executors.newFixedThreadPool(nThreads);
     scheduler = Schedulers.from(executor);
 
+    maxQuestionsInFlight =
+        Integer.parseInt(properties.getProperty(PROP_MAX_QUESTIONS_IN_FLIGHT, Integer.toString(2 * nThreads)));
+    releaseAnswers = getOptionalBoolean(properties, PROP_RELEASE_ANSWERS, false);
+    parallelFolds = getOptionalBoolean(properties, PROP_PARALLEL_FOLDS, false);
+    topK = Integer.parseInt(properties.getProperty(PROP_TOP_K, "0"));
+
     numFolds = Integer.parseInt(properties.getProperty(PROP_NUM_FOLDS, "-1"));
+    batchSize = Integer.parseInt(properties.getProperty(PROP_BATCH_SIZE, "1"));
+    long metricsReportSeconds = Long.parseLong(properties.getProperty(PROP_METRICS_REPORT_SECONDS, "0"));
+    if (metricsReportSeconds > 0) {
+      String metricsReportFile = properties.getProperty(PROP_METRICS_REPORT_FILE);
+      metrics.startReporting(metricsReportSeconds, metricsReportFile == null ? null : new File(metricsReportFile));
+    }
+    int scoringThreads = Integer.parseInt(properties.getProperty(PROP_SCORING_THREADS, "1"));
+    if (scoringThreads > 1) {
+      int scoringQueueSize =
+          Integer.parseInt(properties.getProperty(PROP_SCORING_QUEUE_SIZE, Integer.toString(4 * scoringThreads)));
+      logger.info("Scoring candidate answers with " + scoringThreads + " threads.");
+      // once the queue is full, the thread of the question scores the answer itself, which holds
+      // back the answer generators instead of queueing every candidate answer of the question
+      scoringExecutor = new ThreadPoolExecutor(scoringThreads, scoringThreads, 0L, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<Runnable>(scoringQueueSize), new ThreadPoolExecutor.CallerRunsPolicy());
+      scoringScheduler = Schedulers.from(scoringExecutor);
+    }
+    String checkpointFile = properties.getProperty(PROP_CHECKPOINT_FILE);
+    if (checkpointFile != null) {
+      try {
+        checkpoint = new AnswerCheckpoint(new File(checkpointFile));
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to open checkpoint " + checkpointFile, e);
+      }
+      logger.info("Resuming from checkpoint " + checkpointFile + " with " + checkpoint.size() + " questions answered.");
+    }
     initialize(questionAnalysisComponents, properties);
     initialize(answerGenerationComponents, properties);
     initialize(evidenceRetriverComponents, properties);
@@ -305,14 +702,41 @@ public abstract class PipelineQuestionAnswerer implements QuestionAnswerer {
 
   }
 
-  private static <InType, OutType> Observable<OutType> scheduleMap(final Scheduler scheduler,
-      final Observable<InType> inputStream, final Func1<InType, OutType> computation) {
+  /**
+   * Close the components holding resources, such as search indexes, that outlive a single question
+   */
+  private void close(List<? extends QAComponent> comps) {
+    for (QAComponent comp : comps) {
+      if (comp instanceof Closeable) {
+        try {
+          ((Closeable) comp).close();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Start an asynchronous computation on every element of a stream on the scheduler, at most
+   * {@link #maxQuestionsInFlight} at once, the others waiting for one of them to complete before
+   * they are started. The computations are composed rather than waited for, so no thread of the
+   * scheduler is held while the computation waits on other work.
+   */
+  private <InType, OutType> Observable<OutType> scheduleMap(final Observable<InType> inputStream,
+      final Func1<InType, Observable<OutType>> computation) {
     Func1<InType, Observable<OutType>> observableComputation = new Func1<InType, Observable<OutType>>() {
-      @Override public Observable<OutType> call(InType arg) {
-        return Observable.just(arg).map(computation).subscribeOn(scheduler);
+      @Override public Observable<OutType> call(final InType arg) {
+        return Observable.defer(new Func0<Observable<OutType>>() {
+          @Override public Observable<OutType> call() {
+            return computation.call(arg);
+          }
+        }).subscribeOn(scheduler);
       }
     };
-    return inputStream.flatMap(observableComputation);
+    if (maxQuestionsInFlight <= 0)
+      return inputStream.flatMap(observableComputation);
+    return Observable.merge(inputStream.map(observableComputation), maxQuestionsInFlight);
   }
 
   private static int getRequiredInteger(Properties props, String prop) {
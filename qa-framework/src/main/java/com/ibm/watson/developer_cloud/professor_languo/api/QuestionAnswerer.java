@@ -47,7 +47,9 @@ public interface QuestionAnswerer extends QAComponent {
    * 
    * @param testSet Questions.
    * @return An observable with one element per question (but not necessarily in the same order).
-   *         Each element has one of the questions and its answers.
+   *         Each element has one of the questions and its answers. The questions are answered
+   *         asynchronously, and each element is emitted by the thread that finished answering its
+   *         question.
    */
   public Observable<AnsweredQuestion> apply(final QuestionAnswerSet testSet);
 
@@ -14,10 +14,17 @@
 
 package com.ibm.watson.developer_cloud.professor_languo.data_model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -32,6 +39,10 @@ import com.ibm.watson.developer_cloud.professor_languo.data_model.QuestionAnswer
  * Candidate answers to questions, with features and numerical values for those features. Also
  * includes relevant search text, e.g., document text for an answer whose label is a docId, or
  * mapped question variants for an answer that was retrieved by TAO-style question-store search.
+ * <p>
+ * The feature values are kept in an array indexed by the slots of the {@link FeatureSchema}, with
+ * a bitset of the features that are set. A candidate answer is scored by one thread at a time, so
+ * its features are read and written without locking.
  * 
  */
 public class CandidateAnswer implements Comparable<CandidateAnswer>, Serializable {
@@ -45,7 +56,12 @@ public class CandidateAnswer implements Comparable<CandidateAnswer>, Serializabl
   private String componentId;
   private Double confidence = null;
 
-  private Map<String, Double> featureValuePairs = new LinkedHashMap<>();
+  private static final double[] NO_FEATURES = new double[0];
+
+  /** the value of each feature, by slot, or null once the answer has been compacted **/
+  private double[] featureValues = NO_FEATURES;
+  /** the slots of the features that are set, or null once the answer has been compacted **/
+  private BitSet featuresSet = new BitSet();
 
   protected TextWithAnalysis answerDocumentText = null;
   protected TextWithAnalysis answerTitle = null;
@@ -65,7 +81,8 @@ public class CandidateAnswer implements Comparable<CandidateAnswer>, Serializabl
     answerDocumentText = null;
     answerTitle = null;
     questionVariants = null;
-    featureValuePairs = null;
+    featureValues = null;
+    featuresSet = null;
   }
 
   /**
@@ -140,6 +157,10 @@ public class CandidateAnswer implements Comparable<CandidateAnswer>, Serializabl
     return componentId;
   }
 
+  protected void setComponentId(String componentId) {
+    this.componentId = componentId;
+  }
+
   public String getAnswerLabel() {
     return answerLabel;
   }
@@ -152,16 +173,75 @@ public class CandidateAnswer implements Comparable<CandidateAnswer>, Serializabl
     this.confidence = confidence;
   }
 
-  public synchronized Double getFeatureValue(String featureLabel) {
-    return featureValuePairs.get(featureLabel);
+  public Double getFeatureValue(String featureLabel) {
+    int slot = FeatureSchema.find(featureLabel);
+    return slot >= 0 && hasFeature(slot) ? featureValues[slot] : null;
+  }
+
+  /**
+   * Set a feature, or unset it if the value is null
+   */
+  public void setFeatureValue(String featureLabel, Double value) {
+    if (value != null)
+      setFeature(FeatureSchema.slot(featureLabel), value);
+    else if (featuresSet != null)
+      featuresSet.clear(FeatureSchema.slot(featureLabel));
+  }
+
+  /**
+   * @param slot - the {@link FeatureSchema} slot of a feature
+   * @return whether the feature is set, false if the slot is negative
+   */
+  public boolean hasFeature(int slot) {
+    return slot >= 0 && featuresSet != null && featuresSet.get(slot);
+  }
+
+  /**
+   * @param slot - the {@link FeatureSchema} slot of a feature
+   * @return the value of the feature, or 0 if it is not set
+   */
+  public double getFeature(int slot) {
+    return hasFeature(slot) ? featureValues[slot] : 0d;
+  }
+
+  /**
+   * @param slot - the {@link FeatureSchema} slot of a feature
+   * @param value - the value of the feature
+   */
+  public void setFeature(int slot, double value) {
+    if (featuresSet == null) {
+      featureValues = NO_FEATURES;
+      featuresSet = new BitSet();
+    }
+    if (slot >= featureValues.length)
+      featureValues = Arrays.copyOf(featureValues, Math.max(slot + 1, FeatureSchema.size()));
+    featureValues[slot] = value;
+    featuresSet.set(slot);
   }
 
-  public synchronized void setFeatureValue(String featureLabel, Double value) {
-    featureValuePairs.put(featureLabel, value);
+  /**
+   * Iterate over the features that are set, in slot order:
+   * <code>for (int slot = answer.nextFeature(0); slot >= 0; slot = answer.nextFeature(slot + 1))</code>
+   *
+   * @param fromSlot - the slot to start from
+   * @return the first slot from the given one whose feature is set, or -1 if there is none
+   */
+  public int nextFeature(int fromSlot) {
+    return featuresSet == null ? -1 : featuresSet.nextSetBit(fromSlot);
   }
 
+  /**
+   * @return a copy of the features that are set and their values, in slot order
+   */
   public Set<Entry<String, Double>> getFeatureValuePairs() {
-    return featureValuePairs.entrySet();
+    return featureMap().entrySet();
+  }
+
+  private Map<String, Double> featureMap() {
+    Map<String, Double> features = new LinkedHashMap<>();
+    for (int slot = nextFeature(0); slot >= 0; slot = nextFeature(slot + 1))
+      features.put(FeatureSchema.name(slot), featureValues[slot]);
+    return features;
   }
 
   public MetadataMap getMetadataMap() {
@@ -195,8 +275,14 @@ public class CandidateAnswer implements Comparable<CandidateAnswer>, Serializabl
       return id - o.id;
   }
 
+  /**
+   * @return a copy of the names of the features that are set, in slot order
+   */
   public Set<String> getFeatures() {
-    return featureValuePairs.keySet();
+    Set<String> features = new LinkedHashSet<>();
+    for (int slot = nextFeature(0); slot >= 0; slot = nextFeature(slot + 1))
+      features.add(FeatureSchema.name(slot));
+    return features;
   }
 
   /**
@@ -226,10 +312,10 @@ public class CandidateAnswer implements Comparable<CandidateAnswer>, Serializabl
     b.append(':');
     b.append(getComponentId());
     b.append("[ ");
-    for (Entry<String, Double> e : featureValuePairs.entrySet()) {
-      b.append(e.getKey());
+    for (int slot = nextFeature(0); slot >= 0; slot = nextFeature(slot + 1)) {
+      b.append(FeatureSchema.name(slot));
       b.append('=');
-      b.append(e.getValue());
+      b.append(featureValues[slot]);
       b.append(' ');
     }
     b.append("]");
@@ -244,4 +330,51 @@ public class CandidateAnswer implements Comparable<CandidateAnswer>, Serializabl
     return b.toString();
   }
 
+  /**
+   * The fields written when an answer is serialized. The features are written by name rather than
+   * by slot, as slots are only valid in the process that assigned them, and in the form they had
+   * before they were kept by slot, so that previously serialized answers can still be read.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {new ObjectStreamField("id", int.class),
+      new ObjectStreamField("answerLabel", String.class), new ObjectStreamField("componentId", String.class),
+      new ObjectStreamField("confidence", Double.class), new ObjectStreamField("featureValuePairs", Map.class),
+      new ObjectStreamField("answerDocumentText", TextWithAnalysis.class),
+      new ObjectStreamField("answerTitle", TextWithAnalysis.class),
+      new ObjectStreamField("questionVariants", Collection.class),
+      new ObjectStreamField("metadataMap", MetadataMap.class)};
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    ObjectOutputStream.PutField fields = out.putFields();
+    fields.put("id", id);
+    fields.put("answerLabel", answerLabel);
+    fields.put("componentId", componentId);
+    fields.put("confidence", confidence);
+    fields.put("featureValuePairs", featuresSet == null ? null : featureMap());
+    fields.put("answerDocumentText", answerDocumentText);
+    fields.put("answerTitle", answerTitle);
+    fields.put("questionVariants", questionVariants);
+    fields.put("metadataMap", metadataMap);
+    out.writeFields();
+  }
+
+  @SuppressWarnings("unchecked") private void readObject(ObjectInputStream in)
+      throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField fields = in.readFields();
+    id = fields.get("id", 0);
+    answerLabel = (String) fields.get("answerLabel", null);
+    componentId = (String) fields.get("componentId", null);
+    confidence = (Double) fields.get("confidence", null);
+    answerDocumentText = (TextWithAnalysis) fields.get("answerDocumentText", null);
+    answerTitle = (TextWithAnalysis) fields.get("answerTitle", null);
+    questionVariants = (Collection<TextWithAnalysis>) fields.get("questionVariants", null);
+    metadataMap = (MetadataMap) fields.get("metadataMap", null);
+    Map<String, Double> featureValuePairs = (Map<String, Double>) fields.get("featureValuePairs", null);
+    if (featureValuePairs != null) {
+      featureValues = NO_FEATURES;
+      featuresSet = new BitSet();
+      for (Entry<String, Double> feature : featureValuePairs.entrySet())
+        setFeatureValue(feature.getKey(), feature.getValue());
+    }
+  }
+
 }
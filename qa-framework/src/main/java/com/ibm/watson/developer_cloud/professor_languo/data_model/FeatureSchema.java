@@ -0,0 +1,83 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.data_model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The registry of the features of the candidate answers, shared by the whole process. Every feature
+ * name is assigned an int slot the first time it is registered, slots being given out in order
+ * from 0 and never reassigned, so that the features of a {@link CandidateAnswer} are kept in an
+ * array indexed by slot, and every candidate answer lists its features in the same order.
+ * <p>
+ * Components setting a feature on every candidate answer should look its slot up once, e.g. when
+ * they are initialized, rather than naming the feature for every answer.
+ */
+public final class FeatureSchema {
+
+  private static final ConcurrentMap<String, Integer> slots = new ConcurrentHashMap<>();
+
+  /** the name of the feature of each slot, replaced by a longer copy when a feature is registered **/
+  private static volatile String[] names = new String[0];
+
+  private FeatureSchema() {}
+
+  /**
+   * @param name - the name of a feature
+   * @return the slot of the feature, registering the feature if it was not registered yet
+   */
+  public static int slot(String name) {
+    Integer slot = slots.get(name);
+    return slot == null ? register(name) : slot;
+  }
+
+  /**
+   * @param name - the name of a feature
+   * @return the slot of the feature, or -1 if it has not been registered or the name is null
+   */
+  public static int find(String name) {
+    Integer slot = name == null ? null : slots.get(name);
+    return slot == null ? -1 : slot;
+  }
+
+  /**
+   * @param slot - the slot of a registered feature
+   * @return the name of the feature
+   */
+  public static String name(int slot) {
+    return names[slot];
+  }
+
+  /**
+   * @return the number of features registered
+   */
+  public static int size() {
+    return names.length;
+  }
+
+  private static synchronized int register(String name) {
+    Integer slot = slots.get(name);
+    if (slot != null)
+      return slot;
+    // the name is published before the slot, so the name of any slot that was handed out is known
+    String[] registered = Arrays.copyOf(names, names.length + 1);
+    registered[names.length] = name;
+    names = registered;
+    slots.put(name, names.length - 1);
+    return names.length - 1;
+  }
+}
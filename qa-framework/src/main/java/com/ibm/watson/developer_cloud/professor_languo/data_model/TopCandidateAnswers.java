@@ -0,0 +1,82 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.data_model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the best {@link CandidateAnswer}s offered to it, in the order of
+ * {@link CandidateAnswer#compareTo(CandidateAnswer)}, in a heap bounded by the number of answers
+ * kept. The answers that do not make it are compacted as soon as they are dropped, so only the
+ * answers kept hold their search results.
+ */
+public class TopCandidateAnswers {
+
+  private final int size;
+
+  /** the answers kept, the worst of them at the head **/
+  private final PriorityQueue<CandidateAnswer> heap;
+
+  private int dropped = 0;
+
+  /**
+   * @param size - the number of answers kept
+   */
+  public TopCandidateAnswers(int size) {
+    if (size <= 0)
+      throw new IllegalArgumentException("The number of answers kept must be positive: " + size);
+    this.size = size;
+    this.heap = new PriorityQueue<>(size, Collections.reverseOrder());
+  }
+
+  /**
+   * Keep an answer if it is better than the worst answer kept, dropping that one
+   *
+   * @return this
+   */
+  public TopCandidateAnswers offer(CandidateAnswer answer) {
+    if (heap.size() < size) {
+      heap.add(answer);
+      return this;
+    }
+    CandidateAnswer droppedAnswer = answer;
+    if (answer.compareTo(heap.peek()) < 0) {
+      droppedAnswer = heap.poll();
+      heap.add(answer);
+    }
+    droppedAnswer.compact();
+    dropped++;
+    return this;
+  }
+
+  /**
+   * @return the number of answers dropped so far
+   */
+  public int getDropped() {
+    return dropped;
+  }
+
+  /**
+   * @return the answers kept, best first
+   */
+  public List<CandidateAnswer> toSortedList() {
+    List<CandidateAnswer> answers = new ArrayList<>(heap);
+    Collections.sort(answers);
+    return answers;
+  }
+}
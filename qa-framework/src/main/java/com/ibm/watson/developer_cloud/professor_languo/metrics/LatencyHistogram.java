@@ -0,0 +1,133 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds that many threads can record into without locking.
+ * Like an HDR histogram, it counts the values in buckets whose width grows with the value, each
+ * power of two being split into {@value #SUB_BUCKETS} buckets, so any percentile is known to
+ * within about 3% of its value however large the values are.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Record a latency
+   *
+   * @param nanos - the latency in nanoseconds, negative values counting as 0
+   */
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(bucket(value));
+    count.incrementAndGet();
+    total.addAndGet(value);
+    long currentMax;
+    while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value))
+      ;
+  }
+
+  /**
+   * @return the number of latencies recorded
+   */
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * @return the sum of the latencies recorded, in nanoseconds
+   */
+  public long getTotal() {
+    return total.get();
+  }
+
+  /**
+   * @return the mean of the latencies recorded, in nanoseconds, or 0 if none was recorded
+   */
+  public double getMean() {
+    long n = count.get();
+    return n == 0 ? 0 : (double) total.get() / n;
+  }
+
+  /**
+   * @return the highest latency recorded, in nanoseconds
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * @param percentile - the percentile, between 0 and 100
+   * @return the latency under which the given percentage of the latencies fall, in nanoseconds, or
+   *         0 if none was recorded
+   */
+  public long getPercentile(double percentile) {
+    long n = count.get();
+    if (n == 0)
+      return 0;
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank)
+        return Math.min(midpoint(i), max.get());
+    }
+    return max.get();
+  }
+
+  /**
+   * Forget every latency recorded
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++)
+      counts.set(i, 0);
+    count.set(0);
+    total.set(0);
+    max.set(0);
+  }
+
+  /**
+   * @return the bucket of a value: values below {@value #SUB_BUCKETS} have a bucket each, and every
+   *         higher power of two is split into {@value #SUB_BUCKETS} buckets of equal width
+   */
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS)
+      return (int) value;
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * @return the value in the middle of a bucket
+   */
+  static long midpoint(int bucket) {
+    if (bucket < SUB_BUCKETS)
+      return bucket;
+    int shift = bucket / SUB_BUCKETS - 1;
+    long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    return lower + ((1L << shift) >> 1);
+  }
+}
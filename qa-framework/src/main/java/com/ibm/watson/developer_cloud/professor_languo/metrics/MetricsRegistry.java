@@ -0,0 +1,209 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A registry of named timers and counters, shared by the stages and components of the pipeline.
+ * Timers record latencies in a {@link LatencyHistogram}, counters count events such as candidate
+ * answers produced or filtered. Both are created on first use and can be updated from any thread
+ * without locking.
+ * <p>
+ * The registry can report its metrics periodically, to the log or to a file, and its report gives
+ * the percentiles of every timer and the throughput of every counter since the registry was last
+ * reset.
+ */
+public class MetricsRegistry {
+
+  private static final Logger logger = LogManager.getLogger();
+
+  private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+  private final ConcurrentMap<String, LatencyHistogram> timers = new ConcurrentSkipListMap<>();
+  private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentSkipListMap<>();
+  private volatile long startNanos = System.nanoTime();
+
+  /** the thread writing the periodic reports, or null if they are not written **/
+  private ScheduledExecutorService reporter;
+
+  /**
+   * @return the registry shared by the whole process
+   */
+  public static MetricsRegistry getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * @param name - the name of the timer
+   * @return the timer with the given name, created if it did not exist
+   */
+  public LatencyHistogram timer(String name) {
+    LatencyHistogram timer = timers.get(name);
+    if (timer == null) {
+      LatencyHistogram existing = timers.putIfAbsent(name, timer = new LatencyHistogram());
+      if (existing != null)
+        timer = existing;
+    }
+    return timer;
+  }
+
+  /**
+   * Record the time elapsed since the given start in a timer
+   *
+   * @param name - the name of the timer
+   * @param startNanos - the start of the timed operation, as given by {@link System#nanoTime()}
+   */
+  public void recordTime(String name, long startNanos) {
+    timer(name).record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Add one to a counter
+   *
+   * @param name - the name of the counter
+   */
+  public void increment(String name) {
+    increment(name, 1);
+  }
+
+  /**
+   * Add to a counter
+   *
+   * @param name - the name of the counter
+   * @param delta - the number to add to the counter
+   */
+  public void increment(String name, long delta) {
+    AtomicLong counter = counters.get(name);
+    if (counter == null) {
+      AtomicLong existing = counters.putIfAbsent(name, counter = new AtomicLong());
+      if (existing != null)
+        counter = existing;
+    }
+    counter.addAndGet(delta);
+  }
+
+  /**
+   * @param name - the name of the counter
+   * @return the value of the counter, or 0 if it was never incremented
+   */
+  public long getCount(String name) {
+    AtomicLong counter = counters.get(name);
+    return counter == null ? 0 : counter.get();
+  }
+
+  /**
+   * Forget every timer and counter
+   */
+  public void reset() {
+    timers.clear();
+    counters.clear();
+    startNanos = System.nanoTime();
+  }
+
+  /**
+   * @return a table of the percentiles of every timer, in milliseconds, and of the value and rate
+   *         per second of every counter
+   */
+  public String report() {
+    double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("Metrics over %.1f s%n", elapsedSeconds));
+    if (!timers.isEmpty()) {
+      report.append(String.format("%-60s %10s %10s %10s %10s %10s %10s %12s%n", "timer", "count", "mean ms",
+          "p50 ms", "p95 ms", "p99 ms", "max ms", "total s"));
+      for (Entry<String, LatencyHistogram> entry : timers.entrySet()) {
+        LatencyHistogram timer = entry.getValue();
+        report.append(String.format("%-60s %10d %10.3f %10.3f %10.3f %10.3f %10.3f %12.3f%n", entry.getKey(),
+            timer.getCount(), timer.getMean() / 1e6, timer.getPercentile(50) / 1e6, timer.getPercentile(95) / 1e6,
+            timer.getPercentile(99) / 1e6, timer.getMax() / 1e6, timer.getTotal() / 1e9));
+      }
+    }
+    if (!counters.isEmpty()) {
+      report.append(String.format("%-60s %10s %10s%n", "counter", "count", "per s"));
+      for (Entry<String, AtomicLong> entry : counters.entrySet()) {
+        long count = entry.getValue().get();
+        report.append(String.format("%-60s %10d %10.1f%n", entry.getKey(), count,
+            elapsedSeconds > 0 ? count / elapsedSeconds : 0));
+      }
+    }
+    return report.toString();
+  }
+
+  /**
+   * Report the metrics periodically until {@link #stopReporting()} is called, replacing any
+   * reporting already started
+   *
+   * @param periodSeconds - the time between two reports
+   * @param file - the file the reports are appended to, or null to write them to the log
+   */
+  public synchronized void startReporting(long periodSeconds, final File file) {
+    stopReporting();
+    reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "metrics-reporter");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    reporter.scheduleAtFixedRate(new Runnable() {
+      @Override public void run() {
+        writeReport(file);
+      }
+    }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Stop the periodic reports
+   */
+  public synchronized void stopReporting() {
+    if (reporter != null) {
+      reporter.shutdownNow();
+      reporter = null;
+    }
+  }
+
+  /**
+   * Write a report to a file, or to the log if the file is null
+   */
+  public void writeReport(File file) {
+    if (file == null) {
+      logger.info(report());
+      return;
+    }
+    try (Writer writer = new FileWriter(file, true)) {
+      writer.write(new Date() + System.lineSeparator());
+      writer.write(report());
+      writer.write(System.lineSeparator());
+    } catch (IOException e) {
+      logger.warn("Failed to write the metrics to " + file, e);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright IBM Corp. 2015
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.ibm.watson.developer_cloud.professor_languo.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Observable;
+import rx.Observable.Operator;
+import rx.Subscriber;
+import rx.functions.Action0;
+
+/**
+ * Times a stage of the pipeline that hands back a stream, which may only do its work once it is
+ * subscribed to. The time recorded is the time spent building the stream, plus the time from the
+ * subscription to the completion of the stream, less the time the subscriber of the stream spends
+ * handling the items it emits. A stage consuming the stream of an earlier stage, such as a merger,
+ * can instead be timed from the completion of its input, so that the time spent by the earlier
+ * stages is not counted twice.
+ * <p>
+ * Each timer times a single stream, subscribed to once. Streams that fail are not timed.
+ */
+public class StageTimer {
+
+  private static final long NOT_STARTED = Long.MIN_VALUE;
+
+  private final MetricsRegistry registry;
+  private final String name;
+
+  /** when the input of the stage completed, or null to time the stage from its subscription **/
+  private AtomicLong inputCompleted = null;
+
+  /**
+   * @param registry - the registry to record the time in
+   * @param name - the name of the timer
+   */
+  public StageTimer(MetricsRegistry registry, String name) {
+    this.registry = registry;
+    this.name = name;
+  }
+
+  /**
+   * Time the stage from the completion of its input, instead of from its subscription
+   *
+   * @param input - the stream the stage consumes
+   * @return the input, to be handed to the stage
+   */
+  public <T> Observable<T> startOnCompletion(Observable<T> input) {
+    final AtomicLong completed = new AtomicLong(NOT_STARTED);
+    inputCompleted = completed;
+    return input.doOnCompleted(new Action0() {
+      @Override public void call() {
+        completed.set(System.nanoTime());
+      }
+    });
+  }
+
+  /**
+   * @param stream - the stream handed back by the stage
+   * @param buildStartNanos - when the stage started building the stream, as given by
+   *        {@link System#nanoTime()}
+   * @return the stream, recording the time of the stage once it completes
+   */
+  public <T> Observable<T> time(Observable<T> stream, long buildStartNanos) {
+    final long buildNanos = System.nanoTime() - buildStartNanos;
+    final AtomicLong start = inputCompleted;
+    return stream.lift(new Operator<T, T>() {
+      @Override public Subscriber<? super T> call(final Subscriber<? super T> child) {
+        final long subscribed = System.nanoTime();
+        return new Subscriber<T>(child) {
+          private long downstreamNanos = 0;
+
+          @Override public void onNext(T item) {
+            boolean started = start == null || start.get() != NOT_STARTED;
+            long before = System.nanoTime();
+            child.onNext(item);
+            if (started)
+              downstreamNanos += System.nanoTime() - before;
+          }
+
+          @Override public void onCompleted() {
+            long now = System.nanoTime();
+            long from = subscribed;
+            if (start != null)
+              from = start.get() == NOT_STARTED ? now : Math.max(subscribed, start.get());
+            registry.timer(name).record(buildNanos + Math.max(0, now - from - downstreamNanos));
+            child.onCompleted();
+          }
+
+          @Override public void onError(Throwable e) {
+            child.onError(e);
+          }
+        };
+      }
+    });
+  }
+}